@@ -0,0 +1,89 @@
+package com.github.glfrazier.snd.node;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import com.github.glfrazier.event.EventingSystem;
+import com.github.glfrazier.snd.protocol.message.Message;
+import com.github.glfrazier.snd.util.CommsModule;
+import com.github.glfrazier.snd.util.DiscoveryService;
+import com.github.glfrazier.snd.util.Implementation;
+import com.github.glfrazier.snd.util.NodeId;
+import com.github.glfrazier.snd.util.VPNManager;
+
+/**
+ * Stand-alone nodes for the benchmarks: each node is bound to an implementation
+ * whose VPNs and communications do nothing, so that a benchmark measures only
+ * the node itself.
+ */
+class BenchNodes {
+
+	private static class NullImplementation implements Implementation, CommsModule, VPNManager {
+
+		@Override
+		public DiscoveryService getDiscoveryService() {
+			return null;
+		}
+
+		@Override
+		public VPNManager getVPNManager() {
+			return this;
+		}
+
+		@Override
+		public CommsModule getComms() {
+			return this;
+		}
+
+		@Override
+		public void createVPN(NodeId neighbor, Object keyingMaterial) throws IOException {
+		}
+
+		@Override
+		public void closeVPN(NodeId remote) {
+		}
+
+		@Override
+		public void addRoute(NodeId dst, NodeId route) {
+		}
+
+		@Override
+		public boolean removeRoute(NodeId dst, NodeId route) {
+			return false;
+		}
+
+		@Override
+		public void removeRoutesVia(NodeId forwarder) {
+		}
+
+		@Override
+		public boolean canSendTo(NodeId dst) {
+			return true;
+		}
+
+		@Override
+		public void send(Message msg) throws IOException {
+		}
+	}
+
+	/**
+	 * @return the properties that a node requires, with the threshold controller
+	 *         configured as in the example property files
+	 */
+	static Properties properties() {
+		Properties props = new Properties();
+		props.setProperty("snd.thold_ctlr.sensor_smoothing_alpha", "0.1");
+		props.setProperty("snd.thold_ctler.target_health", "0.999");
+		props.setProperty("snd.thold_ctlr.K", "30.0");
+		props.setProperty("snd.thold_ctlr.tau_i", "60.0");
+		props.setProperty("snd.thold_ctlr.tau_t", "0.05");
+		props.setProperty("snd.thold_ctlr.head_space", "0.5");
+		return props;
+	}
+
+	static Node createNode(NodeId address, Properties props) {
+		EventingSystem es = new EventingSystem("bench " + address, EventingSystem.NOT_REALTIME);
+		return new Node(address, new NullImplementation(), es, props);
+	}
+
+}
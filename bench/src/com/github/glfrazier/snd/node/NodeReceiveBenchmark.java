@@ -0,0 +1,58 @@
+package com.github.glfrazier.snd.node;
+
+import static com.github.glfrazier.snd.util.AddressUtils.ZERO_IPv4_ADDRESS;
+import static com.github.glfrazier.snd.util.AddressUtils.incrementAddress;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.glfrazier.snd.protocol.IntroductionRequest;
+import com.github.glfrazier.snd.protocol.message.AckMessage;
+import com.github.glfrazier.snd.protocol.message.IntroductionAcceptedMessage;
+import com.github.glfrazier.snd.util.NodeId;
+
+/**
+ * The dispatch of a received message by {@link Node#receive}: a node receives
+ * an acknowledgement from its neighbor for which no transmission is waiting, as
+ * it does for every acknowledgement of a retransmitted message. This is the
+ * per-message overhead of the node (its monitor, its logging and the dispatch
+ * on the message type), without any protocol processing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NodeReceiveBenchmark {
+
+	private Node node;
+	private AckMessage ack;
+
+	@Setup
+	public void setup() throws IOException {
+		NodeId address = incrementAddress(NodeId.of(ZERO_IPv4_ADDRESS));
+		NodeId neighbor = incrementAddress(address);
+		node = BenchNodes.createNode(address, BenchNodes.properties());
+		node.createVPN(neighbor, node.generateKeyingMaterial());
+		IntroductionRequest ir = new IntroductionRequest(neighbor, address, neighbor);
+		ack = new AckMessage(new IntroductionAcceptedMessage(ir, null, neighbor));
+	}
+
+	@Benchmark
+	public void receiveAck() {
+		node.receive(ack);
+	}
+
+}
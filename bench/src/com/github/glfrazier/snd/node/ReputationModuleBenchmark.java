@@ -0,0 +1,114 @@
+package com.github.glfrazier.snd.node;
+
+import static com.github.glfrazier.snd.util.AddressUtils.ZERO_IPv4_ADDRESS;
+import static com.github.glfrazier.snd.util.AddressUtils.ZERO_IPv6_ADDRESS;
+import static com.github.glfrazier.snd.util.AddressUtils.incrementAddress;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.glfrazier.snd.protocol.IntroductionRequest;
+import com.github.glfrazier.snd.protocol.Pedigree;
+import com.github.glfrazier.snd.util.NodeId;
+
+/**
+ * The introduction decision ({@link ReputationModule#reputationIsGreaterThanThreshold})
+ * and the threshold controller's query ({@link ReputationModule#getLeastReputation()}),
+ * for each reputation store, at varying table sizes and pedigree lengths. Every
+ * entity in the table has a reputation, and one in a hundred has had BAD
+ * feedback; the pedigrees are drawn from the entities in the table.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReputationModuleBenchmark {
+
+	private static final int PEDIGREES = 1024;
+
+	@State(Scope.Benchmark)
+	public static class Table {
+
+		@Param({ "entity", "table", "concurrent" })
+		public String store;
+
+		@Param({ "1000", "100000" })
+		public int tableSize;
+
+		ReputationModule reputationModule;
+		NodeId nodeAddress;
+		NodeId[] entities;
+
+		@Setup
+		public void setup() {
+			Properties props = BenchNodes.properties();
+			props.setProperty("snd.reputation.store", store);
+			nodeAddress = incrementAddress(NodeId.of(ZERO_IPv4_ADDRESS));
+			reputationModule = BenchNodes.createNode(nodeAddress, props).reputationModule;
+			entities = new NodeId[tableSize];
+			NodeId addr = NodeId.of(ZERO_IPv6_ADDRESS);
+			for (int i = 0; i < tableSize; i++) {
+				addr = incrementAddress(addr);
+				entities[i] = addr;
+				reputationModule.reputationIsGreaterThanThreshold(new Pedigree(addr), false);
+			}
+			for (int i = 0; i < tableSize; i += 100) {
+				reputationModule.applyFeedback(new Pedigree(entities[i]), Feedback.BAD);
+			}
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Pedigrees {
+
+		@Param({ "0", "2", "8" })
+		public int pedigreeLength;
+
+		Pedigree[] pedigrees;
+		int next;
+
+		@Setup
+		public void setup(Table table) {
+			Random random = new Random(0);
+			pedigrees = new Pedigree[PEDIGREES];
+			for (int i = 0; i < PEDIGREES; i++) {
+				NodeId subject = table.entities[random.nextInt(table.entities.length)];
+				Pedigree p = new Pedigree(subject);
+				for (int j = 0; j < pedigreeLength; j++) {
+					NodeId introducer = table.entities[random.nextInt(table.entities.length)];
+					p = p.getNext(new IntroductionRequest(subject, introducer, table.nodeAddress));
+				}
+				pedigrees[i] = p;
+			}
+		}
+
+		Pedigree next() {
+			return pedigrees[next++ & (PEDIGREES - 1)];
+		}
+	}
+
+	@Benchmark
+	public boolean reputationIsGreaterThanThreshold(Table table, Pedigrees pedigrees) {
+		return table.reputationModule.reputationIsGreaterThanThreshold(pedigrees.next(), false);
+	}
+
+	@Benchmark
+	public float getLeastReputation(Table table) {
+		return table.reputationModule.getLeastReputation();
+	}
+
+}
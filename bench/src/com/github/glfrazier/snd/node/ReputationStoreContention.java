@@ -0,0 +1,133 @@
+package com.github.glfrazier.snd.node;
+
+import static com.github.glfrazier.snd.util.AddressUtils.ZERO_IPv6_ADDRESS;
+import static com.github.glfrazier.snd.util.AddressUtils.incrementAddress;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.glfrazier.event.EventingSystem;
+import com.github.glfrazier.snd.util.NodeId;
+import com.github.glfrazier.snd.util.PropertyParser;
+
+/**
+ * A contention benchmark for the {@link ReputationStore} implementations. Each
+ * thread repeatedly performs the store accesses of
+ * {@link ReputationModule#reputationIsGreaterThanThreshold}: it reads the
+ * reputations of a pedigree's subject and introducers. A percentage of the
+ * operations instead apply BAD feedback to a pedigree, as
+ * {@link ReputationModule#applyFeedback} does. The benchmark reports operations
+ * per second for each store.
+ * 
+ * Properties (all optional), given on the command line as name=value:
+ * <ul>
+ * <li>bench.threads (8)</li>
+ * <li>bench.seconds (5) per store</li>
+ * <li>bench.entities (100000)</li>
+ * <li>bench.pedigree_length (4) introducers per pedigree</li>
+ * <li>bench.adjust_percent (5)</li>
+ * <li>bench.stores (entity,table,concurrent)</li>
+ * </ul>
+ */
+public class ReputationStoreContention {
+
+	public static void main(String[] args) throws Exception {
+		Properties props = PropertyParser.parseCmdLine(args, "bench");
+		int threads = PropertyParser.getIntegerProperty("bench.threads", 8, props);
+		int seconds = PropertyParser.getIntegerProperty("bench.seconds", 5, props);
+		int numEntities = PropertyParser.getIntegerProperty("bench.entities", 100000, props);
+		int pedigreeLength = PropertyParser.getIntegerProperty("bench.pedigree_length", 4, props);
+		int adjustPercent = PropertyParser.getIntegerProperty("bench.adjust_percent", 5, props);
+		String[] stores = PropertyParser.getListProperty("bench.stores", "entity,table,concurrent", props);
+
+		NodeId[] addresses = new NodeId[numEntities];
+		NodeId addr = NodeId.of(ZERO_IPv6_ADDRESS);
+		for (int i = 0; i < numEntities; i++) {
+			addr = incrementAddress(addr);
+			addresses[i] = addr;
+		}
+		EventingSystem es = new EventingSystem("bench", EventingSystem.NOT_REALTIME);
+
+		System.out.println("threads=" + threads + ", entities=" + numEntities + ", pedigree_length="
+				+ pedigreeLength + ", adjust_percent=" + adjustPercent);
+		for (String storeType : stores) {
+			ReputationStore store = createStore(storeType, es);
+			for (NodeId a : addresses) {
+				store.createIfAbsent(a, 0.5f);
+			}
+			double opsPerSecond = run(store, addresses, threads, seconds, pedigreeLength, adjustPercent);
+			System.out.println(String.format("%-12s %,15.0f ops/s", storeType, opsPerSecond));
+		}
+	}
+
+	private static ReputationStore createStore(String storeType, EventingSystem es) {
+		switch (storeType) {
+		case "entity":
+			return new EntityReputationStore(es, () -> 0, true, 64);
+		case "table":
+			return new AddressReputationTable(() -> 0, true, 64);
+		case "concurrent":
+			return new ConcurrentReputationStore(() -> 0, true, 64);
+		default:
+			throw new IllegalArgumentException("Unknown store type: " + storeType);
+		}
+	}
+
+	private static double run(ReputationStore store, NodeId[] addresses, int threads, int seconds,
+			int pedigreeLength, int adjustPercent) throws InterruptedException {
+		AtomicBoolean done = new AtomicBoolean(false);
+		LongAdder ops = new LongAdder();
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch finished = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			final long seed = t;
+			Thread thread = new Thread(() -> {
+				Random random = new Random(seed);
+				NodeId[] pedigree = new NodeId[pedigreeLength + 1];
+				float sink = 0;
+				long count = 0;
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				while (!done.get()) {
+					for (int i = 0; i < pedigree.length; i++) {
+						pedigree[i] = addresses[random.nextInt(addresses.length)];
+					}
+					if (random.nextInt(100) < adjustPercent) {
+						float dRep = -1;
+						for (NodeId a : pedigree) {
+							store.adjustReputation(a, dRep, 1.0f);
+							dRep /= 4;
+						}
+					} else {
+						float minRep = 0;
+						for (NodeId a : pedigree) {
+							minRep = Math.min(minRep, store.getReputation(a));
+						}
+						sink += minRep;
+					}
+					count++;
+				}
+				ops.add(count);
+				if (sink == Float.MAX_VALUE) {
+					System.out.print(""); // keep the reads live
+				}
+				finished.countDown();
+			});
+			thread.start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		Thread.sleep(seconds * 1000L);
+		done.set(true);
+		finished.await();
+		double elapsed = (System.nanoTime() - begin) / 1e9;
+		return ops.sum() / elapsed;
+	}
+
+}
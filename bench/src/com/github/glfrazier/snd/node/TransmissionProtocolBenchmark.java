@@ -0,0 +1,60 @@
+package com.github.glfrazier.snd.node;
+
+import static com.github.glfrazier.snd.util.AddressUtils.ZERO_IPv4_ADDRESS;
+import static com.github.glfrazier.snd.util.AddressUtils.incrementAddress;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.glfrazier.snd.protocol.IntroductionRequest;
+import com.github.glfrazier.snd.protocol.SNDPMessageTransmissionProtocol;
+import com.github.glfrazier.snd.protocol.message.IntroductionAcceptedMessage;
+import com.github.glfrazier.snd.protocol.message.SNDPMessage;
+import com.github.glfrazier.snd.util.NodeId;
+
+/**
+ * The construction of the {@link SNDPMessageTransmissionProtocol} that every
+ * reliable send creates. A verbose protocol renders the message into its name
+ * when it is constructed; a quiet one does not. Run with <code>-prof gc</code>
+ * to compare the bytes allocated per send.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransmissionProtocolBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean verbose;
+
+	private Node node;
+	private SNDPMessage message;
+
+	@Setup
+	public void setup() {
+		NodeId address = incrementAddress(NodeId.of(ZERO_IPv4_ADDRESS));
+		NodeId neighbor = incrementAddress(address);
+		node = BenchNodes.createNode(address, BenchNodes.properties());
+		IntroductionRequest ir = new IntroductionRequest(neighbor, address, neighbor);
+		message = new IntroductionAcceptedMessage(ir, null, neighbor);
+	}
+
+	@Benchmark
+	public SNDPMessageTransmissionProtocol construct() {
+		return new SNDPMessageTransmissionProtocol(node, null, message, verbose);
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.github.glfrazier.snd.simulation;
+
+import static com.github.glfrazier.snd.util.AddressUtils.incrementAddress;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.glfrazier.snd.util.NodeId;
+
+/**
+ * {@link ButterflyNetwork#getNextHopsTo}, as the discovery service invokes it:
+ * from an introducer in the first column to a server proxy, attached to the
+ * last column, that the introducer can reach. The topology is given as rows x
+ * columns x fanout, as in the example property files.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ButterflyNetworkBenchmark {
+
+	private static final int QUERIES = 1024;
+
+	@Param({ "4x3x2", "64x3x4" })
+	public String topology;
+
+	private ButterflyNetwork network;
+	private NodeId[] ends;
+	private NodeId[] starts;
+	private int next;
+
+	@Setup
+	public void setup() throws UnknownHostException {
+		String[] dims = topology.split("x");
+		int rows = Integer.parseInt(dims[0]);
+		int cols = Integer.parseInt(dims[1]);
+		int fanout = Integer.parseInt(dims[2]);
+		network = new ButterflyNetwork(fanout, rows, cols, NodeId.of(InetAddress.getByName("3::0")));
+		NodeId[] lastColumn = network.getLastColumn();
+		NodeId[] proxies = new NodeId[rows];
+		NodeId proxy = NodeId.of(InetAddress.getByName("2::0"));
+		for (int i = 0; i < rows; i++) {
+			proxy = incrementAddress(proxy);
+			network.connectProxy(proxy, lastColumn[i]);
+			proxies[i] = proxy;
+		}
+		NodeId[] firstColumn = network.getFirstColumn();
+		Random random = new Random(0);
+		ends = new NodeId[QUERIES];
+		starts = new NodeId[QUERIES];
+		for (int i = 0; i < QUERIES;) {
+			ends[i] = proxies[random.nextInt(rows)];
+			starts[i] = firstColumn[random.nextInt(rows)];
+			// Query only proxies that the introducer can reach.
+			if (network.getNextHopsTo(ends[i], starts[i]).length > 0) {
+				i++;
+			}
+		}
+	}
+
+	@Benchmark
+	public NodeId[] getNextHopsTo() {
+		int i = next++ & (QUERIES - 1);
+		return network.getNextHopsTo(ends[i], starts[i]);
+	}
+
+}
@@ -0,0 +1,132 @@
+package com.github.glfrazier.snd.simulation;
+
+import static com.github.glfrazier.snd.util.AddressUtils.incrementAddress;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.glfrazier.event.EventingSystem;
+import com.github.glfrazier.snd.node.Node;
+import com.github.glfrazier.snd.protocol.message.Message;
+import com.github.glfrazier.snd.util.NodeId;
+
+/**
+ * Route resolution in {@link SimComms#send(Message)}: the lookup of the VPN to
+ * the destination and, if there is none, of the route to it and the VPN to the
+ * route. The node's VPNs have no remote endpoint, so a SimVPN drops each message
+ * without scheduling its delivery, and only the resolution is measured.
+ *
+ * The node is added to a one-introducer simulation, so that its VPNs share the
+ * simulation's VPN registry.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SimCommsBenchmark {
+
+	private static final int MESSAGES = 1024;
+
+	/** If true, each message is sent via a route rather than directly on a VPN. */
+	@Param({ "false", "true" })
+	public boolean routed;
+
+	@Param({ "16" })
+	public int neighbors;
+
+	@Param({ "10000" })
+	public int destinations;
+
+	private SimComms comms;
+	private Message[] messages;
+	private int next;
+
+	@Setup
+	public void setup() throws Exception {
+		Simulation sim = new Simulation(simulationProperties());
+		ButterflyNetwork topology = new ButterflyNetwork(1, 1, 1, NodeId.of(InetAddress.getByName("30::0")));
+		NodeId address = NodeId.of(InetAddress.getByName("31::1"));
+		SimImpl impl = new SimImpl(sim, topology);
+		EventingSystem es = new EventingSystem("bench", EventingSystem.NOT_REALTIME);
+		Node node = new Node(address, impl, es, sim.getProperties());
+		impl.setNode(node);
+		comms = (SimComms) impl.getComms();
+
+		NodeId[] nbrs = new NodeId[neighbors];
+		NodeId addr = NodeId.of(InetAddress.getByName("32::0"));
+		for (int i = 0; i < neighbors; i++) {
+			addr = incrementAddress(addr);
+			nbrs[i] = addr;
+			impl.getVPNManager().createVPN(addr, null);
+		}
+		NodeId[] dsts = new NodeId[destinations];
+		addr = NodeId.of(InetAddress.getByName("33::0"));
+		Random random = new Random(0);
+		for (int i = 0; i < destinations; i++) {
+			addr = incrementAddress(addr);
+			dsts[i] = addr;
+			comms.addRoute(addr, nbrs[random.nextInt(neighbors)]);
+		}
+		messages = new Message[MESSAGES];
+		for (int i = 0; i < MESSAGES; i++) {
+			NodeId dst = routed ? dsts[random.nextInt(destinations)] : nbrs[random.nextInt(neighbors)];
+			messages[i] = new Message(dst, address);
+		}
+	}
+
+	private static Properties simulationProperties() throws IOException {
+		Properties props = new Properties();
+		props.setProperty("snd.sim.first_appclient_address", "11::0");
+		props.setProperty("snd.sim.first_appserver_address", "12::0");
+		props.setProperty("snd.sim.network_base_address", "03::0");
+		props.setProperty("snd.sim.first_client_address", "01::0");
+		props.setProperty("snd.sim.first_server_address", "02::0");
+		props.setProperty("snd.sim.number_of_introducer_rows", "1");
+		props.setProperty("snd.sim.number_of_introducer_cols", "1");
+		props.setProperty("snd.sim.introducer_fanout", "1");
+		props.setProperty("snd.sim.number_of_servers", "1");
+		props.setProperty("snd.sim.number_of_clients", "1");
+		props.setProperty("snd.sim.client_traffic_exponential", "0.01");
+		props.setProperty("snd.sim.number_of_attackers", "0");
+		props.setProperty("snd.sim.number_of_victims", "0");
+		props.setProperty("snd.sim.attack_probability", "0.0");
+		props.setProperty("snd.sim.sensorFP", "0.0");
+		props.setProperty("snd.sim.sensorFN", "0.0");
+		props.setProperty("snd.sim.seed", "0");
+		props.setProperty("snd.sim.end_time", "200000");
+		props.setProperty("snd.sim.warmup_time", "0");
+		props.setProperty("snd.discovery_service.cache_size", "1000");
+		props.setProperty("snd.thold_ctlr.sensor_smoothing_alpha", "0.1");
+		props.setProperty("snd.thold_ctler.target_health", "0.999");
+		props.setProperty("snd.thold_ctlr.K", "30.0");
+		props.setProperty("snd.thold_ctlr.tau_i", "60.0");
+		props.setProperty("snd.thold_ctlr.tau_t", "0.05");
+		props.setProperty("snd.thold_ctlr.head_space", "0.5");
+		props.setProperty("snd.stats.base_dir", Files.createTempDirectory("snd-bench").toString());
+		return props;
+	}
+
+	@Benchmark
+	public void send() throws IOException {
+		comms.send(messages[next++ & (MESSAGES - 1)]);
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.github.glfrazier.snd.util;
+
+import static com.github.glfrazier.snd.util.AddressUtils.ZERO_IPv6_ADDRESS;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link AddressUtils#incrementAddress} and {@link AddressUtils#addrToString},
+ * for both InetAddresses and NodeIds. The NodeId variants cycle over a fixed set
+ * of addresses, so that the interning table does not grow: after the first
+ * pass, incrementing a NodeId looks up an existing NodeId, and converting one
+ * to a string returns its cached string.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AddressUtilsBenchmark {
+
+	private static final int ADDRESSES = 1024;
+
+	private InetAddress[] addresses;
+	private NodeId[] ids;
+	private int next;
+
+	@Setup
+	public void setup() throws UnknownHostException {
+		addresses = new InetAddress[ADDRESSES];
+		ids = new NodeId[ADDRESSES];
+		// Start at a:b::0 so that the addresses have a run of zeroes to compress.
+		byte[] bytes = ZERO_IPv6_ADDRESS.getAddress();
+		bytes[1] = 0xa;
+		bytes[3] = 0xb;
+		InetAddress addr = InetAddress.getByAddress(bytes);
+		for (int i = 0; i < ADDRESSES; i++) {
+			addr = AddressUtils.incrementAddress(addr);
+			addresses[i] = addr;
+			ids[i] = NodeId.of(addr);
+		}
+	}
+
+	private int index() {
+		return next++ & (ADDRESSES - 1);
+	}
+
+	@Benchmark
+	public InetAddress incrementInetAddress() {
+		return AddressUtils.incrementAddress(addresses[index()]);
+	}
+
+	@Benchmark
+	public NodeId incrementNodeId() {
+		return AddressUtils.incrementAddress(ids[index()]);
+	}
+
+	@Benchmark
+	public String inetAddressToString() {
+		return AddressUtils.addrToString(addresses[index()]);
+	}
+
+	@Benchmark
+	public String nodeIdToString() {
+		return AddressUtils.addrToString(ids[index()]);
+	}
+
+}
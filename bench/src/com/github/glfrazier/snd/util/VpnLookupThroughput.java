@@ -0,0 +1,195 @@
+package com.github.glfrazier.snd.util;
+
+import static com.github.glfrazier.snd.util.AddressUtils.ZERO_IPv6_ADDRESS;
+import static com.github.glfrazier.snd.util.AddressUtils.incrementAddress;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A throughput benchmark for the simulation's VPN registry. Each thread
+ * repeatedly looks up the VPN between a random endpoint and one of its
+ * neighbors, as SimComms.send does; a percentage of the operations instead
+ * close the VPN and reopen it, as SimVPN construction and closing do. The
+ * benchmark compares {@link NodePairMap} with the synchronized map of
+ * synchronized maps that it replaced, and reports operations per second.
+ *
+ * Properties (all optional), given on the command line as name=value:
+ * <ul>
+ * <li>bench.threads (8)</li>
+ * <li>bench.seconds (5) per registry</li>
+ * <li>bench.endpoints (20000)</li>
+ * <li>bench.vpns_per_endpoint (4)</li>
+ * <li>bench.update_percent (1)</li>
+ * <li>bench.registries (pairmap,nested)</li>
+ * </ul>
+ */
+public class VpnLookupThroughput {
+
+	private interface Registry {
+		Object get(NodeId local, NodeId remote);
+
+		void putIfAbsent(NodeId local, NodeId remote, Object vpn);
+
+		void remove(NodeId local, NodeId remote, Object vpn);
+	}
+
+	private static class PairMapRegistry implements Registry {
+		private final NodePairMap<Object> vpns = new NodePairMap<>();
+
+		public Object get(NodeId local, NodeId remote) {
+			return vpns.get(local, remote);
+		}
+
+		public void putIfAbsent(NodeId local, NodeId remote, Object vpn) {
+			vpns.putIfAbsent(local, remote, vpn);
+		}
+
+		public void remove(NodeId local, NodeId remote, Object vpn) {
+			vpns.remove(local, remote, vpn);
+		}
+	}
+
+	/**
+	 * The registry as it was: a synchronized map, from each endpoint to a
+	 * synchronized map of its VPNs.
+	 */
+	private static class NestedRegistry implements Registry {
+		private final Map<NodeId, Map<NodeId, Object>> vpnMapOfMaps = Collections.synchronizedMap(new HashMap<>());
+
+		private Map<NodeId, Object> getVpnMap(NodeId addr) {
+			Map<NodeId, Object> map = vpnMapOfMaps.get(addr);
+			if (map == null) {
+				synchronized (vpnMapOfMaps) {
+					map = vpnMapOfMaps.get(addr);
+					if (map == null) {
+						map = Collections.synchronizedMap(new HashMap<>());
+						vpnMapOfMaps.put(addr, map);
+					}
+				}
+			}
+			return map;
+		}
+
+		public Object get(NodeId local, NodeId remote) {
+			return getVpnMap(local).get(remote);
+		}
+
+		public void putIfAbsent(NodeId local, NodeId remote, Object vpn) {
+			Map<NodeId, Object> map = getVpnMap(local);
+			synchronized (map) {
+				if (!map.containsKey(remote)) {
+					map.put(remote, vpn);
+				}
+			}
+		}
+
+		public void remove(NodeId local, NodeId remote, Object vpn) {
+			getVpnMap(local).remove(remote);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Properties props = PropertyParser.parseCmdLine(args, "bench");
+		int threads = PropertyParser.getIntegerProperty("bench.threads", 8, props);
+		int seconds = PropertyParser.getIntegerProperty("bench.seconds", 5, props);
+		int numEndpoints = PropertyParser.getIntegerProperty("bench.endpoints", 20000, props);
+		int vpnsPerEndpoint = PropertyParser.getIntegerProperty("bench.vpns_per_endpoint", 4, props);
+		int updatePercent = PropertyParser.getIntegerProperty("bench.update_percent", 1, props);
+		String[] registries = PropertyParser.getListProperty("bench.registries", "pairmap,nested", props);
+
+		NodeId[] endpoints = new NodeId[numEndpoints];
+		NodeId addr = NodeId.of(ZERO_IPv6_ADDRESS);
+		for (int i = 0; i < numEndpoints; i++) {
+			addr = incrementAddress(addr);
+			endpoints[i] = addr;
+		}
+		int[][] neighbors = new int[numEndpoints][vpnsPerEndpoint];
+		Random random = new Random(0);
+		for (int i = 0; i < numEndpoints; i++) {
+			for (int j = 0; j < vpnsPerEndpoint; j++) {
+				neighbors[i][j] = random.nextInt(numEndpoints);
+			}
+		}
+
+		System.out.println("threads=" + threads + ", endpoints=" + numEndpoints + ", vpns_per_endpoint="
+				+ vpnsPerEndpoint + ", update_percent=" + updatePercent);
+		for (String type : registries) {
+			Registry registry = createRegistry(type);
+			for (int i = 0; i < numEndpoints; i++) {
+				for (int n : neighbors[i]) {
+					registry.putIfAbsent(endpoints[i], endpoints[n], new Object());
+				}
+			}
+			double opsPerSecond = run(registry, endpoints, neighbors, threads, seconds, updatePercent);
+			System.out.println(String.format("%-12s %,15.0f ops/s", type, opsPerSecond));
+		}
+	}
+
+	private static Registry createRegistry(String type) {
+		switch (type) {
+		case "pairmap":
+			return new PairMapRegistry();
+		case "nested":
+			return new NestedRegistry();
+		default:
+			throw new IllegalArgumentException("Unknown registry type: " + type);
+		}
+	}
+
+	private static double run(Registry registry, NodeId[] endpoints, int[][] neighbors, int threads, int seconds,
+			int updatePercent) throws InterruptedException {
+		AtomicBoolean done = new AtomicBoolean(false);
+		LongAdder ops = new LongAdder();
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch finished = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			final long seed = t;
+			Thread thread = new Thread(() -> {
+				Random random = new Random(seed);
+				long found = 0;
+				long count = 0;
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				while (!done.get()) {
+					int i = random.nextInt(endpoints.length);
+					NodeId local = endpoints[i];
+					NodeId remote = endpoints[neighbors[i][random.nextInt(neighbors[i].length)]];
+					if (random.nextInt(100) < updatePercent) {
+						Object vpn = registry.get(local, remote);
+						if (vpn != null) {
+							registry.remove(local, remote, vpn);
+						}
+						registry.putIfAbsent(local, remote, new Object());
+					} else if (registry.get(local, remote) != null) {
+						found++;
+					}
+					count++;
+				}
+				ops.add(count);
+				if (found < 0) {
+					System.out.print(""); // keep the lookups live
+				}
+				finished.countDown();
+			});
+			thread.start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		Thread.sleep(seconds * 1000L);
+		done.set(true);
+		finished.await();
+		double elapsed = (System.nanoTime() - begin) / 1e9;
+		return ops.sum() / elapsed;
+	}
+
+}
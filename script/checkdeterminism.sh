@@ -0,0 +1,56 @@
+#!/usr/bin/env bash
+#
+# Checks that a deterministic simulation does not depend on its partitioning.
+# The configuration is run with snd.sim.deterministic=true on one partition and
+# on N partitions, and the two runs' results.txt (less execution_time_ms) and
+# CSV files must be identical.
+#
+# Usage: $0 [N [properties_file [property=value ...]]]
+#   N defaults to 4, and the properties file to properties/4x3.props.
+#   Any further properties are passed to both runs. Both runs use the same
+#   seed: 1, unless snd.sim.seed is given.
+#
+# As in runsim.sh, you can add to the classpath via the "XCP" environment
+# variable.
+#
+
+N=${1:-4}
+PROPS=${2:-properties/4x3.props}
+shift 2 2>/dev/null || shift $#
+
+S=';'
+CLASSPATH=bin${S}../Eventing/target/EventFramework-0.0.1.jar${S}../ObjectPool/target/ObjectPool-0.0.1.jar$XCP
+
+OUT=$(mktemp -d)
+trap 'rm -rf $OUT' EXIT
+
+for P in 1 $N; do
+   echo Running $PROPS deterministically on $P partition\(s\)...
+   java -Djava.util.logging.config.file=logging.conf -cp $CLASSPATH com.github.glfrazier.snd.simulation.Simulation \
+      snd.properties_file=$PROPS snd.sim.deterministic=true snd.sim.number_of_partitions=$P \
+      snd.sim.seed=1 snd.stats.base_dir=$OUT/$P "$@" > $OUT/$P.log 2>&1
+   if [ ! -f $OUT/$P/*/000/results.txt ]; then
+      echo The run on $P partition\(s\) did not complete:
+      tail $OUT/$P.log
+      exit 1
+   fi
+   grep -v '^execution_time_ms=' $OUT/$P/*/000/results.txt > $OUT/$P.results
+done
+
+STATUS=0
+if ! diff $OUT/1.results $OUT/$N.results; then
+   echo results.txt differs between 1 and $N partitions.
+   STATUS=1
+fi
+for F in $OUT/1/*/000/*.csv; do
+   [ -f $F ] || continue
+   NAME=$(basename $F)
+   if ! cmp -s $F $OUT/$N/*/000/$NAME; then
+      echo $NAME differs between 1 and $N partitions.
+      STATUS=1
+   fi
+done
+if (( STATUS == 0 )); then
+   echo The runs on 1 and $N partitions are identical.
+fi
+exit $STATUS
@@ -0,0 +1,22 @@
+#!/usr/bin/env bash
+
+#
+# Run a benchmark from bench/target/benchmarks.jar (see README.md for how to
+# build it). With no arguments, or with JMH options (e.g. a benchmark name
+# pattern), run the JMH benchmarks. Otherwise run a stand-alone benchmark main
+# class. For example:
+#    script/runbench.sh ReputationModuleBenchmark -p tableSize=100000
+#    script/runbench.sh com.github.glfrazier.snd.node.ReputationStoreContention bench.threads=8
+#
+
+JAR=bench/target/benchmarks.jar
+if [ ! -f $JAR ]; then
+   echo $JAR does not exist. Build it with: mvn install \&\& mvn -f bench/pom.xml package
+   exit -1
+fi
+
+if [[ $1 == com.github.glfrazier.* ]]; then
+   java -cp $JAR $@
+else
+   java -jar $JAR $@
+fi
@@ -0,0 +1,157 @@
+package com.github.glfrazier.snd.node;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.glfrazier.event.Event;
+import com.github.glfrazier.event.EventProcessor;
+import com.github.glfrazier.event.EventingSystem;
+import com.github.glfrazier.snd.protocol.message.AckMessage;
+import com.github.glfrazier.snd.protocol.message.IntroductionMessage;
+import com.github.glfrazier.snd.protocol.message.SNDPMessage;
+import com.github.glfrazier.snd.util.NodeId;
+
+/**
+ * The acks that a node owes its neighbors. Rather than answering every
+ * {@link SNDPMessage} with an {@link AckMessage} of its own, the node collects
+ * the identifiers of the messages it has received from each neighbor. They are
+ * piggybacked on the next SNDP message the node sends to that neighbor (see
+ * {@link #takeAcksFor(NodeId)}). Whatever has not been piggybacked when the ack
+ * delay expires is sent in one AckMessage per neighbor.
+ *
+ * The delay timer is started by the first ack owed after a flush, so no ack is
+ * held longer than the delay. The delay is set by the
+ * <code>snd.node.ack_delay</code> property; it must leave time for the message
+ * and its ack to cross the link before the sender's ack timeout. A delay of zero
+ * acknowledges every message immediately. The acks owed to a neighbor are
+ * also sent as soon as the VPN to it is about to close.
+ */
+class AckBatcher implements EventProcessor {
+
+	private static final Event FLUSH_EVENT = new Event() {
+		public String toString() {
+			return "ack flush";
+		}
+	};
+
+	/** The identifiers of the messages owed an ack by one neighbor. */
+	private static final class Acks {
+		long[] ids = new long[4];
+		int count;
+
+		void add(long id) {
+			if (count == ids.length) {
+				ids = Arrays.copyOf(ids, 2 * count);
+			}
+			ids[count++] = id;
+		}
+
+		long[] toArray() {
+			return Arrays.copyOf(ids, count);
+		}
+	}
+
+	private final Node node;
+	private final long delay;
+	/** In order of the first ack owed, so that flushes are deterministic. */
+	private final Map<NodeId, Acks> owed = new LinkedHashMap<>();
+	private boolean flushScheduled;
+
+	AckBatcher(Node node, long delay) {
+		this.node = node;
+		this.delay = delay;
+	}
+
+	/**
+	 * Acknowledge a message received from a neighbor, now or within the ack delay.
+	 */
+	void ack(SNDPMessage m) {
+		if (delay == 0) {
+			send(new AckMessage((IntroductionMessage) m));
+			return;
+		}
+		synchronized (this) {
+			Acks acks = owed.get(m.getSrc());
+			if (acks == null) {
+				acks = new Acks();
+				owed.put(m.getSrc(), acks);
+			}
+			acks.add(m.getIdentifier());
+			if (!flushScheduled) {
+				flushScheduled = true;
+				node.getEventingSystem().scheduleEventRelative(this, FLUSH_EVENT, delay);
+			}
+		}
+	}
+
+	/**
+	 * Take the acks owed to a neighbor, to be piggybacked on a message to it.
+	 *
+	 * @return the identifiers of the messages to acknowledge, or null if none are
+	 *         owed
+	 */
+	synchronized long[] takeAcksFor(NodeId nbr) {
+		if (owed.isEmpty()) {
+			return null;
+		}
+		Acks acks = owed.remove(nbr);
+		return acks == null ? null : acks.toArray();
+	}
+
+	/**
+	 * Send the acks owed to a neighbor now, before the VPN to it is closed; once
+	 * it is closed, they could not be sent at all.
+	 */
+	void flush(NodeId nbr) {
+		long[] ids = takeAcksFor(nbr);
+		if (ids != null) {
+			send(new AckMessage(nbr, node.getAddress(), ids));
+		}
+	}
+
+	@Override
+	public void process(Event e, EventingSystem eventingSystem, long currentTime) {
+		if (node.hasMailbox()) {
+			node.runSerialized(this::flush);
+		} else {
+			flush();
+		}
+	}
+
+	/**
+	 * Send every ack still owed, one AckMessage per neighbor. The acks are sent
+	 * outside of this batcher's monitor.
+	 */
+	private void flush() {
+		List<AckMessage> messages;
+		synchronized (this) {
+			flushScheduled = false;
+			messages = new ArrayList<>(owed.size());
+			for (Map.Entry<NodeId, Acks> entry : owed.entrySet()) {
+				messages.add(new AckMessage(entry.getKey(), node.getAddress(), entry.getValue().toArray()));
+			}
+			owed.clear();
+		}
+		for (AckMessage ack : messages) {
+			send(ack);
+		}
+	}
+
+	private void send(AckMessage ack) {
+		try {
+			node.implementation.getComms().send(ack);
+		} catch (IOException e) {
+			// We don't really care about failed ack transmissions
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "AckBatcher(" + node + ")";
+	}
+
+}
@@ -0,0 +1,202 @@
+package com.github.glfrazier.snd.node;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+import com.github.glfrazier.snd.util.NodeId;
+
+/**
+ * A compact reputation store. Entities are keyed by their 128-bit address (an
+ * IPv4 address is stored as its IPv4-mapped IPv6 address), held as a pair of
+ * longs in an open-addressing hash table with linear probing. The table is a
+ * set of parallel primitive arrays, so each slot costs 24 bytes; the table is
+ * kept between three eighths and three quarters full, or 32 to 64 bytes per
+ * entity. The alternative is an Entity and a HashMap node per entity. The
+ * low-reputation index is keyed by slot. A slot whose reputation is NaN is
+ * empty; entities are never removed.
+ *
+ * All operations are synchronized on the table. The table calls into its
+ * low-reputation index only while holding its own monitor, so the index's
+ * callbacks (which re-enter the table) cannot deadlock.
+ */
+class AddressReputationTable implements ReputationStore {
+
+	private static final int INITIAL_CAPACITY = 1024; // must be a power of two
+	private static final float MAX_LOAD = 0.75f;
+
+	private final LongSupplier fadeEpoch;
+	private final boolean lazyFade;
+	private final LowReputationIndex lowReputationIndex;
+
+	private long[] addrHigh;
+	private long[] addrLow;
+	private float[] reputation;
+	private int[] lastFadeEpoch; // fade epochs fit in an int for any plausible run
+	private int size;
+
+	/**
+	 * @param fadeEpoch              the source of the current fade epoch
+	 * @param lazyFade               whether entities are faded when read or
+	 *                               adjusted
+	 * @param lowReputationCacheSize the target size of the low-reputation cache
+	 */
+	AddressReputationTable(LongSupplier fadeEpoch, boolean lazyFade, int lowReputationCacheSize) {
+		this.fadeEpoch = fadeEpoch;
+		this.lazyFade = lazyFade;
+		this.lowReputationIndex = new LowReputationIndex(lowReputationCacheSize,
+				ReputationModule.FAST_FADE_MULTIPLIER, fadeEpoch, this::getReputation, this::occupiedSlots);
+		allocate(INITIAL_CAPACITY);
+	}
+
+	private void allocate(int capacity) {
+		addrHigh = new long[capacity];
+		addrLow = new long[capacity];
+		reputation = new float[capacity];
+		lastFadeEpoch = new int[capacity];
+		Arrays.fill(reputation, Float.NaN);
+	}
+
+	private static int hash(long hi, long lo) {
+		long h = hi * 0x9E3779B97F4A7C15L ^ lo;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+
+	/**
+	 * @return the slot holding the address, or (-1 - the empty slot where it would
+	 *         be inserted) if it is absent
+	 */
+	private int find(long hi, long lo) {
+		int mask = reputation.length - 1;
+		int slot = hash(hi, lo) & mask;
+		while (!Float.isNaN(reputation[slot])) {
+			if (addrHigh[slot] == hi && addrLow[slot] == lo) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1 - slot;
+	}
+
+	private int find(NodeId entity) {
+		return find(entity.getAddressHigh(), entity.getAddressLow());
+	}
+
+	/**
+	 * @return the reputation in the slot, faded to the current fade epoch
+	 */
+	private synchronized float getReputation(int slot) {
+		float rep = reputation[slot];
+		if (lazyFade) {
+			long epoch = fadeEpoch.getAsLong();
+			if (epoch > lastFadeEpoch[slot]) {
+				rep = ReputationModule.fade(rep, epoch - lastFadeEpoch[slot]);
+				reputation[slot] = rep;
+				lastFadeEpoch[slot] = (int) epoch;
+			}
+		}
+		return rep;
+	}
+
+	private synchronized int[] occupiedSlots() {
+		int[] slots = new int[size];
+		int n = 0;
+		for (int i = 0; i < reputation.length; i++) {
+			if (!Float.isNaN(reputation[i])) {
+				slots[n++] = i;
+			}
+		}
+		return slots;
+	}
+
+	@Override
+	public synchronized float getReputation(NodeId entity) {
+		int slot = find(entity);
+		if (slot < 0) {
+			return Float.NaN;
+		}
+		return getReputation(slot);
+	}
+
+	@Override
+	public synchronized boolean createIfAbsent(NodeId entity, float initialReputation) {
+		if (Float.isNaN(initialReputation)) {
+			throw new IllegalArgumentException("A reputation cannot be NaN.");
+		}
+		long hi = entity.getAddressHigh();
+		long lo = entity.getAddressLow();
+		int slot = find(hi, lo);
+		if (slot >= 0) {
+			return false;
+		}
+		if (size + 1 > reputation.length * MAX_LOAD) {
+			grow();
+			slot = find(hi, lo);
+		}
+		slot = -1 - slot;
+		addrHigh[slot] = hi;
+		addrLow[slot] = lo;
+		reputation[slot] = initialReputation;
+		lastFadeEpoch[slot] = (int) fadeEpoch.getAsLong();
+		size++;
+		lowReputationIndex.update(slot);
+		return true;
+	}
+
+	private void grow() {
+		long[] oldHigh = addrHigh;
+		long[] oldLow = addrLow;
+		float[] oldRep = reputation;
+		int[] oldEpoch = lastFadeEpoch;
+		allocate(oldRep.length * 2);
+		for (int i = 0; i < oldRep.length; i++) {
+			if (!Float.isNaN(oldRep[i])) {
+				int slot = -1 - find(oldHigh[i], oldLow[i]);
+				addrHigh[slot] = oldHigh[i];
+				addrLow[slot] = oldLow[i];
+				reputation[slot] = oldRep[i];
+				lastFadeEpoch[slot] = oldEpoch[i];
+			}
+		}
+		// The index is keyed by slot, and the slots have moved.
+		lowReputationIndex.invalidate();
+	}
+
+	@Override
+	public synchronized boolean adjustReputation(NodeId entity, float dRep, float maxReputation) {
+		int slot = find(entity);
+		if (slot < 0) {
+			return false;
+		}
+		float rep = getReputation(slot) + dRep;
+		if (rep > maxReputation) {
+			rep = maxReputation;
+		}
+		reputation[slot] = rep;
+		lowReputationIndex.update(slot);
+		return true;
+	}
+
+	@Override
+	public synchronized float getLeastReputation() {
+		return lowReputationIndex.getLeastReputation();
+	}
+
+	@Override
+	public synchronized void fadeAll() {
+		for (int i = 0; i < reputation.length; i++) {
+			float rep = reputation[i];
+			if (rep < 0) { // false for NaN (empty) slots
+				reputation[i] = ReputationModule.fade(rep, 1);
+			}
+		}
+	}
+
+	@Override
+	public synchronized int size() {
+		return size;
+	}
+
+}
@@ -0,0 +1,178 @@
+package com.github.glfrazier.snd.node;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import com.github.glfrazier.snd.util.NodeId;
+
+/**
+ * A reputation store whose reads never block. Entities are held in a
+ * {@link ConcurrentHashMap}, and each entity's state is a single
+ * {@link AtomicLong} that packs the fade epoch of the reputation (upper 32
+ * bits) with the reputation's float bits (lower 32 bits). Reading a reputation
+ * fades the value in closed form without writing it back; adjusting a
+ * reputation is a compare-and-set loop that stores the faded, adjusted value
+ * with the current epoch.
+ *
+ * The low-reputation index is still updated under its own monitor, but only by
+ * entity creation and adjustment, so introduction decisions (which only read)
+ * never wait on it. Creation also takes the store's monitor, to give the new
+ * entity its handle in the index: the order in which it was created.
+ */
+class ConcurrentReputationStore implements ReputationStore {
+
+	/** An entity's packed state, and its handle in the low-reputation index. */
+	private static final class Entity extends AtomicLong {
+		private static final long serialVersionUID = 1L;
+
+		final int handle;
+
+		Entity(int handle, long state) {
+			super(state);
+			this.handle = handle;
+		}
+	}
+
+	private final ConcurrentHashMap<NodeId, Entity> entities = new ConcurrentHashMap<>();
+	/** The entities, by handle. Guarded by this store's monitor. */
+	private Entity[] byHandle = new Entity[16];
+	private int count;
+	private final LowReputationIndex lowReputationIndex;
+	private final LongSupplier fadeEpoch;
+	private final boolean lazyFade;
+
+	/**
+	 * @param fadeEpoch              the source of the current fade epoch
+	 * @param lazyFade               whether entities are faded when read or
+	 *                               adjusted
+	 * @param lowReputationCacheSize the target size of the low-reputation cache
+	 */
+	ConcurrentReputationStore(LongSupplier fadeEpoch, boolean lazyFade, int lowReputationCacheSize) {
+		this.fadeEpoch = fadeEpoch;
+		this.lazyFade = lazyFade;
+		this.lowReputationIndex = new LowReputationIndex(lowReputationCacheSize,
+				ReputationModule.FAST_FADE_MULTIPLIER, fadeEpoch, this::currentReputation, this::handles);
+	}
+
+	private static long pack(long epoch, float reputation) {
+		return (epoch << 32) | (Float.floatToRawIntBits(reputation) & 0xffffffffL);
+	}
+
+	private static long epochOf(long state) {
+		return state >>> 32;
+	}
+
+	private static float reputationOf(long state) {
+		return Float.intBitsToFloat((int) state);
+	}
+
+	/**
+	 * @return the reputation held in the state, faded to <code>epoch</code>
+	 */
+	private float reputationAt(long state, long epoch) {
+		float rep = reputationOf(state);
+		if (lazyFade) {
+			rep = ReputationModule.fade(rep, epoch - epochOf(state));
+		}
+		return rep;
+	}
+
+	private float currentReputation(AtomicLong entity) {
+		return reputationAt(entity.get(), fadeEpoch.getAsLong());
+	}
+
+	private float currentReputation(int handle) {
+		Entity e;
+		synchronized (this) {
+			e = byHandle[handle];
+		}
+		return currentReputation(e);
+	}
+
+	private synchronized int[] handles() {
+		int[] handles = new int[count];
+		for (int i = 0; i < count; i++) {
+			handles[i] = i;
+		}
+		return handles;
+	}
+
+	@Override
+	public float getReputation(NodeId entity) {
+		AtomicLong e = entities.get(entity);
+		if (e == null) {
+			return Float.NaN;
+		}
+		return currentReputation(e);
+	}
+
+	@Override
+	public boolean createIfAbsent(NodeId entity, float initialReputation) {
+		// Most calls are for entities that already exist; don't allocate for them.
+		if (entities.containsKey(entity)) {
+			return false;
+		}
+		Entity e;
+		synchronized (this) {
+			if (entities.containsKey(entity)) {
+				return false;
+			}
+			if (count == byHandle.length) {
+				byHandle = Arrays.copyOf(byHandle, 2 * count);
+			}
+			e = new Entity(count, pack(fadeEpoch.getAsLong(), initialReputation));
+			byHandle[count++] = e;
+			entities.put(entity, e);
+		}
+		lowReputationIndex.update(e.handle);
+		return true;
+	}
+
+	@Override
+	public boolean adjustReputation(NodeId entity, float dRep, float maxReputation) {
+		Entity e = entities.get(entity);
+		if (e == null) {
+			return false;
+		}
+		long epoch = fadeEpoch.getAsLong();
+		long state;
+		long newState;
+		do {
+			state = e.get();
+			// Another thread may have stored the state at a later epoch than ours.
+			long stateEpoch = lazyFade ? Math.max(epoch, epochOf(state)) : epochOf(state);
+			float rep = reputationAt(state, stateEpoch) + dRep;
+			if (rep > maxReputation) {
+				rep = maxReputation;
+			}
+			newState = pack(stateEpoch, rep);
+		} while (!e.compareAndSet(state, newState));
+		lowReputationIndex.update(e.handle);
+		return true;
+	}
+
+	@Override
+	public float getLeastReputation() {
+		return lowReputationIndex.getLeastReputation();
+	}
+
+	@Override
+	public void fadeAll() {
+		for (AtomicLong e : entities.values()) {
+			long state;
+			long newState;
+			do {
+				state = e.get();
+				newState = pack(epochOf(state), ReputationModule.fade(reputationOf(state), 1));
+			} while (!e.compareAndSet(state, newState));
+		}
+	}
+
+	@Override
+	public int size() {
+		return entities.size();
+	}
+
+}
@@ -0,0 +1,207 @@
+package com.github.glfrazier.snd.node;
+
+import static com.github.glfrazier.snd.util.AddressUtils.addrToString;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import com.github.glfrazier.event.EventingSystem;
+import com.github.glfrazier.snd.util.NodeId;
+
+/**
+ * The original reputation store: a synchronized map from address to an
+ * {@link Entity} object. Each entity's handle in the low-reputation index is
+ * the order in which it was created; entities are never removed.
+ */
+class EntityReputationStore implements ReputationStore {
+
+	private final Map<NodeId, Entity> userMap;
+	/** The entities, by handle. Guarded by userMap's monitor. */
+	private Entity[] entities = new Entity[16];
+	private int count;
+	private final LowReputationIndex lowReputationIndex;
+	private final EventingSystem eventingSystem;
+	private final LongSupplier fadeEpoch;
+	private final boolean lazyFade;
+
+	/**
+	 * @param eventingSystem         the source of the current time
+	 * @param fadeEpoch              the source of the current fade epoch
+	 * @param lazyFade               whether entities are faded when read or
+	 *                               adjusted
+	 * @param lowReputationCacheSize the target size of the low-reputation cache
+	 */
+	EntityReputationStore(EventingSystem eventingSystem, LongSupplier fadeEpoch, boolean lazyFade,
+			int lowReputationCacheSize) {
+		this.eventingSystem = eventingSystem;
+		this.fadeEpoch = fadeEpoch;
+		this.lazyFade = lazyFade;
+		this.userMap = Collections.synchronizedMap(new HashMap<>());
+		this.lowReputationIndex = new LowReputationIndex(lowReputationCacheSize,
+				ReputationModule.FAST_FADE_MULTIPLIER, fadeEpoch, this::reputationOf, this::handles);
+	}
+
+	private float reputationOf(int handle) {
+		Entity e;
+		synchronized (userMap) {
+			e = entities[handle];
+		}
+		return e.getReputation();
+	}
+
+	private int[] handles() {
+		synchronized (userMap) {
+			int[] handles = new int[count];
+			for (int i = 0; i < count; i++) {
+				handles[i] = i;
+			}
+			return handles;
+		}
+	}
+
+	@Override
+	public float getReputation(NodeId entity) {
+		Entity e = userMap.get(entity);
+		if (e == null) {
+			return Float.NaN;
+		}
+		return e.getReputation();
+	}
+
+	@Override
+	public boolean createIfAbsent(NodeId entity, float initialReputation) {
+		// Most calls are for entities that already exist; don't allocate for them.
+		if (userMap.containsKey(entity)) {
+			return false;
+		}
+		Entity e;
+		synchronized (userMap) {
+			if (userMap.containsKey(entity)) {
+				return false;
+			}
+			if (count == entities.length) {
+				entities = Arrays.copyOf(entities, 2 * count);
+			}
+			e = new Entity(entity, initialReputation, count);
+			entities[count++] = e;
+			userMap.put(entity, e);
+		}
+		lowReputationIndex.update(e.handle);
+		return true;
+	}
+
+	@Override
+	public boolean adjustReputation(NodeId entity, float dRep, float maxReputation) {
+		Entity e = userMap.get(entity);
+		if (e == null) {
+			return false;
+		}
+		e.adjustReputation(dRep, maxReputation);
+		return true;
+	}
+
+	@Override
+	public float getLeastReputation() {
+		return lowReputationIndex.getLeastReputation();
+	}
+
+	@Override
+	public void fadeAll() {
+		synchronized (userMap) {
+			for (Entity e : userMap.values()) {
+				e.fastFade();
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return userMap.size();
+	}
+
+	class Entity implements Comparable<Entity> {
+
+		NodeId identity;
+		final int handle;
+		long timeCreated;
+		long timeOfLastFeedback;
+		long lastFadeEpoch;
+		float reputation;
+
+		public Entity(NodeId id, float initialReputation, int handle) {
+			identity = id;
+			this.handle = handle;
+			reputation = initialReputation;
+			timeCreated = eventingSystem.getCurrentTime();
+			lastFadeEpoch = fadeEpoch.getAsLong();
+		}
+
+		public void adjustReputation(float dRep, float maxReputation) {
+			synchronized (this) {
+				timeOfLastFeedback = eventingSystem.getCurrentTime();
+				fade(); // apply the fade
+				reputation += dRep;
+				if (reputation > maxReputation) {
+					reputation = maxReputation;
+				}
+			}
+			// Outside of this entity's monitor, to respect the index's lock ordering.
+			lowReputationIndex.update(handle);
+		}
+
+		/**
+		 * Apply, in closed form, the fades that would have been applied by
+		 * {@link #fastFade()} since this entity was last faded. Only used when fading
+		 * lazily. Must be invoked while holding this entity's monitor.
+		 */
+		private void fade() {
+			if (!lazyFade) {
+				return;
+			}
+			long epoch = fadeEpoch.getAsLong();
+			if (epoch > lastFadeEpoch) {
+				reputation = ReputationModule.fade(reputation, epoch - lastFadeEpoch);
+				lastFadeEpoch = epoch;
+			}
+		}
+
+		/**
+		 * What makes fastFade() "fast" is that the FADE_RATE (how quickly the
+		 * reputations move towards zero over time) and the FADE_INTERVAL (how long it
+		 * has been since fastFade() was last invoked) are both constants.
+		 */
+		public synchronized void fastFade() {
+			reputation = ReputationModule.fade(reputation, 1);
+		}
+
+		public synchronized float getReputation() {
+			fade();
+			return reputation;
+		}
+
+		@Override
+		public int hashCode() {
+			return identity.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			Entity ou = (Entity) o;
+			return identity.equals(ou.identity);
+		}
+
+		@Override
+		public int compareTo(Entity o) {
+			return Float.compare(reputation, o.reputation);
+		}
+
+		@Override
+		public String toString() {
+			return "Entity " + addrToString(identity);
+		}
+	}
+
+}
@@ -0,0 +1,140 @@
+package com.github.glfrazier.snd.node;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import com.github.glfrazier.snd.protocol.IntroductionRequest;
+import com.github.glfrazier.snd.util.NodeId;
+
+/**
+ * The introduction paths by which a {@link ProxyNode} recently connected to the
+ * proxies of its destinations. A path is the sequence of introducers that the
+ * proxy asked for introductions, and the introduction request that it made of
+ * each.
+ *
+ * A path expires a fixed time after it was put, which the proxy node sets to
+ * its feedback expiration time: an introducer only remembers how it knows the
+ * proxy (the request by which it was introduced) for that long.
+ *
+ * While a path is cached it holds the proxy's VPN to its last introducer open,
+ * which changes the topology being simulated. Proxies therefore only cache
+ * their paths if the <code>snd.node.introduction_path_cache</code> property is
+ * true; it is false by default.
+ *
+ * Every path has the same time-to-live, so the paths are kept in the order in
+ * which they expire, and {@link #expire()} only visits the expired ones. The
+ * cache is not synchronized; it is only used in the proxy node's execution
+ * context.
+ */
+public class IntroductionPathCache {
+
+	public static final class Path {
+		private final NodeId[] introducers;
+		private final IntroductionRequest[] requests;
+		private final long expiration;
+
+		private Path(NodeId[] introducers, IntroductionRequest[] requests, long expiration) {
+			this.introducers = introducers;
+			this.requests = requests;
+			this.expiration = expiration;
+		}
+
+		/**
+		 * @return the number of introductions in the path
+		 */
+		public int getDepth() {
+			return introducers.length;
+		}
+
+		/**
+		 * @param depth the depth of the introduction, from 1
+		 * @return the introducer asked at that depth
+		 */
+		public NodeId getIntroducer(int depth) {
+			return introducers[depth - 1];
+		}
+
+		/**
+		 * @param depth the depth of the introduction, from 1
+		 * @return the introduction request made at that depth
+		 */
+		public IntroductionRequest getRequest(int depth) {
+			return requests[depth - 1];
+		}
+	}
+
+	private final long timeToLive;
+	private final LongSupplier clock;
+	/** In order of expiration: a path that is put again moves to the end. */
+	private final Map<NodeId, Path> paths = new LinkedHashMap<>();
+
+	/**
+	 * @param timeToLive how long a path lives after it is put
+	 * @param clock      the source of the current time
+	 */
+	public IntroductionPathCache(long timeToLive, LongSupplier clock) {
+		this.timeToLive = timeToLive;
+		this.clock = clock;
+	}
+
+	/**
+	 * @param destination  the proxy that the path connected to
+	 * @param introducers  the introducer asked at each depth
+	 * @param requests     the introduction request made at each depth
+	 * @return the path that this one replaces, or null if there is none
+	 */
+	public Path put(NodeId destination, NodeId[] introducers, IntroductionRequest[] requests) {
+		if (introducers.length == 0 || introducers.length != requests.length) {
+			throw new IllegalArgumentException("A path needs one request per introducer.");
+		}
+		Path old = paths.remove(destination);
+		paths.put(destination, new Path(introducers, requests, clock.getAsLong() + timeToLive));
+		return old;
+	}
+
+	/**
+	 * Remove the path to a destination, so that it can be walked again.
+	 *
+	 * @return the path, or null if there is none. An expired path that has not
+	 *         yet been swept is returned, so that the caller can release it, but
+	 *         see {@link #isExpired(Path)}.
+	 */
+	public Path take(NodeId destination) {
+		return paths.remove(destination);
+	}
+
+	public boolean isExpired(Path path) {
+		return path.expiration <= clock.getAsLong();
+	}
+
+	/**
+	 * Remove the paths that have expired.
+	 *
+	 * @return the removed paths
+	 */
+	public List<Path> expire() {
+		List<Path> expired = null;
+		long now = clock.getAsLong();
+		for (Iterator<Path> i = paths.values().iterator(); i.hasNext();) {
+			Path path = i.next();
+			if (path.expiration > now) {
+				break;
+			}
+			i.remove();
+			if (expired == null) {
+				expired = new ArrayList<>();
+			}
+			expired.add(path);
+		}
+		return expired == null ? List.of() : expired;
+	}
+
+	public int size() {
+		return paths.size();
+	}
+
+}
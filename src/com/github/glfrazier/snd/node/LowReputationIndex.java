@@ -0,0 +1,276 @@
+package com.github.glfrazier.snd.node;
+
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * A small cache of the lowest-reputation entities in a {@link ReputationStore},
+ * so that the least reputation can be found without sorting every entity.
+ *
+ * The store identifies each entity to the index by an int handle: a slot of an
+ * {@link AddressReputationTable}, or the order in which an object-keyed store
+ * created the entity. The members are held in an open-addressing set of
+ * primitive ints, so neither an update nor a query boxes a handle.
+ *
+ * The cache holds the entities whose reputation is below
+ * {@link #upperBound}, and as many of those whose reputation equals it as fit.
+ * Every entity outside of the cache then has a reputation at or above every
+ * member's, so the least reputation in the store is the least reputation in
+ * the cache. Membership is updated each time an entity's reputation changes. If
+ * the cache grows beyond twice its target size, the upper bound is lowered
+ * until it holds the target number of entities; if it empties, the upper bound
+ * is recomputed from the full population. Fading moves every negative
+ * reputation towards zero by the same factor, so applying the same factor to
+ * the upper bound preserves membership; the bound is faded lazily, using the
+ * reputation module's fade epoch.
+ *
+ * The set has a fixed capacity of twice the target size, which is why entities
+ * that tie the upper bound are only admitted while there is room. (Entities are
+ * created with the same initial reputation, so such ties are common.)
+ *
+ * Lock ordering: the index's monitor is acquired before any monitor taken by
+ * the reputation or population functions, never after.
+ */
+class LowReputationIndex {
+
+	private static final int EMPTY = -1;
+
+	private final int targetSize;
+	private final double fadeMultiplier;
+	private final LongSupplier fadeEpoch;
+	private final IntToDoubleFunction reputationOf;
+	private final Supplier<int[]> population;
+	/** The members, probed linearly; sized to be at most half full. */
+	private final int[] members;
+	private final int mask;
+	private int size;
+	private float upperBound;
+	private long upperBoundEpoch;
+	private boolean valid;
+
+	/**
+	 * @param targetSize     the number of entities the cache aims to hold
+	 * @param fadeMultiplier each fade epoch, negative reputations are multiplied by
+	 *                       exp(fadeMultiplier)
+	 * @param fadeEpoch      the source of the current fade epoch
+	 * @param reputationOf   the current (faded) reputation of an entity, by handle
+	 * @param population     the handle of every entity in the store; only used
+	 *                       when the index must be rebuilt
+	 */
+	LowReputationIndex(int targetSize, double fadeMultiplier, LongSupplier fadeEpoch,
+			IntToDoubleFunction reputationOf, Supplier<int[]> population) {
+		if (targetSize < 1) {
+			throw new IllegalArgumentException("The low-reputation cache must hold at least one entity.");
+		}
+		this.targetSize = targetSize;
+		this.fadeMultiplier = fadeMultiplier;
+		this.fadeEpoch = fadeEpoch;
+		this.reputationOf = reputationOf;
+		this.population = population;
+		int capacity = Integer.highestOneBit(2 * (2 * targetSize + 1) - 1) << 1;
+		this.members = new int[capacity];
+		this.mask = capacity - 1;
+		Arrays.fill(members, EMPTY);
+	}
+
+	private float reputationOf(int e) {
+		return (float) reputationOf.applyAsDouble(e);
+	}
+
+	/**
+	 * Notification that the reputation of an entity has been assigned or changed.
+	 * The entity's current reputation is read under the index's monitor, so
+	 * concurrent updates of the same entity cannot leave a stale membership
+	 * behind.
+	 *
+	 * @param e the entity's handle
+	 */
+	synchronized void update(int e) {
+		if (!valid) {
+			// The next query rebuilds the index from the full population.
+			return;
+		}
+		float rep = reputationOf(e);
+		float bound = getUpperBound();
+		if (rep < bound || (rep == bound && size < 2 * targetSize)) {
+			add(e);
+			if (size > 2 * targetSize) {
+				shrink();
+			}
+		} else if (rep > bound) {
+			remove(e);
+		}
+	}
+
+	/**
+	 * @return the upper bound, faded to the current fade epoch
+	 */
+	private float getUpperBound() {
+		long epoch = fadeEpoch.getAsLong();
+		if (epoch > upperBoundEpoch) {
+			if (upperBound < 0) {
+				upperBound *= Math.exp((epoch - upperBoundEpoch) * fadeMultiplier);
+			}
+			upperBoundEpoch = epoch;
+		}
+		return upperBound;
+	}
+
+	private void setUpperBound(float bound) {
+		upperBound = bound;
+		upperBoundEpoch = fadeEpoch.getAsLong();
+	}
+
+	/**
+	 * Discard the contents of the index, so that it is rebuilt on the next query.
+	 * Used when the store's handles for its entities change.
+	 */
+	synchronized void invalidate() {
+		valid = false;
+		clear();
+	}
+
+	/**
+	 * @return the least reputation of any entity, or
+	 *         {@link Float#POSITIVE_INFINITY} if there are no entities.
+	 */
+	synchronized float getLeastReputation() {
+		if (!valid || size == 0) {
+			rebuild();
+		}
+		float least = Float.POSITIVE_INFINITY;
+		for (int e : members) {
+			if (e != EMPTY) {
+				float rep = reputationOf(e);
+				if (rep < least) {
+					least = rep;
+				}
+			}
+		}
+		return least;
+	}
+
+	synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Repopulate the cache from the entire population. This is an O(n log n)
+	 * operation, but it only happens when the index is first used and in the
+	 * unusual case where every member of the cache has risen above the upper
+	 * bound.
+	 */
+	private void rebuild() {
+		int[] entities = population.get();
+		clear();
+		valid = true;
+		if (entities.length <= targetSize) {
+			setUpperBound(Float.POSITIVE_INFINITY);
+			for (int e : entities) {
+				add(e);
+			}
+			return;
+		}
+		float[] reps = new float[entities.length];
+		for (int i = 0; i < reps.length; i++) {
+			reps[i] = reputationOf(entities[i]);
+		}
+		float[] sorted = reps.clone();
+		Arrays.sort(sorted);
+		float bound = sorted[targetSize - 1];
+		setUpperBound(bound);
+		// At most targetSize - 1 entities lie below the bound; the ties fill the rest.
+		for (int i = 0; i < reps.length; i++) {
+			if (reps[i] < bound) {
+				add(entities[i]);
+			}
+		}
+		for (int i = 0; i < reps.length && size < 2 * targetSize; i++) {
+			if (reps[i] == bound) {
+				add(entities[i]);
+			}
+		}
+	}
+
+	/**
+	 * Lower the upper bound so that the cache holds (approximately, as ties are
+	 * kept together) the target number of entities. Should the ties at the new
+	 * bound still overfill the set, the surplus ties are dropped.
+	 */
+	private void shrink() {
+		int[] entities = new int[size];
+		float[] reps = new float[size];
+		int n = 0;
+		for (int e : members) {
+			if (e != EMPTY) {
+				entities[n] = e;
+				reps[n++] = reputationOf(e);
+			}
+		}
+		float[] sorted = reps.clone();
+		Arrays.sort(sorted);
+		float bound = sorted[targetSize - 1];
+		setUpperBound(bound);
+		for (int i = 0; i < n; i++) {
+			if (reps[i] > bound) {
+				remove(entities[i]);
+			}
+		}
+		for (int i = 0; i < n && size > 2 * targetSize; i++) {
+			if (reps[i] == bound) {
+				remove(entities[i]);
+			}
+		}
+	}
+
+	private int slot(int e) {
+		int h = e * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private void add(int e) {
+		int i = slot(e);
+		while (members[i] != EMPTY) {
+			if (members[i] == e) {
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		members[i] = e;
+		size++;
+	}
+
+	private void remove(int e) {
+		int i = slot(e);
+		while (members[i] != e) {
+			if (members[i] == EMPTY) {
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		// Shift back each following member of the probe sequence that would no
+		// longer be found once slot i is empty.
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (members[j] == EMPTY) {
+				break;
+			}
+			int home = slot(members[j]);
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				members[i] = members[j];
+				i = j;
+			}
+		}
+		members[i] = EMPTY;
+		size--;
+	}
+
+	private void clear() {
+		Arrays.fill(members, EMPTY);
+		size = 0;
+	}
+
+}
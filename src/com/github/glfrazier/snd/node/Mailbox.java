@@ -0,0 +1,41 @@
+package com.github.glfrazier.snd.node;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A single-writer execution context for a node. Tasks submitted to the mailbox
+ * run one at a time, in submission order, and never concurrently. No thread
+ * ever waits for a node: the thread that finds the mailbox idle drains it,
+ * running its own task and any tasks that other threads enqueue meanwhile.
+ * Threads that find the mailbox busy enqueue their task and return.
+ *
+ * A task that submits another task to the same mailbox (e.g., a node event
+ * handler that triggers another of the node's handlers) does not run it
+ * recursively; the new task runs after the current one completes.
+ *
+ * Mailboxes are a correctness fallback for eventing threads that share nodes;
+ * they do not assign nodes to threads. A partitioned simulation does that.
+ */
+class Mailbox {
+
+	private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean draining = new AtomicBoolean(false);
+
+	void execute(Runnable task) {
+		queue.add(task);
+		// Loop in case a task was enqueued after the drainer's last poll but before
+		// it released the mailbox.
+		while (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+			try {
+				Runnable t;
+				while ((t = queue.poll()) != null) {
+					t.run();
+				}
+			} finally {
+				draining.set(false);
+			}
+		}
+	}
+
+}
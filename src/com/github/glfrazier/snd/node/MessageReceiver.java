@@ -1,9 +1,9 @@
 package com.github.glfrazier.snd.node;
 
-import java.net.InetAddress;
 
 import com.github.glfrazier.event.EventProcessor;
 import com.github.glfrazier.snd.protocol.message.Message;
+import com.github.glfrazier.snd.util.NodeId;
 
 /**
  * This interface facilitates building the simulation, by allowing there to be
@@ -18,13 +18,13 @@ public interface MessageReceiver extends EventProcessor {
 	 * 
 	 * @return the address
 	 */
-	public InetAddress getAddress();
+	public NodeId getAddress();
 	
 	/**
 	 * Notification of VPN closure.
 	 * 
 	 * @param nbr address of the neighbor to which the VPN has closed.
 	 */
-	public void vpnClosed(InetAddress nbr);
+	public void vpnClosed(NodeId nbr);
 	
 }
@@ -2,11 +2,10 @@ package com.github.glfrazier.snd.node;
 
 import static com.github.glfrazier.snd.util.AddressUtils.addrToString;
 import static java.util.logging.Level.FINE;
+import static java.util.logging.Level.FINEST;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.net.InetAddress;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -23,7 +22,9 @@ import com.github.glfrazier.snd.protocol.IntroducerProtocol;
 import com.github.glfrazier.snd.protocol.IntroductionProtocol;
 import com.github.glfrazier.snd.protocol.IntroductionRequest;
 import com.github.glfrazier.snd.protocol.Pedigree;
+import com.github.glfrazier.snd.protocol.ProtocolStateMachine;
 import com.github.glfrazier.snd.protocol.RequesterProtocol;
+import com.github.glfrazier.snd.protocol.RetransmissionManager;
 import com.github.glfrazier.snd.protocol.SNDPMessageTransmissionProtocol;
 import com.github.glfrazier.snd.protocol.TargetProtocol;
 import com.github.glfrazier.snd.protocol.message.AckMessage;
@@ -36,13 +37,22 @@ import com.github.glfrazier.snd.protocol.message.Message;
 import com.github.glfrazier.snd.protocol.message.SNDPMessage;
 import com.github.glfrazier.snd.util.AddressUtils.AddressPair;
 import com.github.glfrazier.snd.util.DiscoveryService.Query;
+import com.github.glfrazier.snd.util.ExpiringMap;
 import com.github.glfrazier.snd.util.Implementation;
+import com.github.glfrazier.snd.util.NodeId;
 import com.github.glfrazier.snd.util.PropertyParser;
-import com.github.glfrazier.statemachine.StateMachine;
 
 /**
  * A node in the Social Network Defense network. Implements the SND protocol for
  * establishing VPNs between trusted entities.
+ *
+ * A node is run by one thread at a time, so its state is not locked. Every
+ * event enters the node through {@link #runSerialized(Runnable)}; when several
+ * eventing threads share the nodes, the node must have a mailbox (see
+ * {@link #hasMailbox()}). Otherwise the node is run by a single thread: the
+ * eventing thread, or the thread of the partition that the node is sharded to.
+ * Its components (the reputation module, ack timers, expiring maps and caches)
+ * keep their own locks, so that other threads may read their statistics.
  */
 public class Node implements EventProcessor, MessageReceiver {
 
@@ -51,12 +61,16 @@ public class Node implements EventProcessor, MessageReceiver {
 	 */
 	public static final long TRANSMISSION_LATENCY = 10;
 
-	private final InetAddress address;
+	private final NodeId address;
 
 	/**
-	 * How the nodes that have been introduced to this node got here.
+	 * How the nodes that have been introduced to this node got here. Bounded by
+	 * the <code>snd.node.pedigree_cache_size</code> property, and by age (twice
+	 * the feedback expiration time since last use).
 	 */
-	private final Map<InetAddress, Pedigree> pedigrees = new HashMap<>();
+	private final PedigreeCache pedigrees;
+
+	static final int DEFAULT_PEDIGREE_CACHE_SIZE = 100000;
 
 	/**
 	 * The keys of this map are the pair (requester, destination) for introduction
@@ -65,7 +79,7 @@ public class Node implements EventProcessor, MessageReceiver {
 	 * accepted and the IntroductionRequest. After a suitable timeout (24 hrs?), the
 	 * entry is discarded.
 	 */
-	private Map<AddressPair, IntroductionRequest> pendingFeedbacksToSend[];
+	private final ExpiringMap<AddressPair, IntroductionRequest> pendingFeedbacksToSend;
 
 	/**
 	 * The keys of this Map are the introduction requests that we have offered and
@@ -75,17 +89,15 @@ public class Node implements EventProcessor, MessageReceiver {
 	 * VPN, then the value is null. We use this map to figure out where to forward
 	 * feedback to (i.e., who introduced the subject of the feedback to us). The
 	 * timestamp is used to clean out old entries (see
-	 * {@link #FEEDBACK_EXPIRATION_TIME}).
+	 * {@link #getFeedbackExpirationTime()}).
 	 */
-	private Map<IntroductionRequest, IntroductionRequest> pendingFeedbacksToReceive[];
-
-	private int currentPendingFeedbacks = 0;
+	private final ExpiringMap<IntroductionRequest, IntroductionRequest> pendingFeedbacksToReceive;
 
 	/**
 	 * The nodes to which this node has VPN connections that existed before any
 	 * introductions.
 	 */
-	private Set<InetAddress> aprioriNeighbors;
+	private Set<NodeId> aprioriNeighbors;
 
 	/**
 	 * The keys are the neighbors to which this node has been introduced. The value
@@ -93,7 +105,7 @@ public class Node implements EventProcessor, MessageReceiver {
 	 * last IntroductionRequest has been removed from the set, the VPN can be
 	 * closed.
 	 */
-	private Map<InetAddress, Set<IntroductionRequest>> introducedNeighbors;
+	private Map<NodeId, Set<IntroductionRequest>> introducedNeighbors;
 
 	public final ReputationModule reputationModule;
 	protected final EventingSystem eventingSystem;
@@ -112,77 +124,96 @@ public class Node implements EventProcessor, MessageReceiver {
 	};
 
 	/**
-	 * The maximum time lapse between an introduction and feedback regarding that
-	 * introduction.
+	 * The default maximum time lapse between an introduction and feedback regarding
+	 * that introduction: one minute. Set by the
+	 * <code>snd.node.feedback_expiration_time</code> property (e.g., 480000 for
+	 * eight minutes).
 	 */
 	// TODO These constants should all be set by properties!
-	protected static final long FEEDBACK_EXPIRATION_TIME = 60 * 1000; // one minute// 8 * 60 *
+	protected static final long DEFAULT_FEEDBACK_EXPIRATION_TIME = 60 * 1000;
 
-	private static final long MAINTENANCE_INTERVAL = FEEDBACK_EXPIRATION_TIME / 100;
+	/**
+	 * The number of maintenance intervals per feedback expiration time. Pending
+	 * feedbacks expire within one maintenance interval of their expiration time.
+	 */
+	static final int MAINTENANCE_INTERVALS_PER_EXPIRATION = 100;
 	private static final int MAX_INTRODUCED_NEIGHBORS = 100;
 
+	private final long feedbackExpirationTime;
+	private final long maintenanceInterval;
+
 	private static final Logger LOGGER = Logger.getLogger(Node.class.getName());
 
 	protected Logger logger;
 
-	private Map<Long, SNDPMessageTransmissionProtocol> ackWaiters = Collections.synchronizedMap(new HashMap<>());
+	/** The ack timers of this node's reliable transmissions. */
+	private final RetransmissionManager retransmissions;
+	/** The acks that this node owes its neighbors. */
+	private final AckBatcher acks;
 
-	private Map<IntroductionRequest, IntroductionProtocol> registeredProtocols = Collections
-			.synchronizedMap(new HashMap<>());
+	private Map<IntroductionRequest, IntroductionProtocol> registeredProtocols = new HashMap<>();
 	@SuppressWarnings("serial")
-	private Map<IntroductionRequest, String> recentlyUnregisteredProtocols = Collections
-			.synchronizedMap(new LinkedHashMap<>() {
-				private static final int MAX_ENTRIES = 100;
+	private Map<IntroductionRequest, String> recentlyUnregisteredProtocols = new LinkedHashMap<>() {
+		private static final int MAX_ENTRIES = 100;
 
-				protected boolean removeEldestEntry(Map.Entry<IntroductionRequest, String> eldest) {
-					return size() > MAX_ENTRIES;
-				}
-			});
+		protected boolean removeEldestEntry(Map.Entry<IntroductionRequest, String> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
 
 	private Long verboseOnIntroductionRequest;
 
 	/**
-	 * This method pulls the initialization of the pending feedbacks fields out of
-	 * the body of the constructor and puts them into their own method. The purpose
-	 * is to isolate the @SuppressWarnings directive to just these assignments;
-	 * without this method, one is forced to suppress warnings for the entire
-	 * constructor. Given that this constructor will be invoked exactly once in the
-	 * lifetime of a given network node, we are not concerned about performance. (Of
-	 * course, one cannot avoid awareness of the JIT compiler's inclination to
-	 * in-line methods such as this, which renders concern over an unnecessary
-	 * method invocation moot.)
+	 * If non-null, every event delivered to this node (and to its protocols,
+	 * communications module and threshold controller) is executed through this
+	 * mailbox, so that the node is only ever run by one thread at a time although
+	 * several eventing threads deliver to it. Enabled by the
+	 * <code>snd.node.mailbox</code> property. See {@link #runSerialized(Runnable)}.
 	 */
-	@SuppressWarnings("unchecked")
-	private void inlinedInitializationInConstructor() {
-		this.pendingFeedbacksToReceive = new Map[(int) (FEEDBACK_EXPIRATION_TIME / MAINTENANCE_INTERVAL) + 1];
-		this.pendingFeedbacksToSend = new Map[(int) (FEEDBACK_EXPIRATION_TIME / MAINTENANCE_INTERVAL) + 1];
+	private final Mailbox mailbox;
+
+	private final NodeConfig config;
+
+	public Node(NodeId addr, Implementation implementation, EventingSystem eventingSystem, Properties properties) {
+		this(addr, implementation, eventingSystem, properties, new NodeConfig(properties));
 	}
 
-	public Node(InetAddress addr, Implementation implementation, EventingSystem eventingSystem, Properties properties) {
+	/**
+	 * @param config the parsed node properties, which may be shared among nodes;
+	 *               see {@link NodeConfig}
+	 */
+	public Node(NodeId addr, Implementation implementation, EventingSystem eventingSystem, Properties properties,
+			NodeConfig config) {
 		this.properties = properties;
 		if (properties == null || properties.isEmpty()) {
 			throw new NullPointerException("SNDNode requires properties!");
 		}
+		this.config = config;
 		this.address = addr;
 		this.eventingSystem = eventingSystem;
 		this.reputationModule = new ReputationModule(eventingSystem, this);
+		this.retransmissions = new RetransmissionManager(this);
+		this.acks = new AckBatcher(this, config.ackDelay);
 		this.implementation = implementation;
 
 		this.aprioriNeighbors = new HashSet<>();
 		this.introducedNeighbors = new LinkedHashMap<>();
 
-		this.verbose = getBooleanProperty("snd.node.verbose", "false");
-		// See #inlineThisInConstructor()
-		inlinedInitializationInConstructor();
+		this.verbose = config.verbose;
+		this.mailbox = config.mailbox ? new Mailbox() : null;
 
-		for (int i = 0; i < pendingFeedbacksToReceive.length; i++) {
-			pendingFeedbacksToReceive[i] = Collections.synchronizedMap(new HashMap<>());
-			pendingFeedbacksToSend[i] = Collections.synchronizedMap(new HashMap<>());
-		}
+		this.feedbackExpirationTime = config.feedbackExpirationTime;
+		this.maintenanceInterval = feedbackExpirationTime / MAINTENANCE_INTERVALS_PER_EXPIRATION;
+		this.pendingFeedbacksToReceive = new ExpiringMap<>(feedbackExpirationTime,
+				MAINTENANCE_INTERVALS_PER_EXPIRATION, eventingSystem::getCurrentTime);
+		this.pendingFeedbacksToSend = new ExpiringMap<>(feedbackExpirationTime, MAINTENANCE_INTERVALS_PER_EXPIRATION,
+				eventingSystem::getCurrentTime);
+		// A pedigree must outlive the pending feedbacks that refer to it; these are
+		// created a few message latencies after the pedigree was last used.
+		this.pedigrees = new PedigreeCache(config.pedigreeCacheSize, 2 * feedbackExpirationTime,
+				eventingSystem::getCurrentTime);
 
-		if (properties.containsKey("snd.sim.verbose_on_IR")) {
-			verboseOnIntroductionRequest = getLongProperty("snd.sim.verbose_on_IR");
-		}
+		verboseOnIntroductionRequest = config.verboseOnIntroductionRequest;
 
 		if (properties.containsKey("snd.sim." + addrToString(address) + ".verbose")) {
 			this.verbose = this.verbose || getBooleanProperty("snd.sim." + addrToString(address) + ".verbose", "false");
@@ -196,13 +227,17 @@ public class Node implements EventProcessor, MessageReceiver {
 			}
 		}
 		eventingSystem.scheduleEventRelative(this, NODE_MAINTENANCE_EVENT,
-				MAINTENANCE_INTERVAL + Math.abs(address.hashCode() % 100));
+				maintenanceInterval + Math.abs(address.hashCode() % 100));
 	}
 
-	public final InetAddress getAddress() {
+	public final NodeId getAddress() {
 		return address;
 	}
 
+	public NodeConfig getConfig() {
+		return config;
+	}
+
 	/**
 	 * Parse a property that specifies an integer.
 	 * 
@@ -217,6 +252,10 @@ public class Node implements EventProcessor, MessageReceiver {
 		return PropertyParser.getBooleanProperty(propName, defaultValue, properties);
 	}
 
+	public String getStringProperty(String propName, String defaultValue) {
+		return PropertyParser.getStringProperty(propName, defaultValue, properties);
+	}
+
 	public int getIntegerProperty(String propName) {
 		return PropertyParser.getIntegerProperty(propName, properties);
 	}
@@ -229,42 +268,62 @@ public class Node implements EventProcessor, MessageReceiver {
 		return PropertyParser.getProbabilityProperty(propName, properties);
 	}
 
-	public synchronized Pedigree getPedigree(InetAddress client) {
+	public Pedigree getPedigree(NodeId client) {
 		Pedigree p = pedigrees.get(client);
 		if (p == null) {
 //			if (router.isIntroducedNeighbor(client)) {
 //				throw new IllegalArgumentException(this + " does not have a pedigree for neighbor " + client);
 //			}
 			p = new Pedigree(client);
-			pedigrees.put(client, p);
+			pedigrees.put(p);
 		}
 		return p;
 
 	}
 
-	public synchronized void addPedigree(Pedigree p) {
-		// TODO Add code to manage the number of pedigrees stored, to check pedigree
-		// length, to compare this pedigree to a previous one for the same subject, etc.
-		pedigrees.put(p.getSubject(), p);
+	/**
+	 * Unlike {@link #getPedigree(NodeId)}, does not create a pedigree for an
+	 * unknown client.
+	 * 
+	 * @param client the client
+	 * @return the client's pedigree, or null if it is unknown or has been evicted
+	 */
+	public Pedigree findPedigree(NodeId client) {
+		return pedigrees.get(client);
+	}
+
+	public void addPedigree(Pedigree p) {
+		// TODO Add code to check pedigree length, to compare this pedigree to a
+		// previous one for the same subject, etc.
+		pedigrees.put(p);
+	}
+
+	public PedigreeCache getPedigreeCache() {
+		return pedigrees;
 	}
 
 	/**
 	 * The method invoked when an SNDMessage, a WrappedMessage, or an unroutable
-	 * application-layer Message is received. It is synchronized -- we process one
-	 * message at a time!
+	 * application-layer Message is received. The node processes one message at a
+	 * time: see {@link #runSerialized(Runnable)}.
 	 * 
 	 * @param m
 	 */
-	public synchronized void receive(Message m) {
-		logger.fine(this + ": in node, received " + m);
+	public void receive(Message m) {
+		if (logger.isLoggable(FINE)) {
+			logger.fine(this + ": in node, received " + m);
+		}
 		// Process the ACK even if it arrives on a VPN the node believes to be closed.
 		// This makes the system more efficient in the face of out-of-order packet
 		// deliveries.
 		if (m instanceof AckMessage) {
-			processAck((AckMessage) m);
+			processAcks(((AckMessage) m).getAcknowledged());
 			return;
 		}
-		InetAddress from = m.getSrc();
+		if (m instanceof SNDPMessage && ((SNDPMessage) m).getPiggybackedAcks() != null) {
+			processAcks(((SNDPMessage) m).getPiggybackedAcks());
+		}
+		NodeId from = m.getSrc();
 		if (!aprioriNeighbors.contains(from) && !introducedNeighbors.containsKey(from)) {
 			// This node is in the process of closing the VPN. Probably. So, log that we are
 			// dropping this message, and then drop it.
@@ -280,12 +339,7 @@ public class Node implements EventProcessor, MessageReceiver {
 			processMessage(m);
 			return;
 		}
-		AckMessage ack = new AckMessage((IntroductionMessage) m);
-		try {
-			implementation.getComms().send(ack);
-		} catch (IOException e) {
-			// We don't really care about failed ack transmissions
-		}
+		acks.ack((SNDPMessage) m);
 		IntroductionMessage im = (IntroductionMessage) m;
 		if (verboseOnIntroductionRequest != null && verboseOnIntroductionRequest == im.getIntroductionRequest().nonce) {
 			verbose = true;
@@ -297,7 +351,7 @@ public class Node implements EventProcessor, MessageReceiver {
 		case INTRODUCTION_COMPLETED:
 		case INTRODUCTION_ACCEPTED:
 		case INTRODUCTION_REFUSED:
-			StateMachine protocol = registeredProtocols.get(im.getIntroductionRequest());
+			IntroductionProtocol protocol = registeredProtocols.get(im.getIntroductionRequest());
 			if (protocol == null) {
 				logger.severe(addTimePrefix(this + ": received " + im + " but there is no protocol for it. Reason:\n"
 						+ "\t" + recentlyUnregisteredProtocols.get(im.getIntroductionRequest())));
@@ -325,8 +379,7 @@ public class Node implements EventProcessor, MessageReceiver {
 
 	/**
 	 * AddIntroductionRequestMessages are processed in the Node (as opposed to in a
-	 * protocol) because it has to happen inside the node's receive(Message)
-	 * semaphore.
+	 * protocol) because it has to happen within the node's receive(Message).
 	 * 
 	 * @param m
 	 */
@@ -412,11 +465,9 @@ public class Node implements EventProcessor, MessageReceiver {
 		protocol.begin();
 	}
 
-	private void processAck(AckMessage m) {
-		long id = m.getIdentifier();
-		SNDPMessageTransmissionProtocol protocol = ackWaiters.remove(id);
-		if (protocol != null) {
-			protocol.receive(m);
+	private void processAcks(long[] ids) {
+		for (long id : ids) {
+			retransmissions.acknowledge(id);
 		}
 	}
 
@@ -443,20 +494,17 @@ public class Node implements EventProcessor, MessageReceiver {
 
 	private IntroductionRequest removePendingFeedbacksToReceive(IntroductionRequest ir)
 			throws IllegalArgumentException {
-		for (int i = 0; i < pendingFeedbacksToReceive.length; i++) {
-			if (pendingFeedbacksToReceive[i].containsKey(ir)) {
-				return pendingFeedbacksToReceive[i].remove(ir);
-			}
+		// The value may legitimately be null, so check for the key explicitly.
+		if (pendingFeedbacksToReceive.containsKey(ir)) {
+			return pendingFeedbacksToReceive.remove(ir);
 		}
 		throw new IllegalArgumentException();
 	}
 
 	private boolean pendingFeedbacksToSendContainsKey(AddressPair srcDst) {
-		for (int i = 0; i < pendingFeedbacksToSend.length; i++) {
-			if (pendingFeedbacksToSend[i].containsKey(srcDst)) {
-				pendingFeedbacksToSend[i].remove(srcDst);
-				return true;
-			}
+		if (pendingFeedbacksToSend.containsKey(srcDst)) {
+			pendingFeedbacksToSend.remove(srcDst);
+			return true;
 		}
 		return false;
 	}
@@ -469,15 +517,17 @@ public class Node implements EventProcessor, MessageReceiver {
 		if (m.getFeedback() == Feedback.BAD) {
 			removeAllIntroductionRequestsFromVPN(introductionRequest.requester);
 		}
-		logger.finest(this + ": the feedback regards " + introductionRequest);
-		if (!pendingFeedbacksToReceive[0].containsKey(introductionRequest)) {
+		if (logger.isLoggable(FINEST)) {
+			logger.finest(this + ": the feedback regards " + introductionRequest);
 		}
-		Pedigree pedigree = getPedigree(introductionRequest.requester);
+		Pedigree pedigree = findPedigree(introductionRequest.requester);
 		if (pedigree == null) {
-			logger.warning(this + ": Received feedback for a client we no longer know. m=" + m);
-			return;
+			// The pedigree has been evicted from the cache. We cannot apply the feedback,
+			// but we can still forward it.
+			logger.warning(this + ": Received feedback for a client whose pedigree we no longer have. m=" + m);
+		} else if (logger.isLoggable(FINEST)) {
+			logger.finest(this + ": the pedigree of the requester: " + pedigree);
 		}
-		logger.finest(this + ": the pedigree of the requester: " + pedigree);
 		IntroductionRequest previousIntroduction = null;
 		try {
 			previousIntroduction = removePendingFeedbacksToReceive(introductionRequest);
@@ -487,7 +537,9 @@ public class Node implements EventProcessor, MessageReceiver {
 					.printStackTrace();
 			return;
 		}
-		reputationModule.applyFeedback(pedigree, m.getFeedback());
+		if (pedigree != null) {
+			reputationModule.queueFeedback(pedigree, m.getFeedback());
+		}
 		if (previousIntroduction != null) {
 			AddressPair ap = new AddressPair(previousIntroduction.requester, previousIntroduction.destination);
 			if (!pendingFeedbacksToSendContainsKey(ap)) {
@@ -497,7 +549,7 @@ public class Node implements EventProcessor, MessageReceiver {
 																									// it.
 				return;
 			}
-			if (pedigree == null || pedigree.getRequestSequence().length == 0) {
+			if (pedigree != null && pedigree.length() == 0) {
 				new Exception(this + ": Invariant Violation: we think we should forward " + m
 						+ ", but there is no previous pedigree. Pedigree=" + pedigree).printStackTrace();
 				System.exit(-1);
@@ -507,7 +559,7 @@ public class Node implements EventProcessor, MessageReceiver {
 			// System.out.println(this + " sending (fwding) " + fm);
 			send(fm);
 		} else {
-			if (pedigree.getRequestSequence().length != 0) {
+			if (pedigree != null && pedigree.length() != 0) {
 				new Exception(
 						"Invariant Violation: we do not have an introducer for this transaction in the pendingFeedbacksToSend, but there are one or more introducers in the pedigree.")
 						.printStackTrace();
@@ -553,51 +605,93 @@ public class Node implements EventProcessor, MessageReceiver {
 		return eventingSystem;
 	}
 
+	/**
+	 * Run a task in this node's execution context. If the node has a mailbox, the
+	 * task is queued and run by whichever thread is draining the mailbox (perhaps
+	 * this one, before this method returns); otherwise, it is run immediately, as
+	 * the node is only run by the calling thread.
+	 * 
+	 * Every entry point by which the eventing system delivers an event into the
+	 * node goes through this method.
+	 * 
+	 * @param task the task
+	 */
+	public void runSerialized(Runnable task) {
+		if (mailbox == null) {
+			task.run();
+		} else {
+			mailbox.execute(task);
+		}
+	}
+
+	/**
+	 * @return true if this node runs its events through a mailbox; if not, a
+	 *         caller of {@link #runSerialized(Runnable)} can run its task directly
+	 *         and avoid allocating it
+	 */
+	public boolean hasMailbox() {
+		return mailbox != null;
+	}
+
 	@Override
 	public void process(Event e, EventingSystem eventingSystem, long currentTime) {
+		if (mailbox == null) {
+			processEvent(e, eventingSystem);
+		} else {
+			mailbox.execute(() -> processEvent(e, eventingSystem));
+		}
+	}
+
+	private void processEvent(Event e, EventingSystem eventingSystem) {
 		if (e instanceof VPNClosedEvent) {
-			InetAddress nbr = ((VPNClosedEvent) e).nbr;
+			NodeId nbr = ((VPNClosedEvent) e).nbr;
 			privateVPNClosed(nbr);
 			return;
 		}
 		if (e == NODE_MAINTENANCE_EVENT) {
-			int i = currentPendingFeedbacks;
-			i++;
-			if (i == pendingFeedbacksToSend.length) {
-				i = 0;
-			}
-			currentPendingFeedbacks = i;
-			pendingFeedbacksToSend[i].clear();
-			pendingFeedbacksToReceive[i].clear();
-			eventingSystem.scheduleEventRelative(this, e, MAINTENANCE_INTERVAL);
+			maintenance();
+			eventingSystem.scheduleEventRelative(this, e, maintenanceInterval);
 		}
 		if (e instanceof Message) {
 			this.receive((Message) e);
 		}
 	}
 
+	/**
+	 * Expire this node's time-limited state. Invoked every maintenance interval.
+	 */
+	protected void maintenance() {
+		pendingFeedbacksToSend.expire();
+		pendingFeedbacksToReceive.expire();
+		pedigrees.expire();
+	}
+
 	public Logger getLogger() {
 		return logger;
 	}
 
-	public synchronized void send(SNDPMessageTransmissionProtocol sender, SNDPMessage message) {
+	public void send(SNDPMessageTransmissionProtocol sender, SNDPMessage message) {
+		if (message.getPiggybackedAcks() == null) {
+			// A retransmission carries the acks piggybacked on the first transmission
+			message.setPiggybackedAcks(acks.takeAcksFor(message.getDst()));
+		}
 		try {
 			implementation.getComms().send(message);
-			ackWaiters.put(message.getIdentifier(), sender);
+			retransmissions.transmitted(sender);
 		} catch (IOException e) {
-			sender.receive(StateMachine.FAILURE_EVENT);
+			sender.receive(ProtocolStateMachine.FAILURE_EVENT);
 		}
 	}
 
-	public synchronized void send(IntroductionProtocol protocol, IntroductionMessage message) {
+	public void send(IntroductionProtocol protocol, IntroductionMessage message) {
 		send(protocol, message, null);
 	}
 
 	/**
 	 * Send an {@link IntroductionMessage} on behalf of the specified protocol. If
 	 * <code>callback</code> is null, the protocol will be sent
-	 * {@link StateMachine#SUCCESS_EVENT} when an {@link AckMessage} is received or
-	 * {@link StateMachine#FAILURE_EVENT} if there are no {@link AckMessage}s after
+	 * {@link ProtocolStateMachine#SUCCESS_EVENT} when an {@link AckMessage} is received or
+	 * {@link ProtocolStateMachine#FAILURE_EVENT} if there are no {@link AckMessage}s after
 	 * N attempts. If <code>callback</code> is not null, then the callback will be
 	 * invoked when the {@link SNDPMessageTransmissionProtocol} enters a terminal
 	 * state.
@@ -609,8 +703,8 @@ public class Node implements EventProcessor, MessageReceiver {
 	 *                 {@link SNDPMessageTransmissionProtocol} enters a terminal
 	 *                 state
 	 */
-	public synchronized void send(IntroductionProtocol protocol, IntroductionMessage message,
-			StateMachine.StateMachineTracker callback) {
+	public void send(IntroductionProtocol protocol, IntroductionMessage message,
+			ProtocolStateMachine.Tracker callback) {
 		if (!registeredProtocols.containsKey(protocol.getIntroductionRequest())) {
 			registeredProtocols.put(protocol.getIntroductionRequest(), protocol);
 		}
@@ -630,7 +724,7 @@ public class Node implements EventProcessor, MessageReceiver {
 	 * @param nbr
 	 * @return true if the neighbor is in our set of introduced neighbors.
 	 */
-	public synchronized boolean addIntroductionRequestToVPN(IntroductionRequest introductionRequest, InetAddress nbr) {
+	public boolean addIntroductionRequestToVPN(IntroductionRequest introductionRequest, NodeId nbr) {
 		Set<IntroductionRequest> requests = introducedNeighbors.get(nbr);
 		if (requests == null) {
 			return false;
@@ -639,7 +733,7 @@ public class Node implements EventProcessor, MessageReceiver {
 		return true;
 	}
 
-	public synchronized void removeAllIntroductionRequestsFromVPN(InetAddress nbr) {
+	public void removeAllIntroductionRequestsFromVPN(NodeId nbr) {
 		Set<IntroductionRequest> r = introducedNeighbors.get(nbr);
 		if (r == null) {
 			return;
@@ -651,8 +745,16 @@ public class Node implements EventProcessor, MessageReceiver {
 		}
 	}
 
-	public synchronized void removeIntroductionRequestFromVPN(IntroductionRequest introductionRequest,
-			InetAddress nbr) {
+	/**
+	 * @return true if this node has a VPN to the neighbor by way of an
+	 *         introduction
+	 */
+	public boolean isIntroducedNeighbor(NodeId nbr) {
+		return introducedNeighbors.containsKey(nbr);
+	}
+
+	public void removeIntroductionRequestFromVPN(IntroductionRequest introductionRequest,
+			NodeId nbr) {
 		Set<IntroductionRequest> requests = introducedNeighbors.get(nbr);
 		if (requests == null) {
 			// This probably should never happen.
@@ -668,6 +770,7 @@ public class Node implements EventProcessor, MessageReceiver {
 				System.out.println(this + ": closing VPN to " + addrToString(nbr));
 			}
 			introducedNeighbors.remove(nbr);
+			acks.flush(nbr);
 			implementation.getVPNManager().closeVPN(nbr);
 			implementation.getComms().removeRoutesVia(nbr);
 		} else {
@@ -678,11 +781,12 @@ public class Node implements EventProcessor, MessageReceiver {
 		}
 	}
 
-	public synchronized void closeVPN(InetAddress nbr) throws IOException {
+	public void closeVPN(NodeId nbr) throws IOException {
 		if (!aprioriNeighbors.contains(nbr)) {
 			throw new IOException(nbr + " is not an a-priori neighbor.");
 		}
 		aprioriNeighbors.remove(nbr);
+		acks.flush(nbr);
 		implementation.getVPNManager().closeVPN(nbr);
 		implementation.getComms().removeRoutesVia(nbr);
 	}
@@ -691,7 +795,7 @@ public class Node implements EventProcessor, MessageReceiver {
 		return "keying material";
 	}
 
-	public synchronized void createVPN(InetAddress nbr, Object keyingMaterial) throws IOException {
+	public void createVPN(NodeId nbr, Object keyingMaterial) throws IOException {
 		if (aprioriNeighbors.contains(nbr)) {
 			return;
 		}
@@ -700,7 +804,7 @@ public class Node implements EventProcessor, MessageReceiver {
 		return;
 	}
 
-	public synchronized boolean createVPN(InetAddress nbr, IntroductionRequest introductionRequest,
+	public boolean createVPN(NodeId nbr, IntroductionRequest introductionRequest,
 			Object keyingMaterial) {
 		if (introductionRequest == null) {
 			throw new NullPointerException("There must be a non-null introduction request.");
@@ -725,16 +829,18 @@ public class Node implements EventProcessor, MessageReceiver {
 			}
 		}
 		while (introducedNeighbors.size() > MAX_INTRODUCED_NEIGHBORS) {
-			logger.fine(this
-					.addTimePrefix(this + ": deleting oldest VPNs due to exceeding MAX_INTRODUCED_NEIGHBORS!!"));
-			Iterator<InetAddress> iter = introducedNeighbors.keySet().iterator();
-			InetAddress n = iter.next();
+			if (logger.isLoggable(FINE)) {
+				logger.fine(this
+						.addTimePrefix(this + ": deleting oldest VPNs due to exceeding MAX_INTRODUCED_NEIGHBORS!!"));
+			}
+			Iterator<NodeId> iter = introducedNeighbors.keySet().iterator();
+			NodeId n = iter.next();
 			removeAllIntroductionRequestsFromVPN(n);
 		}
 		return true;
 	}
 
-	public synchronized void unregisterProtocol(IntroductionProtocol proto, String reason) {
+	public void unregisterProtocol(IntroductionProtocol proto, String reason) {
 		IntroductionProtocol p = registeredProtocols.remove(proto.getIntroductionRequest());
 		if (p != proto) {
 			System.out.println("We are not dealing with individual protocol instances!?");
@@ -742,25 +848,29 @@ public class Node implements EventProcessor, MessageReceiver {
 		recentlyUnregisteredProtocols.put(p.getIntroductionRequest(), reason);
 	}
 
-	public InetAddress getNextHopTo(InetAddress destination) {
+	public NodeId getNextHopTo(NodeId destination) {
 		Query query = implementation.getDiscoveryService().createQuery(destination);
 		return implementation.getDiscoveryService().getNextHopTo(query);
 	}
 
-	public void addRoute(InetAddress dst, InetAddress target) {
+	public void addRoute(NodeId dst, NodeId target) {
 		implementation.getComms().addRoute(dst, target);
 	}
 
-	public synchronized void unregisterAckWaiter(long id) {
-		ackWaiters.remove(id);
+	public void unregisterAckWaiter(long id) {
+		retransmissions.cancel(id);
+	}
+
+	public RetransmissionManager getRetransmissionManager() {
+		return retransmissions;
 	}
 
 	@Override
-	public void vpnClosed(InetAddress nbr) {
+	public void vpnClosed(NodeId nbr) {
 		eventingSystem.scheduleEvent(this, new VPNClosedEvent(nbr));
 	}
 
-	private synchronized void privateVPNClosed(InetAddress nbr) {
+	private void privateVPNClosed(NodeId nbr) {
 		implementation.getComms().removeRoutesVia(nbr);
 		if (aprioriNeighbors.contains(nbr)) {
 			aprioriNeighbors.remove(nbr);
@@ -771,14 +881,14 @@ public class Node implements EventProcessor, MessageReceiver {
 		}
 	}
 
-	public synchronized void addPendingFeedbackToReceive(IntroductionRequest introductionRequest,
+	public void addPendingFeedbackToReceive(IntroductionRequest introductionRequest,
 			IntroductionRequest requesterIntroduction) {
-		pendingFeedbacksToReceive[currentPendingFeedbacks].put(introductionRequest, requesterIntroduction);
+		pendingFeedbacksToReceive.put(introductionRequest, requesterIntroduction);
 	}
 
-	public synchronized void addPendingFeedbackToSend(IntroductionRequest introductionRequest) {
-		pendingFeedbacksToSend[currentPendingFeedbacks].put(
-				new AddressPair(introductionRequest.requester, introductionRequest.destination), introductionRequest);
+	public void addPendingFeedbackToSend(IntroductionRequest introductionRequest) {
+		pendingFeedbacksToSend.put(new AddressPair(introductionRequest.requester, introductionRequest.destination),
+				introductionRequest);
 	}
 
 	/**
@@ -788,18 +898,8 @@ public class Node implements EventProcessor, MessageReceiver {
 	 * @param networkSrc
 	 * @return
 	 */
-	protected IntroductionRequest getPendingFeedbackTo(InetAddress networkSrc, InetAddress networkDst) {
-		AddressPair srcDst = new AddressPair(networkSrc, networkDst);
-		for (int i = 0; i < pendingFeedbacksToSend.length; i++) {
-			int index = currentPendingFeedbacks - i;
-			if (index < 0) {
-				index += pendingFeedbacksToSend.length;
-			}
-			if (pendingFeedbacksToSend[index].containsKey(srcDst)) {
-				return pendingFeedbacksToSend[index].get(srcDst);
-			}
-		}
-		return null;
+	protected IntroductionRequest getPendingFeedbackTo(NodeId networkSrc, NodeId networkDst) {
+		return pendingFeedbacksToSend.get(new AddressPair(networkSrc, networkDst));
 	}
 
 	public String addTimePrefix(String msg) {
@@ -814,9 +914,9 @@ public class Node implements EventProcessor, MessageReceiver {
 	}
 
 	private static class VPNClosedEvent implements Event {
-		public final InetAddress nbr;
+		public final NodeId nbr;
 
-		public VPNClosedEvent(InetAddress nbr) {
+		public VPNClosedEvent(NodeId nbr) {
 			this.nbr = nbr;
 		}
 	}
@@ -826,11 +926,15 @@ public class Node implements EventProcessor, MessageReceiver {
 	}
 
 	public long getPendingFeedbacksSize() {
-		long total = 0;
-		for (int i = 0; i < pendingFeedbacksToSend.length; i++) {
-			total += pendingFeedbacksToSend[i].size() + pendingFeedbacksToReceive[i].size();
-		}
-		return total;
+		return pendingFeedbacksToSend.size() + pendingFeedbacksToReceive.size();
+	}
+
+	/**
+	 * @return the maximum time lapse between an introduction and feedback regarding
+	 *         that introduction
+	 */
+	public long getFeedbackExpirationTime() {
+		return feedbackExpirationTime;
 	}
 
 }
@@ -0,0 +1,102 @@
+package com.github.glfrazier.snd.node;
+
+import static com.github.glfrazier.snd.node.Node.DEFAULT_FEEDBACK_EXPIRATION_TIME;
+import static com.github.glfrazier.snd.node.Node.DEFAULT_PEDIGREE_CACHE_SIZE;
+import static com.github.glfrazier.snd.node.Node.MAINTENANCE_INTERVALS_PER_EXPIRATION;
+import static com.github.glfrazier.snd.node.Node.TRANSMISSION_LATENCY;
+import static com.github.glfrazier.snd.protocol.RetransmissionManager.ACK_TIMEOUT;
+
+import java.util.Properties;
+
+import com.github.glfrazier.snd.util.PropertyParser;
+
+/**
+ * The properties that configure a {@link Node}, its {@link ReputationModule}
+ * and its {@link ThresholdController}, parsed and validated once. A
+ * NodeConfig is immutable, so a simulation shares one among all of its nodes
+ * rather than having each node parse the same properties.
+ *
+ * Properties that are specific to a node (<code>snd.sim.ADDR.verbose</code>)
+ * are still read by the node itself.
+ */
+public final class NodeConfig {
+
+	public final boolean verbose;
+	public final boolean mailbox;
+	public final long feedbackExpirationTime;
+	public final int pedigreeCacheSize;
+	/** The introduction request to be verbose about, or null. */
+	public final Long verboseOnIntroductionRequest;
+	/** How long a node may hold an ack, in milliseconds; see {@link AckBatcher}. */
+	public final long ackDelay;
+	/** If true, a proxy node caches its introduction paths; see {@link IntroductionPathCache}. */
+	public final boolean introductionPathCache;
+
+	public final boolean lazyFade;
+	public final String reputationStore;
+
+	public final double targetHealth;
+	public final double K;
+	public final double tauI;
+	public final double tauT;
+	public final float headSpace;
+	public final double sensorSmoothingAlpha;
+
+	static final long DEFAULT_ACK_DELAY = TRANSMISSION_LATENCY / 2;
+
+	public NodeConfig(Properties properties) {
+		if (properties == null || properties.isEmpty()) {
+			throw new NullPointerException("SNDNode requires properties!");
+		}
+		verbose = PropertyParser.getBooleanProperty("snd.node.verbose", "false", properties);
+		mailbox = PropertyParser.getBooleanProperty("snd.node.mailbox", "false", properties);
+		feedbackExpirationTime = PropertyParser.getLongProperty("snd.node.feedback_expiration_time",
+				DEFAULT_FEEDBACK_EXPIRATION_TIME, properties);
+		if (feedbackExpirationTime < MAINTENANCE_INTERVALS_PER_EXPIRATION) {
+			throw new IllegalArgumentException("snd.node.feedback_expiration_time must be at least "
+					+ MAINTENANCE_INTERVALS_PER_EXPIRATION + " milliseconds.");
+		}
+		pedigreeCacheSize = PropertyParser.getIntegerProperty("snd.node.pedigree_cache_size",
+				DEFAULT_PEDIGREE_CACHE_SIZE, properties);
+		if (properties.containsKey("snd.sim.verbose_on_IR")) {
+			verboseOnIntroductionRequest = PropertyParser.getLongProperty("snd.sim.verbose_on_IR", properties);
+		} else {
+			verboseOnIntroductionRequest = null;
+		}
+		ackDelay = PropertyParser.getLongProperty("snd.node.ack_delay", DEFAULT_ACK_DELAY, properties);
+		// The message and its ack must both cross the link before the sender times out.
+		if (ackDelay < 0 || ackDelay + 2 * TRANSMISSION_LATENCY >= ACK_TIMEOUT) {
+			throw new IllegalArgumentException("snd.node.ack_delay must be at least zero and less than "
+					+ (ACK_TIMEOUT - 2 * TRANSMISSION_LATENCY) + " milliseconds.");
+		}
+
+		introductionPathCache = PropertyParser.getBooleanProperty("snd.node.introduction_path_cache", "false",
+				properties);
+
+		lazyFade = PropertyParser.getBooleanProperty("snd.reputation.lazy_fade", "true", properties);
+		reputationStore = PropertyParser.getStringProperty("snd.reputation.store", "entity", properties);
+		switch (reputationStore) {
+		case "entity":
+		case "table":
+		case "concurrent":
+			break;
+		default:
+			throw new IllegalArgumentException("snd.reputation.store must be 'entity', 'table' or 'concurrent'; it is '"
+					+ reputationStore + "'.");
+		}
+
+		targetHealth = PropertyParser.getProbabilityProperty("snd.thold_ctler.target_health", properties);
+		K = PropertyParser.getFloatProperty("snd.thold_ctlr.K", properties);
+		tauI = PropertyParser.getFloatProperty("snd.thold_ctlr.tau_i", properties);
+		tauT = PropertyParser.getFloatProperty("snd.thold_ctlr.tau_t", properties);
+		headSpace = PropertyParser.getFloatProperty("snd.thold_ctlr.head_space", properties);
+		sensorSmoothingAlpha = PropertyParser.getFloatProperty("snd.thold_ctlr.sensor_smoothing_alpha", properties);
+		if (tauI == 0.0) {
+			throw new IllegalArgumentException("snd.thold_ctlr.tau_i cannot be zero.");
+		}
+		if (K == 0.0) {
+			throw new IllegalArgumentException("snd.thold_ctlr.K cannot be zero.");
+		}
+	}
+
+}
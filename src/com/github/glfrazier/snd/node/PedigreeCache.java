@@ -0,0 +1,125 @@
+package com.github.glfrazier.snd.node;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import com.github.glfrazier.snd.protocol.Pedigree;
+import com.github.glfrazier.snd.util.NodeId;
+
+/**
+ * The pedigrees of the entities that have been introduced to a node, bounded
+ * both in size and in age. Entries are kept in least-recently-used order; when
+ * the cache exceeds its capacity the least-recently-used pedigree is evicted,
+ * and a pedigree that has not been used for the time-to-live is evicted by
+ * {@link #expire()} or when it is next looked up.
+ *
+ * A pedigree is only needed to apply feedback about an introduction, so the
+ * time-to-live should exceed the feedback expiration time. A node must
+ * tolerate a missing pedigree; see {@link Node#processFeedback}.
+ *
+ * All methods are synchronized.
+ */
+public class PedigreeCache {
+
+	private static class Entry {
+		final Pedigree pedigree;
+		long lastUsed;
+
+		Entry(Pedigree pedigree, long lastUsed) {
+			this.pedigree = pedigree;
+			this.lastUsed = lastUsed;
+		}
+	}
+
+	private final int capacity;
+	private final long timeToLive;
+	private final LongSupplier clock;
+	private final LinkedHashMap<NodeId, Entry> map;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * @param capacity   the maximum number of pedigrees held
+	 * @param timeToLive how long a pedigree is held after it was last used
+	 * @param clock      the source of the current time
+	 */
+	@SuppressWarnings("serial")
+	public PedigreeCache(int capacity, long timeToLive, LongSupplier clock) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The pedigree cache capacity must be positive.");
+		}
+		this.capacity = capacity;
+		this.timeToLive = timeToLive;
+		this.clock = clock;
+		this.map = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<NodeId, Entry> eldest) {
+				if (size() > PedigreeCache.this.capacity) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @return the pedigree of the subject, or null if it is not in the cache
+	 */
+	public synchronized Pedigree get(NodeId subject) {
+		Entry e = map.get(subject);
+		long now = clock.getAsLong();
+		if (e != null && now - e.lastUsed >= timeToLive) {
+			map.remove(subject);
+			evictions++;
+			e = null;
+		}
+		if (e == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		e.lastUsed = now;
+		return e.pedigree;
+	}
+
+	public synchronized void put(Pedigree p) {
+		map.put(p.getSubject(), new Entry(p, clock.getAsLong()));
+	}
+
+	/**
+	 * Evict every pedigree that has not been used for the time-to-live. As the
+	 * entries are in order of use, only the expired entries are visited.
+	 */
+	public synchronized void expire() {
+		long now = clock.getAsLong();
+		for (Iterator<Entry> iter = map.values().iterator(); iter.hasNext();) {
+			if (now - iter.next().lastUsed < timeToLive) {
+				break;
+			}
+			iter.remove();
+			evictions++;
+		}
+	}
+
+	public synchronized int size() {
+		return map.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+}
@@ -3,8 +3,6 @@ package com.github.glfrazier.snd.node;
 import static com.github.glfrazier.snd.util.AddressUtils.addrToString;
 
 import java.io.IOException;
-import java.net.InetAddress;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
@@ -18,22 +16,36 @@ import com.github.glfrazier.snd.protocol.message.Message;
 import com.github.glfrazier.snd.util.AddressUtils.AddressPair;
 import com.github.glfrazier.snd.util.DenialReporter;
 import com.github.glfrazier.snd.util.Implementation;
+import com.github.glfrazier.snd.util.NodeId;
 
 public class ProxyNode extends Node {
-	private InetAddress proxiedHost;
-	private InetAddress initialIntroducer;
+	private NodeId proxiedHost;
+	private NodeId initialIntroducer;
 	private Map<IntroductionRequest, RequesterProtocol> introductionSequences = new HashMap<>();
 	private DenialReporter denialReporter;
-	private Map<AddressPair, IntroductionRequest> destinationIntroductionMap = Collections
-			.synchronizedMap(new HashMap<>());
+	private Map<AddressPair, IntroductionRequest> destinationIntroductionMap = new HashMap<>();
 
-	public ProxyNode(InetAddress addr, Implementation impl, EventingSystem es, Properties props,
+	/**
+	 * The paths by which this proxy recently connected to other proxies, or null
+	 * if the <code>snd.node.introduction_path_cache</code> property is false.
+	 */
+	private final IntroductionPathCache introductionPaths;
+
+	public ProxyNode(NodeId addr, Implementation impl, EventingSystem es, Properties props,
+			DenialReporter denialReporter) {
+		this(addr, impl, es, props, new NodeConfig(props), denialReporter);
+	}
+
+	public ProxyNode(NodeId addr, Implementation impl, EventingSystem es, Properties props, NodeConfig config,
 			DenialReporter denialReporter) {
-		super(addr, impl, es, props);
+		super(addr, impl, es, props, config);
 		this.denialReporter = denialReporter;
+		this.introductionPaths = config.introductionPathCache
+				? new IntroductionPathCache(getFeedbackExpirationTime(), es::getCurrentTime)
+				: null;
 	}
 
-	public synchronized void connectProxiedHost(InetAddress app, Object keyingMaterial) throws IOException {
+	public void connectProxiedHost(NodeId app, Object keyingMaterial) throws IOException {
 		if (proxiedHost != null) {
 			closeVPN(proxiedHost);
 			proxiedHost = null;
@@ -51,7 +63,7 @@ public class ProxyNode extends Node {
 	 * @param introducer
 	 * @throws IOException
 	 */
-	public void connectInitialIntroducer(InetAddress introducer, Object keyingMaterial) throws IOException {
+	public void connectInitialIntroducer(NodeId introducer, Object keyingMaterial) throws IOException {
 		if (initialIntroducer != null) {
 			closeVPN(initialIntroducer);
 			initialIntroducer = null;
@@ -72,8 +84,8 @@ public class ProxyNode extends Node {
 
 			// Find the network destination, as the proxied host may only know the IP
 			// address of the other proxied host in the connection
-			InetAddress subject = m.getSubject();
-			InetAddress networkSrc = implementation.getDiscoveryService().getProxyFor(subject);
+			NodeId subject = m.getSubject();
+			NodeId networkSrc = implementation.getDiscoveryService().getProxyFor(subject);
 
 			// Close the VPN to the bad host!
 			if (m.getFeedback() == Feedback.BAD) {
@@ -104,14 +116,14 @@ public class ProxyNode extends Node {
 	}
 
 	@Override
-	protected synchronized void processMessage(Message m) {
+	protected void processMessage(Message m) {
 		boolean verbose = this.verbose || m.isVerbose();
 		if (verbose) {
 			System.out.println(addTimePrefix(this + ": received " + m));
 		}
 		if (m.getSrc().equals(proxiedHost)) {
 			// The message came from the client that this node is proxying for
-			InetAddress networkDestination = implementation.getDiscoveryService().getProxyFor(m.getDst());
+			NodeId networkDestination = implementation.getDiscoveryService().getProxyFor(m.getDst());
 			if (verbose) {
 				System.out.println(this + ": the proxy for " + addrToString(m.getDst()) + " is "
 						+ addrToString(networkDestination));
@@ -143,12 +155,81 @@ public class ProxyNode extends Node {
 
 	}
 
+	/**
+	 * Take the path by which this proxy last connected to a destination, so that
+	 * a new connection can resume it. The caller takes over the hold on the VPN
+	 * to the path's last introducer; see
+	 * {@link #cacheIntroductionPath(NodeId, NodeId[], IntroductionRequest[])}.
+	 * 
+	 * @param destination the proxy to connect to
+	 * @return the path, or null if there is none or it has expired
+	 */
+	public IntroductionPathCache.Path takeIntroductionPath(NodeId destination) {
+		if (introductionPaths == null) {
+			return null;
+		}
+		IntroductionPathCache.Path path = introductionPaths.take(destination);
+		if (path != null && introductionPaths.isExpired(path)) {
+			releaseIntroductionPath(path);
+			return null;
+		}
+		return path;
+	}
+
+	/**
+	 * Remember the path by which this proxy connected to a destination. Rather
+	 * than closing the VPN to the last introducer on the path once the
+	 * destination is reached, the cache holds it open, by the request that
+	 * introduced this proxy to that introducer, until the path expires or is
+	 * taken. A later connection can then ask that introducer directly.
+	 * 
+	 * @param destination the proxy that was reached
+	 * @param introducers the introducer asked at each depth
+	 * @param requests    the introduction request made at each depth
+	 * @return true if the path is cached, and so holds the VPN to its last
+	 *         introducer; false if the caller should release that VPN
+	 */
+	public boolean cacheIntroductionPath(NodeId destination, NodeId[] introducers,
+			IntroductionRequest[] requests) {
+		if (introductionPaths == null || introducers.length < 2) {
+			// The first introducer is an a-priori neighbor; a path of one hop saves nothing
+			return false;
+		}
+		IntroductionPathCache.Path old = introductionPaths.put(destination, introducers, requests);
+		if (old != null) {
+			int depth = old.getDepth();
+			if (!old.getIntroducer(depth).equals(introducers[introducers.length - 1])
+					|| old.getRequest(depth - 1) != requests[requests.length - 2]) {
+				releaseIntroductionPath(old);
+			}
+		}
+		return true;
+	}
+
+	private void releaseIntroductionPath(IntroductionPathCache.Path path) {
+		int depth = path.getDepth();
+		NodeId last = path.getIntroducer(depth);
+		if (isIntroducedNeighbor(last)) {
+			removeIntroductionRequestFromVPN(path.getRequest(depth - 1), last);
+		}
+	}
+
+	@Override
+	protected void maintenance() {
+		super.maintenance();
+		if (introductionPaths != null) {
+			for (IntroductionPathCache.Path path : introductionPaths.expire()) {
+				releaseIntroductionPath(path);
+			}
+		}
+	}
+
 	@Override
-	public InetAddress getNextHopTo(InetAddress dst) {
+	public NodeId getNextHopTo(NodeId dst) {
 		return initialIntroducer;
 	}
 
-	public InetAddress getInitialIntroducer() {
+	public NodeId getInitialIntroducer() {
 		return initialIntroducer;
 	}
 
@@ -178,7 +259,7 @@ public class ProxyNode extends Node {
 		introductionSequences.put(intro.getIntroductionRequest(), intro);
 	}
 
-	public void addIntroductionToDestination(InetAddress dst, InetAddress src,
+	public void addIntroductionToDestination(NodeId dst, NodeId src,
 			IntroductionRequest introductionRequest) {
 		destinationIntroductionMap.put(new AddressPair(dst, src), introductionRequest);
 	}
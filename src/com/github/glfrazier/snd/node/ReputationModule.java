@@ -2,19 +2,21 @@ package com.github.glfrazier.snd.node;
 
 import static com.github.glfrazier.snd.util.AddressUtils.addrToString;
 import static java.lang.Math.max;
+import static java.util.logging.Level.FINE;
 import static java.util.logging.Level.FINEST;
 
-import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.TreeSet;
 import java.util.logging.Logger;
 
 import com.github.glfrazier.event.EventingSystem;
-import com.github.glfrazier.snd.protocol.IntroductionRequest;
 import com.github.glfrazier.snd.protocol.Pedigree;
+import com.github.glfrazier.snd.util.NodeId;
 
 public class ReputationModule {
 
@@ -32,29 +34,75 @@ public class ReputationModule {
 	private static final float EPSILON = 0.001f;
 	
 
-	private static final double FAST_FADE_MULTIPLIER = -1 * FADE_RATE * FADE_INTERVAL;
+	static final double FAST_FADE_MULTIPLIER = -1 * FADE_RATE * FADE_INTERVAL;
+	private static final double FAST_FADE_FACTOR = Math.exp(FAST_FADE_MULTIPLIER);
+
+	/**
+	 * The number of entities that the low-reputation cache aims to hold. See
+	 * {@link LowReputationIndex}.
+	 */
+	private static final int LOW_REPUTATION_CACHE_SIZE = 64;
+
+	/**
+	 * The number of queued feedbacks at which the feedback queue is flushed. See
+	 * {@link #queueFeedback(Pedigree, Feedback)}.
+	 */
+	private static final int FEEDBACK_BATCH_SIZE = 32;
 
 	private static final float BAD_FEEDBACK_DECREMENT_BASE = -1;
 	private static final float NOMINAL_FEEDBACK_INCREMENT_BASE = 0.0f;
 	private static final float GOOD_FEEDBACK_INCREMENT_BASE = 0.1f;
 	private static final float MAX_REPUTATION = 1.0f;
 
-	private Map<InetAddress, Entity> userMap;
+	private final ReputationStore store;
 	private ThresholdController thresholdController;
 	private final EventingSystem eventingSystem;
 
+	/**
+	 * If true (the default), reputations are faded in closed form when an entity
+	 * is read or adjusted. If false, every reputation is faded by a sweep each time
+	 * the least reputation is computed.
+	 */
+	private final boolean lazyFade;
+
+	/** The number of fade sweeps performed, when not fading lazily. */
+	private volatile long fadeSweeps;
+
 	private final Node owner;
 
+	/** Feedback awaiting application, by type. Guarded by its own monitor. */
+	private final EnumMap<Feedback, List<Pedigree>> pendingFeedback = new EnumMap<>(Feedback.class);
+	/** The number of queued feedbacks. Guarded by pendingFeedback's monitor. */
+	private int pendingFeedbackCount;
+
 	public ReputationModule(EventingSystem es, Node node) {
 		this.eventingSystem = es;
-		this.userMap = Collections.synchronizedMap(new HashMap<>());
+		NodeConfig config = node.getConfig();
+		this.lazyFade = config.lazyFade;
+		switch (config.reputationStore) {
+		case "entity":
+			this.store = new EntityReputationStore(es, this::getFadeEpoch, lazyFade, LOW_REPUTATION_CACHE_SIZE);
+			break;
+		case "table":
+			this.store = new AddressReputationTable(this::getFadeEpoch, lazyFade, LOW_REPUTATION_CACHE_SIZE);
+			break;
+		case "concurrent":
+			this.store = new ConcurrentReputationStore(this::getFadeEpoch, lazyFade, LOW_REPUTATION_CACHE_SIZE);
+			break;
+		default:
+			throw new IllegalArgumentException("snd.reputation.store must be 'entity', 'table' or 'concurrent'; it is '"
+					+ config.reputationStore + "'.");
+		}
+		for (Feedback f : Feedback.values()) {
+			pendingFeedback.put(f, new ArrayList<>());
+		}
 		this.thresholdController = new ThresholdController(this, es, node);
 		this.owner = node;
 	}
 
 //	public void feedbackReceived(Pedigree pedigree) {
 //		User u = userMap.get(pedigree.getSubject());
-//		InetAddress[] introducers = pedigree.getIntroducerSequence();
+//		NodeId[] introducers = pedigree.getIntroducerSequence();
 //		User intro = null;
 //		for (int i = 1; i < introducers.length; i++) {
 //			intro = userMap.get(introducers[i]);
@@ -71,30 +119,30 @@ public class ReputationModule {
 //	}
 
 	public boolean reputationIsGreaterThanThreshold(Pedigree pedigree, boolean verbose) {
-		Entity u = null;
 		// Find the minimum reputation in the pedigree
 		float minRep = 0;
-		u = userMap.get(pedigree.getSubject());
-		if (u != null) {
-			minRep = u.getReputation();
+		NodeId subject = pedigree.getSubject();
+		float subjectRep = store.getReputation(subject);
+		boolean subjectIsKnown = !Float.isNaN(subjectRep);
+		if (subjectIsKnown) {
+			minRep = subjectRep;
 			if (LOGGER.isLoggable(FINEST)) {
-				LOGGER.finest(u + " has pre-existing reputation " + minRep);
+				LOGGER.finest(addrToString(subject) + " has pre-existing reputation " + minRep);
 			}
 		} else {
 			if (LOGGER.isLoggable(FINEST)) {
-				LOGGER.finest(pedigree.getSubject() + " is an unknown entity.");
+				LOGGER.finest(subject + " is an unknown entity.");
 			}
 		}
-		IntroductionRequest[] requests = pedigree.getRequestSequence();
-		for (int i = requests.length; i > 0; i--) {
-			Entity intro = userMap.get(requests[i - 1].introducer);
-			if (intro != null) {
-				float rep = intro.getReputation();
-				if (rep < minRep) {
-					minRep = rep;
-					if (LOGGER.isLoggable(FINEST)) {
-						LOGGER.finest("\tintroducer " + intro + " has lowered the reputation. It is now: " + minRep);
-					}
+		// Walk the pedigree from the most recent introducer back to the first.
+		for (Pedigree p = pedigree; p.getRequest() != null; p = p.getParent()) {
+			NodeId introducer = p.getRequest().introducer;
+			float rep = store.getReputation(introducer);
+			if (rep < minRep) { // false if the introducer is unknown (NaN)
+				minRep = rep;
+				if (LOGGER.isLoggable(FINEST)) {
+					LOGGER.finest("\tintroducer " + addrToString(introducer)
+							+ " has lowered the reputation. It is now: " + minRep);
 				}
 			}
 		}
@@ -116,27 +164,70 @@ public class ReputationModule {
 
 		// Assign a reputation to every member of the pedigree that does not
 		// already have a reputation. Note that we are accepting this connection.
-		for (int i = requests.length; i > 0; i--) {
-			Entity intro = userMap.get(requests[i - 1].introducer);
-			if (intro == null) {
-				minRep = max(minRep - EPSILON, threshold + EPSILON);
-				intro = new Entity(requests[i - 1].introducer, minRep);
-				userMap.put(requests[i - 1].introducer, intro);
+		for (Pedigree p = pedigree; p.getRequest() != null; p = p.getParent()) {
+			float rep = max(minRep - EPSILON, threshold + EPSILON);
+			if (store.createIfAbsent(p.getRequest().introducer, rep)) {
+				minRep = rep;
 				if (LOGGER.isLoggable(FINEST)) {
-					LOGGER.finest(this + ": initializing " + requests[i - 1].introducer + " to " + minRep);
+					LOGGER.finest(this + ": initializing " + p.getRequest().introducer + " to " + minRep);
 				}
 			}
 		}
-		if (u == null) {
+		if (!subjectIsKnown) {
 			minRep = max(minRep - EPSILON, threshold + EPSILON);
-			u = new Entity(pedigree.getSubject(), minRep);
-			userMap.put(pedigree.getSubject(), u);
+			store.createIfAbsent(subject, minRep);
 		}
 
 		return result;
 	}
 
+	/**
+	 * Queue feedback to be applied in a batch. The queue is flushed at each
+	 * threshold update, and sooner if it fills; so the feedback received within a
+	 * threshold interval is coalesced, and none is held for longer than one
+	 * interval. Until it is flushed, queued feedback is not seen by introduction
+	 * decisions.
+	 */
+	public void queueFeedback(Pedigree pedigree, Feedback feedback) {
+		synchronized (pendingFeedback) {
+			pendingFeedback.get(feedback).add(pedigree);
+			if (++pendingFeedbackCount >= FEEDBACK_BATCH_SIZE) {
+				flushFeedback();
+			}
+		}
+	}
+
+	/**
+	 * Apply all queued feedback. The queue's monitor is held while the feedback is
+	 * applied, so that a thread that flushes the queue before reading reputations
+	 * sees every adjustment that was queued before it.
+	 */
+	public void flushFeedback() {
+		synchronized (pendingFeedback) {
+			if (pendingFeedbackCount == 0) {
+				return;
+			}
+			for (Map.Entry<Feedback, List<Pedigree>> entry : pendingFeedback.entrySet()) {
+				List<Pedigree> pedigrees = entry.getValue();
+				if (!pedigrees.isEmpty()) {
+					applyFeedbackBatch(pedigrees, entry.getKey());
+					pedigrees.clear();
+				}
+			}
+			pendingFeedbackCount = 0;
+		}
+	}
+
 	public void applyFeedback(Pedigree pedigree, Feedback feedback) {
+		applyFeedbackBatch(Collections.singletonList(pedigree), feedback);
+	}
+
+	/**
+	 * Apply the same feedback to a number of pedigrees. The adjustments are
+	 * coalesced, so each entity's reputation is adjusted once, by the sum of the
+	 * adjustments that the pedigrees call for.
+	 */
+	public void applyFeedbackBatch(Collection<Pedigree> pedigrees, Feedback feedback) {
 		// Apply feedback to the entire pedigree. The feedback has the greatest impact
 		// on the subject of the pedigree, but each introducer is also impacted. Note
 		// that introducers must reject introductions that have excessively long
@@ -157,108 +248,69 @@ public class ReputationModule {
 //			dRep = 0;
 //			break;
 		}
-		adjustReputation(pedigree.getSubject(), dRep);
-		dRep /= 4;
-		IntroductionRequest[] requests = pedigree.getRequestSequence();
-		for (int i = 0; i < requests.length; i++) {
-			adjustReputation(requests[i].introducer, dRep);
-			dRep /= 4;
+		Map<NodeId, Float> adjustments = new LinkedHashMap<>();
+		for (Pedigree pedigree : pedigrees) {
+			adjustments.merge(pedigree.getSubject(), dRep, Float::sum);
+			// The first introducer receives dRep/4, the next dRep/16, and so on. The
+			// pedigree is walked from the most recent introducer, so start from the
+			// smallest adjustment. Scaling by a power of two is exact.
+			float d = Math.scalb(dRep, -2 * pedigree.length());
+			for (Pedigree p = pedigree; p.getRequest() != null; p = p.getParent()) {
+				adjustments.merge(p.getRequest().introducer, d, Float::sum);
+				d *= 4;
+			}
+		}
+		for (Map.Entry<NodeId, Float> entry : adjustments.entrySet()) {
+			adjustReputation(entry.getKey(), entry.getValue());
+		}
+		if (LOGGER.isLoggable(FINE)) {
+			for (Pedigree pedigree : pedigrees) {
+				LOGGER.fine(owner.addTimePrefix(this + ": adjusted the reputation of "
+						+ addrToString(pedigree.getSubject()) + ": rep=" + store.getReputation(pedigree.getSubject())
+						+ ", thold=" + thresholdController.getThreshold()));
+			}
 		}
-		System.out.println(owner.addTimePrefix(this + ": adjusted the reputation of "
-				+ addrToString(pedigree.getSubject()) + ": rep=" + userMap.get(pedigree.getSubject()).reputation
-				+ ", thold=" + thresholdController.getThreshold()));
 	}
 
-	private void adjustReputation(InetAddress e, float dRep) {
-		Entity entity = userMap.get(e);
-		if (entity == null) {
+	private void adjustReputation(NodeId e, float dRep) {
+		if (!store.adjustReputation(e, dRep, MAX_REPUTATION)) {
 			LOGGER.warning("Asked to adjust the reputation of entity " + e
 					+ ", but the ReputationModule has no record of that entity.");
-			return;
 		}
-		entity.adjustReputation(dRep);
 	}
 
-	public synchronized Collection<Entity> getUsers() {
-		return userMap.values();
-	}
-
-	class Entity implements Comparable<Entity> {
-
-		InetAddress identity;
-		long timeCreated;
-		long timeOfLastFeedback;
-		long timeLastFaded;
-		float reputation;
-
-		public Entity(InetAddress id, float initialReputation) {
-			this(id);
-			reputation = initialReputation;
-		}
-
-		private Entity(InetAddress id) {
-			identity = id;
-			timeCreated = eventingSystem.getCurrentTime();
-		}
-
-		public synchronized void adjustReputation(float dRep) {
-			timeOfLastFeedback = eventingSystem.getCurrentTime();
-			// fade(); // apply the fade
-			reputation += dRep;
-			if (reputation > MAX_REPUTATION) {
-				reputation = MAX_REPUTATION;
-			}
-		}
-
-//		private void fade() {
-//			if (reputation < 0) {
-//				// only fade negative reputations
-//				long now = eventingSystem.getCurrentTime();
-//				float fadeTime = now - timeLastFaded;
-//				if (fadeTime > MINIMUM_FADE_INTERVAL) {
-//					reputation *= Math.exp(-1 * FADE_RATE * fadeTime);
-//					timeLastFaded = now;
-//				}
-//			}
-//		}
-
-		/**
-		 * What makes fastFade() "fast" is that the FADE_RATE (how quickly the
-		 * reputations move towards zero over time) and the FADE_INTERVAL (how long it
-		 * has been since fastFade() was last invoked) are both constants.
-		 */
-		public void fastFade() {
-			if (reputation < 0) {
-				reputation *= Math.exp( FAST_FADE_MULTIPLIER    // == -1 * FADE_RATE * FADE_INTERVAL
-						);
-			}
+	/**
+	 * The fade epoch is the number of fade intervals that have elapsed. Each time
+	 * it advances, every negative reputation is multiplied by
+	 * exp({@link #FAST_FADE_MULTIPLIER}).
+	 * 
+	 * @return the current fade epoch
+	 */
+	long getFadeEpoch() {
+		if (lazyFade) {
+			return eventingSystem.getCurrentTime() / FADE_INTERVAL;
 		}
+		return fadeSweeps;
+	}
 
-		public synchronized float getReputation() {
-			// fade();
+	/**
+	 * @param reputation a reputation
+	 * @param epochs     a number of fade intervals
+	 * @return the reputation after fading for that many intervals; only negative
+	 *         reputations fade
+	 */
+	static float fade(float reputation, long epochs) {
+		if (reputation >= 0 || epochs <= 0) {
 			return reputation;
 		}
-
-		@Override
-		public int hashCode() {
-			return identity.hashCode();
-		}
-
-		@Override
-		public boolean equals(Object o) {
-			Entity ou = (Entity) o;
-			return identity.equals(ou.identity);
-		}
-
-		@Override
-		public int compareTo(Entity o) {
-			return Float.compare(reputation, o.reputation);
+		if (epochs == 1) {
+			return (float) (reputation * FAST_FADE_FACTOR);
 		}
+		return (float) (reputation * Math.exp(epochs * FAST_FADE_MULTIPLIER));
+	}
 
-		@Override
-		public String toString() {
-			return "Entity " + addrToString(identity);
-		}
+	public ThresholdController getThresholdController() {
+		return thresholdController;
 	}
 
 	/**
@@ -266,26 +318,24 @@ public class ReputationModule {
 	 * {@link ThresholdController#updateThreshold()}, which in turn is invoked once
 	 * every {@link ThresholdController#THRESHOLD_UPDATE_INTERVAL} milliseconds (as
 	 * of this moment, once very 10 seconds). updateThreshold() must obtain the
-	 * minimum reputation to know how far it can degrade towards zero. At the point
-	 * where we are calculating the minimum reputation, we are degrading ALL of the
-	 * reputations towards zero.
+	 * minimum reputation to know how far it can degrade towards zero. If we are not
+	 * fading lazily, then at the point where we are calculating the minimum
+	 * reputation, we are degrading ALL of the reputations towards zero.
 	 * 
 	 * @return
 	 */
 	public float getLeastReputation() {
-		// TODO make this a less-expensive operation by keeping the Users in bins, so we
-		// only need to sort the lowest bin. Actually, we just need one bin that has the
-		// lowest N Users in it. If the bin empties or becomes too big, we adjust the
-		// upper boundary of this low-reputation cache.
-		if (userMap.isEmpty()) {
+		flushFeedback();
+		// The least reputation is maintained by a low-reputation cache with a moving
+		// upper bound (see LowReputationIndex), so no sort of the entities is needed.
+		if (store.size() == 0) {
 			return EPSILON;
 		}
-		TreeSet<Entity> sorted = new TreeSet<>();
-		for (Entity e : userMap.values()) {
-			e.fastFade();
-			sorted.add(e);
+		if (!lazyFade) {
+			store.fadeAll();
+			fadeSweeps++;
 		}
-		return sorted.iterator().next().getReputation();
+		return store.getLeastReputation();
 	}
 
 	@Override
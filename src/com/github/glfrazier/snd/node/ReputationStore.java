@@ -0,0 +1,56 @@
+package com.github.glfrazier.snd.node;
+
+import com.github.glfrazier.snd.util.NodeId;
+
+
+/**
+ * The table of reputations that a {@link ReputationModule} maintains. An
+ * implementation is responsible for fading the reputations it holds (see
+ * {@link ReputationModule#getFadeEpoch()}) and for tracking the least
+ * reputation it holds. Implementations are thread-safe.
+ */
+interface ReputationStore {
+
+	/**
+	 * @param entity the entity
+	 * @return the entity's reputation, or {@link Float#NaN} if the store has no
+	 *         record of the entity
+	 */
+	float getReputation(NodeId entity);
+
+	/**
+	 * Record an entity with the specified reputation, unless the store already
+	 * has a record of it.
+	 *
+	 * @param entity            the entity
+	 * @param initialReputation the reputation to assign the entity if it is new
+	 * @return true if the entity was added, false if it was already present
+	 */
+	boolean createIfAbsent(NodeId entity, float initialReputation);
+
+	/**
+	 * Add <code>dRep</code> to the reputation of an entity, capping the result at
+	 * <code>maxReputation</code>.
+	 *
+	 * @return false if the store has no record of the entity
+	 */
+	boolean adjustReputation(NodeId entity, float dRep, float maxReputation);
+
+	/**
+	 * @return the least reputation of any entity in the store, or
+	 *         {@link Float#POSITIVE_INFINITY} if the store is empty
+	 */
+	float getLeastReputation();
+
+	/**
+	 * Multiply every negative reputation by the fade factor of a single fade
+	 * interval. Only used when the reputation module is not fading lazily.
+	 */
+	void fadeAll();
+
+	/**
+	 * @return the number of entities in the store
+	 */
+	int size();
+
+}
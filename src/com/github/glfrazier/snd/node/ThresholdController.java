@@ -22,8 +22,9 @@ public class ThresholdController implements EventProcessor {
 
 	private final ReputationModule reputationModule;
 	private final EventingSystem eventingSystem;
+	private final Node node;
 	private final String owner;
-	private float threshold;
+	private volatile float threshold;
 
 	private Event THRESHOLD_UPDATE_EVENT = new Event() {
 		public String toString() {
@@ -47,35 +48,39 @@ public class ThresholdController implements EventProcessor {
 	public ThresholdController(ReputationModule repModule, EventingSystem es, Node owner) {
 		this.reputationModule = repModule;
 		this.eventingSystem = es;
+		this.node = owner;
 		this.owner = owner.toString();
 		logger = Logger.getLogger("tc" + addrToString(owner.getAddress()));
 		health = 1.0;
-		targetHealth = owner.getProbabilityProperty("snd.thold_ctler.target_health");
-		K = owner.getFloatProperty("snd.thold_ctlr.K");
-		tauI = owner.getFloatProperty("snd.thold_ctlr.tau_i");
-		tauT = owner.getFloatProperty("snd.thold_ctlr.tau_t");
-		headSpace = owner.getFloatProperty("snd.thold_ctlr.head_space");
-		sensorSmoothingAlpha = owner.getFloatProperty("snd.thold_ctlr.sensor_smoothing_alpha");
-		if (tauI == 0.0) {
-			throw new IllegalArgumentException("snd.thold_ctlr.tau_i cannot be zero.");
-		}
-		if (K == 0.0) {
-			throw new IllegalArgumentException("snd.thold_ctlr.K cannot be zero.");
-		}
+		NodeConfig config = owner.getConfig();
+		targetHealth = config.targetHealth;
+		K = config.K;
+		tauI = config.tauI;
+		tauT = config.tauT;
+		headSpace = config.headSpace;
+		sensorSmoothingAlpha = config.sensorSmoothingAlpha;
 		timeOfLastThresholdUpdate = eventingSystem.getCurrentTime();
 		eventingSystem.scheduleEventRelative(this, THRESHOLD_UPDATE_EVENT, THRESHOLD_UPDATE_INTERVAL);
 		// And do an initializing run
 		updateThreshold();
 	}
 
-	public synchronized float getThreshold() {
+	/**
+	 * Not synchronized: the threshold is volatile, so that introduction decisions
+	 * do not wait on a threshold update.
+	 */
+	public float getThreshold() {
 		return threshold;
 	}
 
+	public synchronized double getHealth() {
+		return health;
+	}
+
 	@Override
 	public void process(Event e, EventingSystem eventingSystem, long currentTime) {
 		if (e == THRESHOLD_UPDATE_EVENT) {
-			updateThreshold();
+			node.runSerialized(this::updateThreshold);
 			eventingSystem.scheduleEventRelative(this, e, THRESHOLD_UPDATE_INTERVAL);
 		}
 	}
@@ -2,18 +2,16 @@ package com.github.glfrazier.snd.protocol;
 
 import static com.github.glfrazier.snd.util.AddressUtils.addrToString;
 
-import java.io.IOException;
-import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.github.glfrazier.event.Event;
+import com.github.glfrazier.event.EventingSystem;
+import com.github.glfrazier.snd.node.IntroductionPathCache;
 import com.github.glfrazier.snd.node.ProxyNode;
-import com.github.glfrazier.snd.node.Node;
 import com.github.glfrazier.snd.protocol.message.Message;
 import com.github.glfrazier.snd.util.DenialReporter;
-import com.github.glfrazier.statemachine.EventImpl;
-import com.github.glfrazier.statemachine.State;
-import com.github.glfrazier.statemachine.StateMachine;
-import com.github.glfrazier.statemachine.Transition;
+import com.github.glfrazier.snd.util.NodeId;
 
 /**
  * One start state ("Unconnected"), two end states ("Connected", "Failure"). In
@@ -24,40 +22,111 @@ import com.github.glfrazier.statemachine.Transition;
  * 
  * Note that the message still needs to be sent when this protocol is completed.
  * 
+ * If the proxy has a cached path to the destination (see
+ * {@link ProxyNode#takeIntroductionPath(NodeId)}), the protocol starts at the
+ * deepest introducer on that path to which the proxy still has a VPN, rather
+ * than at the initial introducer. Should that introduction be denied, the
+ * denial is reported like any other, and the path is walked again from the
+ * initial introducer.
+ * 
  * @author Greg Frazier
  *
  */
-public class ClientConnectToServerProtocol extends StateMachine implements StateMachine.StateMachineTracker {
+public class ClientConnectToServerProtocol extends ProtocolStateMachine implements ProtocolStateMachine.Tracker {
 
-	private static final Event NEXT_STEP = new EventImpl<RequesterProtocol>(null, "next_step");
-	private static final Event CONNECTED = new EventImpl<RequesterProtocol>(null, "connected");
-	private static final Event FAILURE = new EventImpl<RequesterProtocol>(null, "failure");
+	// Each event has its own class, on which the transition table is keyed.
+	private static final Event NEXT_STEP = new Event() {
+		public String toString() {
+			return "next_step";
+		}
+	};
+	private static final Event CONNECTED = new Event() {
+		public String toString() {
+			return "connected";
+		}
+	};
+	private static final Event FAILURE = new Event() {
+		public String toString() {
+			return "failure";
+		}
+	};
 	private final Message message;
-	private final Node requester;
-	private InetAddress introducer;
-	private final InetAddress target;
+	private final ProxyNode requester;
+	private NodeId introducer;
+	private final NodeId target;
 
 	private IntroductionRequest priorIntroduction;
 	private DenialReporter denialReporter;
 
+	private static final String NAME = "Introduction Sequence";
+
 	private int depth = 1;
 	protected IntroductionRequest prevRequest;
 
-	public ClientConnectToServerProtocol(ProxyNode node, Message m, InetAddress networkDestination, DenialReporter denialReporter,
+	/** The introducer asked, and the request made, at each depth. */
+	private final List<NodeId> pathIntroducers = new ArrayList<>();
+	private final List<IntroductionRequest> pathRequests = new ArrayList<>();
+	/** True until the first introduction of a protocol that resumed a cached path. */
+	private boolean resumed;
+
+	public ClientConnectToServerProtocol(ProxyNode node, Message m, NodeId networkDestination, DenialReporter denialReporter,
 			boolean verbose) {
-		super("Introduction Sequence: " + addrToString(node.getAddress()) + " ==> " + addrToString(networkDestination),
-				EventEqualityMode.EQUALS, node.getEventingSystem());
+		super(NAME, TABLE);
 		this.message = m;
 		this.requester = node;
 		this.target = networkDestination;
 		this.denialReporter = denialReporter;
 		this.verbose = verbose || m.isVerbose();
 		this.introducer = requester.getNextHopTo(m.getDst());
+		IntroductionPathCache.Path path = node.takeIntroductionPath(networkDestination);
+		if (path != null) {
+			resume(path);
+		}
+	}
 
-		addTransition(new Transition(unconnectedState, NEXT_STEP, unconnectedState));
-		addTransition(new Transition(unconnectedState, FAILURE, failureState));
-		addTransition(new Transition(unconnectedState, CONNECTED, connectedState));
-		setStartState(unconnectedState);
+	/**
+	 * Start at the deepest introducer on the path to which the proxy still has a
+	 * VPN. That VPN is held by the request that introduced the proxy to the
+	 * introducer, as it would be had the path been walked again; the introducer
+	 * knows the proxy by that request.
+	 */
+	private void resume(IntroductionPathCache.Path path) {
+		for (int d = path.getDepth(); d > 1; d--) {
+			IntroductionRequest prior = path.getRequest(d - 1);
+			if (requester.addIntroductionRequestToVPN(prior, path.getIntroducer(d))) {
+				for (int i = 1; i < d; i++) {
+					pathIntroducers.add(path.getIntroducer(i));
+					pathRequests.add(path.getRequest(i));
+				}
+				introducer = path.getIntroducer(d);
+				priorIntroduction = prior;
+				prevRequest = prior;
+				depth = d;
+				resumed = true;
+				if (verbose) {
+					System.out.println(this + ": resuming the cached path at depth " + depth);
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Events scheduled on the protocol itself are run in the node's execution
+	 * context.
+	 */
+	@Override
+	public void process(Event e, EventingSystem eventingSystem, long currentTime) {
+		requester.runSerialized(() -> super.process(e, eventingSystem, currentTime));
+	}
+
+	private static String name(NodeId requester, NodeId target) {
+		return NAME + ": " + addrToString(requester) + " ==> " + addrToString(target);
+	}
+
+	@Override
+	public String toString() {
+		return name(requester.getAddress(), target);
 	}
 
 	public boolean isCompleted() {
@@ -69,16 +138,19 @@ public class ClientConnectToServerProtocol extends StateMachine implements State
 	}
 
 	@Override
-	public void stateMachineEnded(StateMachine machine) {
+	public void stateMachineEnded(ProtocolStateMachine machine) {
 		RequesterProtocol requestProtocol = (RequesterProtocol) machine;
 		if (requestProtocol.introductionSucceeded()) {
-			InetAddress newNeighbor = requestProtocol.getResultingNeighbor();
+			resumed = false;
+			NodeId newNeighbor = requestProtocol.getResultingNeighbor();
+			boolean connected = newNeighbor.equals(target);
 			// Remove the prior introduction from the link used in the prior introduction. Note that this has no impact on a-priori
-			// connections.
-			if (priorIntroduction != null) {
+			// connections. If the path is cached, the cache holds the link to the last introducer instead.
+			if (priorIntroduction != null && !(connected && requester.cacheIntroductionPath(target,
+					pathIntroducers.toArray(new NodeId[0]), pathRequests.toArray(new IntroductionRequest[0])))) {
 				requester.removeIntroductionRequestFromVPN(priorIntroduction, requestProtocol.getIntroducer());
 			}
-			if (newNeighbor.equals(target)) {
+			if (connected) {
 				if (!message.getDst().equals(target)) {
 					requester.addRoute(message.getDst(), target);
 				}
@@ -95,17 +167,34 @@ public class ClientConnectToServerProtocol extends StateMachine implements State
 		// else
 		requester.getLogger().warning(requester.addTimePrefix(this + ": introduction denied at depth " + depth));
 		denialReporter.deniedAtDepth(depth);
+		if (resumed) {
+			// The cached path is only a hint; walk the path again from the initial introducer.
+			resumed = false;
+			if (requester.isIntroducedNeighbor(requestProtocol.getIntroducer())) {
+				requester.removeIntroductionRequestFromVPN(priorIntroduction, requestProtocol.getIntroducer());
+			}
+			introducer = requester.getNextHopTo(message.getDst());
+			priorIntroduction = null;
+			prevRequest = null;
+			depth = 1;
+			pathIntroducers.clear();
+			pathRequests.clear();
+			this.receive(NEXT_STEP);
+			return;
+		}
 		this.receive(FAILURE);
 		return;
 	}
 
-	private static State.Action introductionAction = new State.Action() {
+	private static final State.Action introductionAction = new State.Action() {
 
-		public void act(StateMachine sm, State state, Event e) {
+		public void act(ProtocolStateMachine sm, State state, Event e) {
 			ClientConnectToServerProtocol protocol = (ClientConnectToServerProtocol) sm;
 			IntroductionRequest request = new IntroductionRequest(protocol.requester.getAddress(), protocol.introducer,
 					protocol.target);
 			protocol.verbose |=  protocol.requester.checkIntroductionRequestNonce(request.nonce);
+			protocol.pathIntroducers.add(protocol.introducer);
+			protocol.pathRequests.add(request);
 			RequesterProtocol intro = new RequesterProtocol(protocol.requester, request, protocol.prevRequest, protocol.verbose);
 			protocol.prevRequest = request;
 			intro.registerCallback(protocol);
@@ -113,9 +202,17 @@ public class ClientConnectToServerProtocol extends StateMachine implements State
 		}
 	};
 
-	private static State unconnectedState = new State("Unconnected", introductionAction);
-	private static State connectedState = new State("Connected");
-	private static State failureState = new State("Failure");
+	private static final TransitionTable TABLE = new TransitionTable();
+	private static final State unconnectedState = TABLE.state("Unconnected", introductionAction);
+	private static final State connectedState = TABLE.state("Connected");
+	private static final State failureState = TABLE.state("Failure");
+
+	static {
+		TABLE.setStartState(unconnectedState);
+		TABLE.addTransition(unconnectedState, NEXT_STEP.getClass(), unconnectedState);
+		TABLE.addTransition(unconnectedState, FAILURE.getClass(), failureState);
+		TABLE.addTransition(unconnectedState, CONNECTED.getClass(), connectedState);
+	}
 
 	public boolean isConnected() {
 		return this.getCurrentState() == connectedState;
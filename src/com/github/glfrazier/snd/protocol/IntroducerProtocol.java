@@ -1,19 +1,16 @@
 package com.github.glfrazier.snd.protocol;
 
-import java.net.InetAddress;
 
 import com.github.glfrazier.event.Event;
 import com.github.glfrazier.snd.node.Node;
+import com.github.glfrazier.snd.protocol.ProtocolStateMachine.State.Action;
 import com.github.glfrazier.snd.protocol.message.IntroductionAcceptedMessage;
 import com.github.glfrazier.snd.protocol.message.IntroductionCompletedMessage;
 import com.github.glfrazier.snd.protocol.message.IntroductionDeniedMessage;
 import com.github.glfrazier.snd.protocol.message.IntroductionOfferMessage;
 import com.github.glfrazier.snd.protocol.message.IntroductionRefusedMessage;
 import com.github.glfrazier.snd.protocol.message.IntroductionRequestMessage;
-import com.github.glfrazier.statemachine.State;
-import com.github.glfrazier.statemachine.State.Action;
-import com.github.glfrazier.statemachine.StateMachine;
-import com.github.glfrazier.statemachine.Transition;
+import com.github.glfrazier.snd.util.NodeId;
 
 public class IntroducerProtocol extends IntroductionProtocol {
 
@@ -37,28 +34,21 @@ public class IntroducerProtocol extends IntroductionProtocol {
 	 */
 	public IntroducerProtocol(Node introducer, IntroductionRequestMessage m,
 			IntroductionRequest previousIntroductionRequest, boolean verbose) {
-		super(introducer, m.getIntroductionRequest(), "Introducer Protocol", verbose || m.isVerbose());
+		super(introducer, m.getIntroductionRequest(), "Introducer Protocol", TABLE, verbose || m.isVerbose());
 		this.previousIntroductionRequest = previousIntroductionRequest;
-
-		setStartState(decisionState);
-		addTransition(new Transition(decisionState, FAILURE_EVENT.getClass(), sendDeniedState));
-		addTransition(new Transition(decisionState, IntroductionRefusedMessage.class, sendDeniedState));
-		addTransition(new Transition(decisionState, IntroductionCompletedMessage.class, terminalState));
-		addTransition(new Transition(decisionState, IntroductionAcceptedMessage.class, sendCompletionState));
-		addTransition(new Transition(sendDeniedState, WILDCARD_EVENT.getClass(), terminalState));
-		addTransition(new Transition(sendCompletionState, WILDCARD_EVENT.getClass(), terminalState));
-
 	}
 
+	private static final TransitionTable TABLE = new TransitionTable();
+
 	private static final Action decisionAction = new Action() {
 
 		@Override
-		public void act(StateMachine sm, State s, Event e) {
+		public void act(ProtocolStateMachine sm, State s, Event e) {
 			IntroducerProtocol rrp = (IntroducerProtocol) sm;
 			Pedigree p = rrp.node.getPedigree(rrp.introductionRequest.requester);
 			boolean sendOffer = rrp.node.evaluatePedigree(p);
 			if (sendOffer) {
-				InetAddress target = rrp.node.getNextHopTo(rrp.introductionRequest.destination);
+				NodeId target = rrp.node.getNextHopTo(rrp.introductionRequest.destination);
 				rrp.node.send(rrp, new IntroductionOfferMessage(rrp.introductionRequest, target, p));
 			} else {
 				sm.receive(FAILURE_EVENT);
@@ -66,23 +56,23 @@ public class IntroducerProtocol extends IntroductionProtocol {
 		}
 
 	};
-	private static final State decisionState = new State("decide to offer", decisionAction);
+	private static final State decisionState = TABLE.state("decide to offer", decisionAction);
 
 	private static final Action sendDeniedAction = new Action() {
 
 		@Override
-		public void act(StateMachine sm, State s, Event e) {
+		public void act(ProtocolStateMachine sm, State s, Event e) {
 			IntroducerProtocol rrp = (IntroducerProtocol) sm;
 			rrp.node.send(rrp, new IntroductionDeniedMessage(rrp.introductionRequest));
 		}
 
 	};
-	private static final State sendDeniedState = new State("send IntroductionDeniedMessage", sendDeniedAction);
+	private static final State sendDeniedState = TABLE.state("send IntroductionDeniedMessage", sendDeniedAction);
 
 	private static final Action sendCompletionAction = new Action() {
 
 		@Override
-		public void act(StateMachine sm, State s, Event e) {
+		public void act(ProtocolStateMachine sm, State s, Event e) {
 			IntroducerProtocol rrp = (IntroducerProtocol) sm;
 			IntroductionAcceptedMessage iaMsg = (IntroductionAcceptedMessage) e;
 			rrp.introductionSucceeded = true;
@@ -92,12 +82,12 @@ public class IntroducerProtocol extends IntroductionProtocol {
 
 	};
 	private static final State sendCompletionState = //
-			new State("send IntroductionCompletedMessage", sendCompletionAction);
+			TABLE.state("send IntroductionCompletedMessage", sendCompletionAction);
 
 	private static final Action terminalAction = new Action() {
 
 		@Override
-		public void act(StateMachine sm, State s, Event e) {
+		public void act(ProtocolStateMachine sm, State s, Event e) {
 			IntroducerProtocol rrp = (IntroducerProtocol) sm;
 			if (e instanceof IntroductionCompletedMessage) {
 				rrp.introductionSucceeded = true;
@@ -110,7 +100,17 @@ public class IntroducerProtocol extends IntroductionProtocol {
 		}
 
 	};
-	private static final State terminalState = new State("terminal state", terminalAction);
+	private static final State terminalState = TABLE.state("terminal state", terminalAction);
+
+	static {
+		TABLE.setStartState(decisionState);
+		TABLE.addTransition(decisionState, FAILURE_EVENT.getClass(), sendDeniedState);
+		TABLE.addTransition(decisionState, IntroductionRefusedMessage.class, sendDeniedState);
+		TABLE.addTransition(decisionState, IntroductionCompletedMessage.class, terminalState);
+		TABLE.addTransition(decisionState, IntroductionAcceptedMessage.class, sendCompletionState);
+		TABLE.addWildcardTransition(sendDeniedState, terminalState);
+		TABLE.addWildcardTransition(sendCompletionState, terminalState);
+	}
 
 	protected IntroductionRequest getPreviousIntroductionRequest() {
 		return previousIntroductionRequest;
@@ -1,25 +1,40 @@
 package com.github.glfrazier.snd.protocol;
 
+import com.github.glfrazier.event.Event;
+import com.github.glfrazier.event.EventingSystem;
 import com.github.glfrazier.snd.node.Node;
 import com.github.glfrazier.snd.protocol.message.IntroductionOfferMessage;
-import com.github.glfrazier.statemachine.StateMachine;
-import com.github.glfrazier.statemachine.StateMachine.EventEqualityMode;
 
-public class IntroductionProtocol extends StateMachine {
+public class IntroductionProtocol extends ProtocolStateMachine {
 
 	protected final Node node;
 	protected final IntroductionRequest introductionRequest;
+	private final String label;
 
-	public IntroductionProtocol(Node sndNode, IntroductionRequest ir, String label, boolean verbose) {
-		super(label + "(" + sndNode + "): " + ir, EventEqualityMode.CLASS_EQUALS, sndNode.getEventingSystem());
+	/**
+	 * @param table the subclass's states and transitions
+	 */
+	public IntroductionProtocol(Node sndNode, IntroductionRequest ir, String label, TransitionTable table,
+			boolean verbose) {
+		super(label, table);
 		this.node = sndNode;
 		this.introductionRequest = ir;
+		this.label = label;
 		this.verbose = verbose;
 		if (ir == null) {
 			throw new NullPointerException("Created with a null IntroductionRequest!");
 		}
 	}
 	
+	private static String name(String label, Node node, IntroductionRequest ir) {
+		return label + "(" + node + "): " + ir;
+	}
+
+	@Override
+	public String toString() {
+		return name(label, node, introductionRequest);
+	}
+
 	public IntroductionRequest getIntroductionRequest() {
 		return introductionRequest;
 	}
@@ -31,4 +46,13 @@ public class IntroductionProtocol extends StateMachine {
 	public boolean getVerbose() {
 		return verbose;
 	}
+
+	/**
+	 * Events scheduled on the protocol itself (e.g., timeouts) are run in the
+	 * node's execution context.
+	 */
+	@Override
+	public void process(Event e, EventingSystem eventingSystem, long currentTime) {
+		node.runSerialized(() -> super.process(e, eventingSystem, currentTime));
+	}
 }
@@ -3,20 +3,17 @@ package com.github.glfrazier.snd.protocol;
 import static com.github.glfrazier.snd.util.AddressUtils.addrToString;
 
 import java.io.Serializable;
-import java.net.InetAddress;
-import java.util.concurrent.atomic.AtomicLong;
 
 import com.github.glfrazier.snd.util.AddressUtils;
+import com.github.glfrazier.snd.util.NodeId;
 
 public class IntroductionRequest implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
-	private static final AtomicLong NONCE_GENERATOR = new AtomicLong(0);
-
-	public final InetAddress requester;
-	public final InetAddress introducer;
-	public final InetAddress destination;
+	public final NodeId requester;
+	public final NodeId introducer;
+	public final NodeId destination;
 	public final long nonce;
 	private transient String stringValue;
 
@@ -30,11 +27,11 @@ public class IntroductionRequest implements Serializable {
 	 * @param introducer the node of whom the introduction is being requested
 	 * @param destination the node to which the requester wishes to be connected
 	 */
-	public IntroductionRequest(InetAddress requester, InetAddress introducer, InetAddress destination) {
+	public IntroductionRequest(NodeId requester, NodeId introducer, NodeId destination) {
 		this.requester = requester;
 		this.introducer = introducer;
 		this.destination = destination;
-		this.nonce = NONCE_GENERATOR.getAndIncrement();
+		this.nonce = requester.nextIdentifier();
 	}
 
 	public int hashCode() {
@@ -2,42 +2,72 @@ package com.github.glfrazier.snd.protocol;
 
 import static com.github.glfrazier.snd.util.AddressUtils.addrToString;
 import java.io.Serializable;
-import java.net.InetAddress;
 
+import com.github.glfrazier.snd.util.NodeId;
+
+/**
+ * The sequence of introductions by which an entity (the subject) reached a
+ * node. A pedigree is immutable and persistent: each pedigree is a cell holding
+ * the most recent introduction request and a reference to the pedigree it
+ * extends (its parent), so extending a pedigree is O(1) and pedigrees that
+ * share a prefix share its cells. The pedigree with no requests is the root.
+ */
 public class Pedigree implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
-	public final InetAddress entity;
+	public final NodeId entity;
+
+	private final Pedigree parent;
+
+	private final IntroductionRequest request;
 
-	private IntroductionRequest[] requests;
+	private final int length;
 
 	private transient String stringValue;
 
-	public Pedigree(InetAddress entity) {
+	public Pedigree(NodeId entity) {
 		this.entity = entity;
-		this.requests = new IntroductionRequest[0];
+		this.parent = null;
+		this.request = null;
+		this.length = 0;
+	}
+
+	private Pedigree(Pedigree parent, IntroductionRequest request) {
+		this.entity = parent.entity;
+		this.parent = parent;
+		this.request = request;
+		this.length = parent.length + 1;
 	}
 
 	public Pedigree getNext(IntroductionRequest request) {
-		Pedigree p = new Pedigree(entity);
-		p.requests = new IntroductionRequest[this.requests.length + 1];
-		for (int i = 0; i < this.requests.length; i++) {
-			p.requests[i] = this.requests[i];
-		}
-		p.requests[p.requests.length - 1] = request;
-		return p;
+		return new Pedigree(this, request);
+	}
+
+	/**
+	 * @return the most recent request by which the subject reached this node, or
+	 *         null if this is the root pedigree
+	 */
+	public IntroductionRequest getRequest() {
+		return request;
 	}
 
 	/**
-	 * Get the sequence of requests by which the requester reached this node.
-	 * 
+	 * @return the pedigree that this pedigree extends, or null if this is the root
+	 *         pedigree
 	 */
-	public IntroductionRequest[] getRequestSequence() {
-		return requests;
+	public Pedigree getParent() {
+		return parent;
 	}
 
-	public InetAddress getSubject() {
+	/**
+	 * @return the number of requests in the pedigree
+	 */
+	public int length() {
+		return length;
+	}
+
+	public NodeId getSubject() {
 		return entity;
 	}
 
@@ -45,15 +75,24 @@ public class Pedigree implements Serializable {
 		if (stringValue == null) {
 			StringBuffer b = new StringBuffer(addrToString(entity));
 			b.append('{');
-			for (int i = 0; i < requests.length; i++) {
-				if (i > 0) {
-					b.append(',');
-				}
-				b.append(requests[i]);
-			}
+			appendRequests(b);
 			stringValue = b.append('}').toString();
 		}
 		return stringValue;
 	}
 
+	/**
+	 * Append the requests, oldest first.
+	 */
+	private void appendRequests(StringBuffer b) {
+		if (parent == null) {
+			return;
+		}
+		parent.appendRequests(b);
+		if (parent.parent != null) {
+			b.append(',');
+		}
+		b.append(request);
+	}
+
 }
@@ -0,0 +1,222 @@
+package com.github.glfrazier.snd.protocol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.glfrazier.event.Event;
+import com.github.glfrazier.event.EventProcessor;
+import com.github.glfrazier.event.EventingSystem;
+
+/**
+ * A finite state machine whose states and transitions are shared by every
+ * instance of a protocol. A protocol class builds one {@link TransitionTable}
+ * in its static initializer; an instance holds only the table, its current
+ * state, and the tracker to notify when it ends.
+ *
+ * A transition is taken on the class of the event (a message type, or one of a
+ * protocol's event constants, each of which has its own class). The table maps
+ * each event class to a column, so finding a transition is a map lookup on the
+ * class and an array index, rather than a search of the current state's
+ * transitions.
+ *
+ * Entering a state runs its action. The action may itself send the machine an
+ * event, in which case the next transition is taken before the action returns.
+ * A state with no transitions out of it is terminal: entering it notifies the
+ * machine's tracker. An event for which the current state has no transition is
+ * ignored.
+ */
+public abstract class ProtocolStateMachine implements EventProcessor {
+
+	public static final Event FAILURE_EVENT = new Event() {
+		public String toString() {
+			return "failure";
+		}
+	};
+
+	public static final Event SUCCESS_EVENT = new Event() {
+		public String toString() {
+			return "success";
+		}
+	};
+
+	/** Notified when a state machine enters a terminal state. */
+	public interface Tracker {
+		public void stateMachineEnded(ProtocolStateMachine machine);
+	}
+
+	public static final class State {
+
+		public interface Action {
+			public void act(ProtocolStateMachine sm, State s, Event e);
+		}
+
+		private final String name;
+		private final Action action;
+		/** This state's row in its table. */
+		private final int index;
+
+		private State(String name, Action action, int index) {
+			this.name = name;
+			this.action = action;
+			this.index = index;
+		}
+
+		public String toString() {
+			return name;
+		}
+	}
+
+	/**
+	 * The states and transitions of a protocol. A table is built once, in the
+	 * static initializer of the protocol class, and is not modified afterwards;
+	 * it is then shared, without synchronization, by every instance of the
+	 * protocol.
+	 */
+	public static final class TransitionTable {
+		private final List<State> states = new ArrayList<>();
+		/** The column of each event class that has a transition. */
+		private final Map<Class<?>, Integer> columns = new HashMap<>();
+		/** The next state, by state and event column; null if there is none. */
+		private State[][] next = new State[0][];
+		/** The next state on any event not in the state's row; null if none. */
+		private State[] wildcard = new State[0];
+		private boolean[] terminal = new boolean[0];
+		private State start;
+
+		public State state(String name) {
+			return state(name, null);
+		}
+
+		public State state(String name, State.Action action) {
+			State s = new State(name, action, states.size());
+			states.add(s);
+			next = Arrays.copyOf(next, states.size());
+			next[s.index] = new State[columns.size()];
+			wildcard = Arrays.copyOf(wildcard, states.size());
+			terminal = Arrays.copyOf(terminal, states.size());
+			terminal[s.index] = true;
+			return s;
+		}
+
+		public void setStartState(State s) {
+			start = s;
+		}
+
+		public void addTransition(State from, Class<?> eventClass, State to) {
+			Integer column = columns.get(eventClass);
+			if (column == null) {
+				column = columns.size();
+				columns.put(eventClass, column);
+				for (int i = 0; i < next.length; i++) {
+					next[i] = Arrays.copyOf(next[i], columns.size());
+				}
+			}
+			if (next[from.index][column] != null) {
+				throw new IllegalArgumentException("State '" + from + "' already has a transition on " + eventClass);
+			}
+			next[from.index][column] = to;
+			terminal[from.index] = false;
+		}
+
+		/**
+		 * Add a transition taken on any event for which the state has no other
+		 * transition.
+		 */
+		public void addWildcardTransition(State from, State to) {
+			wildcard[from.index] = to;
+			terminal[from.index] = false;
+		}
+
+		private State getNextState(State from, Event e) {
+			Integer column = columns.get(e.getClass());
+			if (column != null) {
+				State to = next[from.index][column];
+				if (to != null) {
+					return to;
+				}
+			}
+			return wildcard[from.index];
+		}
+	}
+
+	private final String name;
+	private final TransitionTable table;
+	private State currentState;
+	private Tracker tracker;
+	protected boolean verbose;
+
+	/**
+	 * @param name  the name of this machine; see {@link #toString()}
+	 * @param table the protocol's states and transitions
+	 */
+	protected ProtocolStateMachine(String name, TransitionTable table) {
+		this.name = name;
+		this.table = table;
+	}
+
+	/**
+	 * Enter the start state.
+	 */
+	public synchronized void begin() {
+		enter(table.start, null);
+	}
+
+	public synchronized void receive(Event e) {
+		if (currentState == null) {
+			// Not yet begun
+			return;
+		}
+		State to = table.getNextState(currentState, e);
+		if (to == null) {
+			if (verbose) {
+				System.out.println(this + ": no transition from " + currentState + " on " + e);
+			}
+			return;
+		}
+		if (verbose) {
+			System.out.println(this + ": " + currentState + " --[" + e + "]--> " + to);
+		}
+		enter(to, e);
+	}
+
+	private void enter(State s, Event e) {
+		currentState = s;
+		if (s.action != null) {
+			s.action.act(this, s, e);
+		}
+		// The action may have moved the machine on; only the machine that stopped in
+		// a terminal state has ended.
+		if (currentState == s && table.terminal[s.index] && tracker != null) {
+			tracker.stateMachineEnded(this);
+		}
+	}
+
+	public synchronized State getCurrentState() {
+		return currentState;
+	}
+
+	/**
+	 * @param t notified when this machine enters a terminal state. A machine has at
+	 *          most one tracker.
+	 */
+	public synchronized void registerCallback(Tracker t) {
+		if (tracker != null && tracker != t) {
+			throw new IllegalStateException(this + " already has a tracker.");
+		}
+		tracker = t;
+	}
+
+	@Override
+	public void process(Event e, EventingSystem es, long currentTime) {
+		receive(e);
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
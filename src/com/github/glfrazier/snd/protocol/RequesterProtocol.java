@@ -1,17 +1,14 @@
 package com.github.glfrazier.snd.protocol;
 
-import java.net.InetAddress;
 
 import com.github.glfrazier.event.Event;
 import com.github.glfrazier.snd.node.Node;
+import com.github.glfrazier.snd.protocol.ProtocolStateMachine.State.Action;
 import com.github.glfrazier.snd.protocol.message.AddIntroductionRequestMessage;
 import com.github.glfrazier.snd.protocol.message.IntroductionCompletedMessage;
 import com.github.glfrazier.snd.protocol.message.IntroductionDeniedMessage;
 import com.github.glfrazier.snd.protocol.message.IntroductionRequestMessage;
-import com.github.glfrazier.statemachine.State;
-import com.github.glfrazier.statemachine.State.Action;
-import com.github.glfrazier.statemachine.StateMachine;
-import com.github.glfrazier.statemachine.Transition;
+import com.github.glfrazier.snd.util.NodeId;
 
 /**
  * The finite state machine for requesting an introduction. There are four
@@ -36,31 +33,25 @@ import com.github.glfrazier.statemachine.Transition;
  */
 public class RequesterProtocol extends IntroductionProtocol {
 
-	private InetAddress target;
+	private NodeId target;
 	private IntroductionRequest prevRequest;
 
 	public RequesterProtocol(Node requester, IntroductionRequest request, IntroductionRequest prevRequest,
 			boolean verbose) {
-		super(requester, request, "Requester Protocol", verbose);
+		super(requester, request, "Requester Protocol", TABLE, verbose);
 		this.prevRequest = prevRequest;
-
-		setStartState(sendRequestState);
-		addTransition(new Transition(sendRequestState, FAILURE_EVENT.getClass(), failureState));
-		addTransition(new Transition(sendRequestState, IntroductionDeniedMessage.class, failureState));
-		addTransition(new Transition(sendRequestState, IntroductionCompletedMessage.class, successState));
-		addTransition(new Transition(sendRequestState, AddIntroductionRequestMessage.class, successState));
 	}
 
 	private static final Action waiteForResponseAction = new Action() {
 		@Override
-		public void act(StateMachine sm, State s, Event e) {
+		public void act(ProtocolStateMachine sm, State s, Event e) {
 			if (e == null) {
 				return;
 			}
 		}
 	};
 
-	public InetAddress getIntroducer() {
+	public NodeId getIntroducer() {
 		return introductionRequest.introducer;
 	}
 
@@ -68,22 +59,22 @@ public class RequesterProtocol extends IntroductionProtocol {
 		return this.getCurrentState() == successState;
 	}
 
-	public InetAddress getResultingNeighbor() {
+	public NodeId getResultingNeighbor() {
 		return target;
 	}
 
-	public static final Action introductionRequestAction = new State.Action() {
+	public static final Action introductionRequestAction = new Action() {
 		@Override
-		public void act(StateMachine sm, State s, Event e) {
+		public void act(ProtocolStateMachine sm, State s, Event e) {
 			RequesterProtocol irp = (RequesterProtocol) sm;
 			IntroductionRequestMessage req = new IntroductionRequestMessage(irp.introductionRequest, irp.prevRequest);
 			irp.node.send(irp, req);
 		}
 	};
 
-	private static final Action introductionSuccessAction = new State.Action() {
+	private static final Action introductionSuccessAction = new Action() {
 		@Override
-		public void act(StateMachine sm, State s, Event e) {
+		public void act(ProtocolStateMachine sm, State s, Event e) {
 			RequesterProtocol irp = (RequesterProtocol) sm;
 			Object keyingMaterial = null;
 			if (e instanceof IntroductionCompletedMessage) {
@@ -103,7 +94,7 @@ public class RequesterProtocol extends IntroductionProtocol {
 
 	private static final Action introductionFailedAction = new Action() {
 		@Override
-		public void act(StateMachine sm, State s, Event e) {
+		public void act(ProtocolStateMachine sm, State s, Event e) {
 			RequesterProtocol irp = (RequesterProtocol) sm;
 			// This should be un-commented in real life. But perhaps we need something
 			// stronger than simply a log message?
@@ -114,8 +105,17 @@ public class RequesterProtocol extends IntroductionProtocol {
 		}
 	};
 
-	private static final State sendRequestState = new State("Send Request", introductionRequestAction);
-	private static final State successState = new State("Success", introductionSuccessAction);
-	private static final State failureState = new State("Failure", introductionFailedAction);
+	private static final TransitionTable TABLE = new TransitionTable();
+	private static final State sendRequestState = TABLE.state("Send Request", introductionRequestAction);
+	private static final State successState = TABLE.state("Success", introductionSuccessAction);
+	private static final State failureState = TABLE.state("Failure", introductionFailedAction);
+
+	static {
+		TABLE.setStartState(sendRequestState);
+		TABLE.addTransition(sendRequestState, FAILURE_EVENT.getClass(), failureState);
+		TABLE.addTransition(sendRequestState, IntroductionDeniedMessage.class, failureState);
+		TABLE.addTransition(sendRequestState, IntroductionCompletedMessage.class, successState);
+		TABLE.addTransition(sendRequestState, AddIntroductionRequestMessage.class, successState);
+	}
 
 }
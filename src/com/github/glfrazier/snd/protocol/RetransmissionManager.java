@@ -0,0 +1,258 @@
+package com.github.glfrazier.snd.protocol;
+
+import static com.github.glfrazier.snd.node.Node.TRANSMISSION_LATENCY;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.glfrazier.event.Event;
+import com.github.glfrazier.event.EventProcessor;
+import com.github.glfrazier.event.EventingSystem;
+import com.github.glfrazier.snd.node.Node;
+import com.github.glfrazier.snd.util.LongHashMap;
+
+/**
+ * The acknowledgement timers of a node's {@link SNDPMessageTransmissionProtocol}s.
+ * Rather than each transmission scheduling its own timeout event, a
+ * transmission is filed in a timing wheel, in the slot of its deadline, and
+ * the node schedules one tick per slot that has transmissions in it. A tick
+ * times out every transmission in its slot that has not been acknowledged.
+ * Deadlines are rounded up to the end of their slot, so an ack timeout fires
+ * up to one slot width late.
+ *
+ * The transmissions awaiting an ack are indexed by message identifier in a
+ * {@link LongHashMap}. An acknowledged transmission is removed from the index
+ * but left in its wheel slot; the tick recognizes it as stale and drops it.
+ *
+ * The manager counts transmissions, retransmissions, failures (transmissions
+ * that were never acknowledged) and acks, and measures the round-trip time of
+ * the acks. Following Karn's rule, only an ack of a message that was sent once
+ * is timed, as the ack of a retransmitted message cannot be matched to one
+ * transmission.
+ */
+public class RetransmissionManager implements EventProcessor {
+
+	/** How long a transmission waits for its ack before it is retransmitted. */
+	public static final long ACK_TIMEOUT = 5 * TRANSMISSION_LATENCY + 1;
+
+	/** The width, in milliseconds, of a slot of the wheel. */
+	static final long SLOT_WIDTH = TRANSMISSION_LATENCY;
+
+	private static final Event TICK_EVENT = new Event() {
+		public String toString() {
+			return "retransmission tick";
+		}
+	};
+
+	private final Node node;
+	private final EventingSystem eventingSystem;
+	private final LongHashMap<SNDPMessageTransmissionProtocol> awaitingAck = new LongHashMap<>();
+	/**
+	 * The wheel spans the ack timeout, plus slack so that the slot being filled
+	 * never wraps onto a slot whose tick has not yet run.
+	 */
+	private final List<SNDPMessageTransmissionProtocol>[] wheel;
+	/** For each slot, the tick for which an event is scheduled, or -1. */
+	private final long[] scheduledTicks;
+	/** The tick (time / SLOT_WIDTH) up to which the wheel has been swept. */
+	private long sweptTick;
+
+	private long transmissions;
+	private long retransmissions;
+	private long failures;
+	private long acks;
+	private long rttSamples;
+	private long totalRtt;
+	private long maxRtt;
+
+	public RetransmissionManager(Node node) {
+		this.node = node;
+		this.eventingSystem = node.getEventingSystem();
+		int slots = (int) (ACK_TIMEOUT / SLOT_WIDTH) + 3;
+		this.wheel = newWheel(slots);
+		for (int i = 0; i < slots; i++) {
+			wheel[i] = new ArrayList<>();
+		}
+		this.scheduledTicks = new long[slots];
+		Arrays.fill(scheduledTicks, -1);
+		this.sweptTick = eventingSystem.getCurrentTime() / SLOT_WIDTH;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> List<T>[] newWheel(int slots) {
+		return (List<T>[]) new List<?>[slots];
+	}
+
+	/**
+	 * Start the ack timer of a transmission that has been sent.
+	 */
+	public synchronized void transmitted(SNDPMessageTransmissionProtocol stp) {
+		long now = eventingSystem.getCurrentTime();
+		transmissions++;
+		if (stp.getAttempts() > 1) {
+			retransmissions++;
+		}
+		long tick = (now + ACK_TIMEOUT + SLOT_WIDTH - 1) / SLOT_WIDTH;
+		int slot = (int) (tick % wheel.length);
+		stp.sentAt = now;
+		stp.deadlineTick = tick;
+		awaitingAck.put(stp.getMessage().getIdentifier(), stp);
+		wheel[slot].add(stp);
+		if (scheduledTicks[slot] != tick) {
+			scheduledTicks[slot] = tick;
+			eventingSystem.scheduleEventRelative(this, TICK_EVENT, tick * SLOT_WIDTH - now);
+		}
+	}
+
+	/**
+	 * The ack of a message has arrived: stop the ack timer of its transmission,
+	 * and tell the transmission that it has succeeded. A duplicate or late ack is
+	 * ignored.
+	 *
+	 * @param id the identifier of the acknowledged message
+	 */
+	public void acknowledge(long id) {
+		SNDPMessageTransmissionProtocol stp = acknowledged(id);
+		if (stp != null) {
+			stp.ackReceived();
+		}
+	}
+
+	/**
+	 * @return the transmission that was awaiting the ack, or null if there is none
+	 */
+	private synchronized SNDPMessageTransmissionProtocol acknowledged(long id) {
+		SNDPMessageTransmissionProtocol stp = awaitingAck.remove(id);
+		if (stp == null) {
+			return null;
+		}
+		acks++;
+		if (stp.getAttempts() == 1) {
+			long rtt = eventingSystem.getCurrentTime() - stp.sentAt;
+			rttSamples++;
+			totalRtt += rtt;
+			maxRtt = Math.max(maxRtt, rtt);
+		}
+		return stp;
+	}
+
+	/**
+	 * Stop the ack timer of the transmission of a message without counting an
+	 * ack.
+	 */
+	public synchronized void cancel(long id) {
+		awaitingAck.remove(id);
+	}
+
+	@Override
+	public void process(Event e, EventingSystem es, long currentTime) {
+		if (node.hasMailbox()) {
+			node.runSerialized(() -> tick(currentTime));
+		} else {
+			tick(currentTime);
+		}
+	}
+
+	/**
+	 * Time out the unacknowledged transmissions whose deadlines have passed. Only
+	 * the slots whose ticks have passed since the last sweep are visited.
+	 * 
+	 * The timeouts are delivered outside of this manager's monitor, as a timeout
+	 * retransmits through {@link #transmitted(SNDPMessageTransmissionProtocol)}
+	 * while holding the protocol's monitor.
+	 */
+	private void tick(long currentTime) {
+		long tick = currentTime / SLOT_WIDTH;
+		List<SNDPMessageTransmissionProtocol> due = null;
+		synchronized (this) {
+			for (long t = Math.max(sweptTick + 1, tick - wheel.length + 1); t <= tick; t++) {
+				int slot = (int) (t % wheel.length);
+				if (scheduledTicks[slot] <= tick) {
+					scheduledTicks[slot] = -1;
+				}
+				List<SNDPMessageTransmissionProtocol> entries = wheel[slot];
+				int kept = 0;
+				for (int i = 0; i < entries.size(); i++) {
+					SNDPMessageTransmissionProtocol stp = entries.get(i);
+					long id = stp.getMessage().getIdentifier();
+					if (awaitingAck.get(id) != stp) {
+						continue; // stale: acknowledged or cancelled
+					}
+					if (stp.deadlineTick > tick) {
+						entries.set(kept++, stp); // due at a later revolution of the wheel
+						continue;
+					}
+					awaitingAck.remove(id);
+					if (stp.getAttempts() >= SNDPMessageTransmissionProtocol.MAX_ATTEMPTS) {
+						failures++;
+					}
+					if (due == null) {
+						due = new ArrayList<>();
+					}
+					due.add(stp);
+				}
+				entries.subList(kept, entries.size()).clear();
+			}
+			sweptTick = Math.max(sweptTick, tick);
+		}
+		if (due != null) {
+			for (SNDPMessageTransmissionProtocol stp : due) {
+				stp.ackTimedOut();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of transmissions, including retransmissions
+	 */
+	public synchronized long getTransmissions() {
+		return transmissions;
+	}
+
+	public synchronized long getRetransmissions() {
+		return retransmissions;
+	}
+
+	/**
+	 * @return the number of messages whose every transmission timed out
+	 */
+	public synchronized long getFailures() {
+		return failures;
+	}
+
+	public synchronized long getAcks() {
+		return acks;
+	}
+
+	/**
+	 * @return the number of acks whose round-trip time was measured
+	 */
+	public synchronized long getRttSamples() {
+		return rttSamples;
+	}
+
+	/**
+	 * @return the sum of the measured round-trip times, in milliseconds
+	 */
+	public synchronized long getTotalRtt() {
+		return totalRtt;
+	}
+
+	public synchronized long getMaxRtt() {
+		return maxRtt;
+	}
+
+	/**
+	 * @return the number of transmissions awaiting an ack
+	 */
+	public synchronized int size() {
+		return awaitingAck.size();
+	}
+
+	@Override
+	public String toString() {
+		return "RetransmissionManager(" + node + ")";
+	}
+
+}
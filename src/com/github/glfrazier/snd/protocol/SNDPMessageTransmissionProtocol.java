@@ -1,29 +1,25 @@
 package com.github.glfrazier.snd.protocol;
 
-import static com.github.glfrazier.snd.node.Node.TRANSMISSION_LATENCY;
-
 import com.github.glfrazier.event.Event;
 import com.github.glfrazier.snd.node.Node;
-import com.github.glfrazier.snd.protocol.message.AckMessage;
+import com.github.glfrazier.snd.protocol.ProtocolStateMachine.State.Action;
 import com.github.glfrazier.snd.protocol.message.AddIntroductionRequestMessage;
 import com.github.glfrazier.snd.protocol.message.SNDPMessage;
-import com.github.glfrazier.statemachine.State;
-import com.github.glfrazier.statemachine.State.Action;
-import com.github.glfrazier.statemachine.StateMachine;
-import com.github.glfrazier.statemachine.Transition;
 
 /**
  * The finite state machine for sending a message. Every SNDP message is
- * acknowledged. If an AckMessage is not received within ACK_TIMEOUT
+ * acknowledged. If an ack is not received within ACK_TIMEOUT
  * milliseconds, the SNDP message is retransmitted; a message can be transmitted
- * TRANSMISSON_ATTEMPT times before a failure is declared.
+ * MAX_ATTEMPTS times before a failure is declared. The ack timers of a node's
+ * transmissions are kept by its {@link RetransmissionManager}.
  * 
  * This state machine (SM) has three states:
  * <dl>
  * <dt>transmissionState</dt>
- * <dd>The initial state. The message is sent, and a timeout is sent. If the
+ * <dd>The initial state. The message is sent, and its ack timer started. If the
  * send() results in an IOException, the SM transitions immediately to
- * failureState. An AckMessage transitions the SM to successState. The
+ * failureState. An ack (an AckMessage, or an ack piggybacked on another
+ * message) transitions the SM to successState. The
  * TRANSMISSION_ATTEMPT th timeout transitions the SM to failureState. Prior
  * timeouts transition the SM back to the transmissionState.</dd>
  * <dt>successState</dt>
@@ -33,22 +29,43 @@ import com.github.glfrazier.statemachine.Transition;
  * </dl>
  * 
  */
-public class SNDPMessageTransmissionProtocol extends StateMachine {
+public class SNDPMessageTransmissionProtocol extends ProtocolStateMachine {
 
 	private Node node;
 	private SNDPMessage message;
 	private int attempts = 0;
 
-	private StateMachine superProtocol;
+	private ProtocolStateMachine superProtocol;
 
 	protected static final int MAX_ATTEMPTS = 3;
-	private static final long ACK_TIMEOUT = 5 * TRANSMISSION_LATENCY + 1;
 
-	public SNDPMessageTransmissionProtocol(Node node, StateMachine protocol, SNDPMessage message, boolean verbose) {
-		// TODO this is an expensive constructor, as it is calling the toString() method
-		// on the message. Consider changing this. Or giving message a method whose
-		// expense can vary based on whether we are running verbosely or not.
-		super("SMDP MTP(" + message + ")", EventEqualityMode.CLASS_EQUALS, node.getEventingSystem());
+	/** When the message was last sent; maintained by RetransmissionManager. */
+	long sentAt;
+	/** The wheel tick of the ack deadline; maintained by RetransmissionManager. */
+	long deadlineTick;
+
+	private static final String NAME = "SMDP MTP";
+
+	private static final Event ACK_EVENT = new Event() {
+		public String toString() {
+			return "ack";
+		}
+	};
+
+	/** Sent by the RetransmissionManager when the ack of a transmission is overdue. */
+	private static final Event TIMEOUT_EVENT = new Event() {
+		public String toString() {
+			return "timeout";
+		}
+	};
+
+	/**
+	 * A protocol is constructed for every message sent, so it does not render the
+	 * message into its name; see {@link #toString()}.
+	 */
+	public SNDPMessageTransmissionProtocol(Node node, ProtocolStateMachine protocol, SNDPMessage message,
+			boolean verbose) {
+		super(NAME, TABLE);
 		this.node = node;
 		this.superProtocol = protocol;
 		this.message = message;
@@ -60,22 +77,50 @@ public class SNDPMessageTransmissionProtocol extends StateMachine {
 					.printStackTrace();
 			System.exit(-1);
 		}
-		this.addTransition(new Transition(transmissionState, getTimeoutEvent().getClass(), transmissionState));
-		this.addTransition(new Transition(transmissionState, AckMessage.class, successState));
-		// An IOException causes the state machine to transition directly to failure,
-		// instead of trying MAX_ATTEMPTS times.
-		this.addTransition(new Transition(transmissionState, FAILURE_EVENT.getClass(), failureState));
+	}
+
+	private static String name(SNDPMessage message) {
+		return NAME + "(" + message + ")";
+	}
+
+	@Override
+	public String toString() {
+		return name(message);
+	}
+
+	SNDPMessage getMessage() {
+		return message;
+	}
+
+	/**
+	 * @return the number of times the message has been sent
+	 */
+	int getAttempts() {
+		return attempts;
+	}
 
-		this.setStartState(transmissionState);
+	/**
+	 * Invoked by the {@link RetransmissionManager} when the message's ack arrives.
+	 */
+	void ackReceived() {
+		receive(ACK_EVENT);
+	}
+
+	/**
+	 * Invoked by the {@link RetransmissionManager} when the ack of the latest
+	 * transmission is overdue.
+	 */
+	void ackTimedOut() {
+		receive(TIMEOUT_EVENT);
 	}
 
 	public boolean succeeded() {
 		return this.getCurrentState() == successState;
 	}
 
-	private static Action failureAction = new State.Action() {
+	private static final Action failureAction = new Action() {
 		@Override
-		public void act(StateMachine sm, State s, Event e) {
+		public void act(ProtocolStateMachine sm, State s, Event e) {
 			SNDPMessageTransmissionProtocol stp = (SNDPMessageTransmissionProtocol) sm;
 			stp.node.unregisterAckWaiter(stp.message.getIdentifier());
 			if (stp.verbose) {
@@ -88,9 +133,9 @@ public class SNDPMessageTransmissionProtocol extends StateMachine {
 		}
 	};
 
-	private static Action successAction = new State.Action() {
+	private static final Action successAction = new Action() {
 		@Override
-		public void act(StateMachine sm, State s, Event e) {
+		public void act(ProtocolStateMachine sm, State s, Event e) {
 			SNDPMessageTransmissionProtocol stp = (SNDPMessageTransmissionProtocol) sm;
 			if (stp.superProtocol != null) {
 				stp.superProtocol.receive(SUCCESS_EVENT);
@@ -98,9 +143,9 @@ public class SNDPMessageTransmissionProtocol extends StateMachine {
 		}
 	};
 
-	private static Action transmissionAction = new State.Action() {
+	private static final Action transmissionAction = new Action() {
 		@Override
-		public void act(StateMachine sm, State s, Event e) {
+		public void act(ProtocolStateMachine sm, State s, Event e) {
 			SNDPMessageTransmissionProtocol stp = (SNDPMessageTransmissionProtocol) sm;
 			if (stp.attempts >= MAX_ATTEMPTS) {
 				stp.receive(FAILURE_EVENT);
@@ -111,13 +156,23 @@ public class SNDPMessageTransmissionProtocol extends StateMachine {
 				System.out.println(
 						stp.node.addTimePrefix(stp + ": attempt " + stp.attempts + " at sending " + stp.message));
 			}
+			// The node starts the ack timer once the message is sent
 			stp.node.send(stp, stp.message);
-			stp.scheduleTimeout(ACK_TIMEOUT);
 		}
 	};
 
-	private static State transmissionState = new State("transmission state", transmissionAction);
-	private static State successState = new State("success state", successAction);
-	private static State failureState = new State("failure state", failureAction);
+	private static final TransitionTable TABLE = new TransitionTable();
+	private static final State transmissionState = TABLE.state("transmission state", transmissionAction);
+	private static final State successState = TABLE.state("success state", successAction);
+	private static final State failureState = TABLE.state("failure state", failureAction);
+
+	static {
+		TABLE.setStartState(transmissionState);
+		TABLE.addTransition(transmissionState, TIMEOUT_EVENT.getClass(), transmissionState);
+		TABLE.addTransition(transmissionState, ACK_EVENT.getClass(), successState);
+		// An IOException causes the state machine to transition directly to failure,
+		// instead of trying MAX_ATTEMPTS times.
+		TABLE.addTransition(transmissionState, FAILURE_EVENT.getClass(), failureState);
+	}
 
 }
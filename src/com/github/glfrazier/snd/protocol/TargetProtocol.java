@@ -4,16 +4,12 @@ import java.io.Serializable;
 
 import com.github.glfrazier.event.Event;
 import com.github.glfrazier.snd.node.Node;
+import com.github.glfrazier.snd.protocol.ProtocolStateMachine.State.Action;
 import com.github.glfrazier.snd.protocol.message.AddIntroductionRequestMessage;
 import com.github.glfrazier.snd.protocol.message.IntroductionAcceptedMessage;
 import com.github.glfrazier.snd.protocol.message.IntroductionCompletedMessage;
 import com.github.glfrazier.snd.protocol.message.IntroductionOfferMessage;
 import com.github.glfrazier.snd.protocol.message.IntroductionRefusedMessage;
-import com.github.glfrazier.statemachine.State;
-import com.github.glfrazier.statemachine.State.Action;
-import com.github.glfrazier.statemachine.StateMachine;
-import com.github.glfrazier.statemachine.StateMachine.StateMachineTracker;
-import com.github.glfrazier.statemachine.Transition;
 
 /**
  * The protocol state machine:
@@ -46,7 +42,7 @@ import com.github.glfrazier.statemachine.Transition;
  * @author Greg Frazier
  *
  */
-public class TargetProtocol extends IntroductionProtocol implements StateMachineTracker {
+public class TargetProtocol extends IntroductionProtocol implements ProtocolStateMachine.Tracker {
 
 	protected static final Event GOTO_REFUSE_STATE_EVENT = new Event() {
 		private static final String NAME = "goto sendRefuseState";
@@ -105,33 +101,12 @@ public class TargetProtocol extends IntroductionProtocol implements StateMachine
 	private Exception previousException;
 
 	public TargetProtocol(Node target, IntroductionOfferMessage m, boolean verbose) {
-		super(target, m.getIntroductionRequest(), "Target Protocol", verbose);
+		super(target, m.getIntroductionRequest(), "Target Protocol", TABLE, verbose);
 		this.introductionOffer = m;
-		setStartState(decideToAcceptState);
-		// decide to not accept the introduction
-		addTransition(
-				new Transition(decideToAcceptState, GOTO_REFUSE_STATE_EVENT.getClass(), sendIntroductionRefusedState));
-		// decided to accept, failed to use an existing VPN
-		addTransition(new Transition(decideToAcceptState, ADD_FAILED_EVENT.getClass(), createVPNState));
-		// decided to accept, using an existing VPN
-		addTransition(
-				new Transition(decideToAcceptState, ADD_SUCCEEDED_EVENT.getClass(), sendIntroductionCompletedState));
-		// decided to accept, so create a VPN
-		addTransition(new Transition(decideToAcceptState, GOTO_CREATE_VPN.getClass(), createVPNState));
-
-		// Reusing an existing VPN, creating a new VPN, or refusing the offer all end
-		// with this node sending a message to the introducer. There is no recourse for
-		// failure---whether the transmission succeeds or fails, after the transmission
-		// we go to the terminalState, where the protocol is unregistered from the node.
-		//
-		addTransition(new Transition(sendIntroductionRefusedState, FAILURE_EVENT.getClass(), terminalState));
-		addTransition(new Transition(sendIntroductionRefusedState, SUCCESS_EVENT.getClass(), terminalState));
-		addTransition(new Transition(sendIntroductionCompletedState, FAILURE_EVENT.getClass(), terminalState));
-		addTransition(new Transition(sendIntroductionCompletedState, SUCCESS_EVENT.getClass(), terminalState));
-		addTransition(new Transition(createVPNState, FAILURE_EVENT.getClass(), terminalState));
-		addTransition(new Transition(createVPNState, SUCCESS_EVENT.getClass(), terminalState));
 	}
 
+	private static final TransitionTable TABLE = new TransitionTable();
+
 	/**
 	 * Decide whether to accept the introductionRequest and see if the VPN already
 	 * exists. If we are not going to accept the introductionRequest, go to
@@ -140,9 +115,9 @@ public class TargetProtocol extends IntroductionProtocol implements StateMachine
 	 * failure. Success transitions to the sendIntroductionCompleted state. Failure
 	 * transitions to the createVPNState.
 	 */
-	private static Action decideToAcceptAction = new Action() {
+	private static final Action decideToAcceptAction = new Action() {
 		@Override
-		public void act(StateMachine sm, State state, Event event) {
+		public void act(ProtocolStateMachine sm, State state, Event event) {
 			TargetProtocol rop = (TargetProtocol) sm;
 			Pedigree p = rop.introductionOffer.getPedigree();
 
@@ -194,7 +169,7 @@ public class TargetProtocol extends IntroductionProtocol implements StateMachine
 
 	};
 
-	private static State decideToAcceptState = new State("decide whether to accept", decideToAcceptAction);
+	private static final State decideToAcceptState = TABLE.state("decide whether to accept", decideToAcceptAction);
 
 	/**
 	 * <dt>createVPNState</dt>
@@ -202,10 +177,10 @@ public class TargetProtocol extends IntroductionProtocol implements StateMachine
 	 * Otherwise, send the IntroductionAcceptedMessage. If this fails, transition to
 	 * the removeVPNState. If this succeeds, transition to the terminalState.</dd>
 	 */
-	private static Action createVPNAction = new Action() {
+	private static final Action createVPNAction = new Action() {
 
 		@Override
-		public void act(StateMachine sm, State s, Event e) {
+		public void act(ProtocolStateMachine sm, State s, Event e) {
 			TargetProtocol rop = (TargetProtocol) sm;
 			Serializable keyingMaterial = rop.node.generateKeyingMaterial();
 			boolean success = rop.node.createVPN(rop.introductionRequest.requester, rop.introductionRequest,
@@ -222,34 +197,34 @@ public class TargetProtocol extends IntroductionProtocol implements StateMachine
 
 	};
 
-	private static State createVPNState = new State("create VPN", createVPNAction);
+	private static final State createVPNState = TABLE.state("create VPN", createVPNAction);
 
 	/**
 	 * <dt>removeVPNState</dt>
 	 * <dd>Remove the introductionRequest from the VPN. Transition to the
 	 * terminalState.</dd>
 	 */
-	private static Action removeVPNAction = new Action() {
+	private static final Action removeVPNAction = new Action() {
 
 		@Override
-		public void act(StateMachine sm, State s, Event e) {
+		public void act(ProtocolStateMachine sm, State s, Event e) {
 			TargetProtocol rop = (TargetProtocol) sm;
 			rop.node.removeIntroductionRequestFromVPN(rop.introductionRequest, rop.introductionRequest.requester);
 			rop.receive(GOTO_TERMINAL_STATE);
 		}
 
 	};
-	private static State removeVPNState = new State("remove VPN", removeVPNAction);
+	private static final State removeVPNState = TABLE.state("remove VPN", removeVPNAction);
 
 	/**
 	 * <dt>sendIntroductionCompletedState</dt>
 	 * <dd>Send the IntroductionCompletedMessage to the introducer, signaling that
 	 * the VPN already exists. Transition to the terminalState.
 	 */
-	private static Action sendIntroductionCompletedAction = new Action() {
+	private static final Action sendIntroductionCompletedAction = new Action() {
 
 		@Override
-		public void act(StateMachine sm, State s, Event e) {
+		public void act(ProtocolStateMachine sm, State s, Event e) {
 			TargetProtocol rop = (TargetProtocol) sm;
 			rop.completedWasSent = true;
 			rop.debugMessage = "sendIntroductionCompletedAction -- state=" + s + ", event=" + e;
@@ -263,16 +238,17 @@ public class TargetProtocol extends IntroductionProtocol implements StateMachine
 		}
 
 	};
-	private static State sendIntroductionCompletedState = new State("send completed", sendIntroductionCompletedAction);
+	private static final State sendIntroductionCompletedState = TABLE.state("send completed",
+			sendIntroductionCompletedAction);
 
 	/**
 	 * <dd>Send an IntroductionRefusedMessage to the introducer. Transition to the
 	 * terminalState.</dd>
 	 */
-	private static Action sendIntroductionRefusedAction = new Action() {
+	private static final Action sendIntroductionRefusedAction = new Action() {
 
 		@Override
-		public void act(StateMachine sm, State s, Event e) {
+		public void act(ProtocolStateMachine sm, State s, Event e) {
 			TargetProtocol rop = (TargetProtocol) sm;
 			rop.denyWasSent = true;
 			IntroductionRefusedMessage refusal = new IntroductionRefusedMessage(rop.introductionRequest,
@@ -282,26 +258,51 @@ public class TargetProtocol extends IntroductionProtocol implements StateMachine
 		}
 
 	};
-	private static State sendIntroductionRefusedState = new State("send refusal", sendIntroductionRefusedAction);
+	private static final State sendIntroductionRefusedState = TABLE.state("send refusal",
+			sendIntroductionRefusedAction);
 
 	/**
 	 * <dt>terminalState</dt>
 	 * <dd>This is the terminal state for the protocol. Unregister the protocol from
 	 * the node.</dd>
 	 */
-	private static Action terminalAction = new Action() {
+	private static final Action terminalAction = new Action() {
 
 		@Override
-		public void act(StateMachine sm, State s, Event e) {
+		public void act(ProtocolStateMachine sm, State s, Event e) {
 			TargetProtocol rop = (TargetProtocol) sm;
 			rop.node.unregisterProtocol(rop, "Protocol completed @ " + rop.node.getCurrentTime());
 		}
 
 	};
-	private static State terminalState = new State("terminal state", terminalAction);
+	private static final State terminalState = TABLE.state("terminal state", terminalAction);
+
+	static {
+		TABLE.setStartState(decideToAcceptState);
+		// decide to not accept the introduction
+		TABLE.addTransition(decideToAcceptState, GOTO_REFUSE_STATE_EVENT.getClass(), sendIntroductionRefusedState);
+		// decided to accept, failed to use an existing VPN
+		TABLE.addTransition(decideToAcceptState, ADD_FAILED_EVENT.getClass(), createVPNState);
+		// decided to accept, using an existing VPN
+		TABLE.addTransition(decideToAcceptState, ADD_SUCCEEDED_EVENT.getClass(), sendIntroductionCompletedState);
+		// decided to accept, so create a VPN
+		TABLE.addTransition(decideToAcceptState, GOTO_CREATE_VPN.getClass(), createVPNState);
+
+		// Reusing an existing VPN, creating a new VPN, or refusing the offer all end
+		// with this node sending a message to the introducer. There is no recourse for
+		// failure---whether the transmission succeeds or fails, after the transmission
+		// we go to the terminalState, where the protocol is unregistered from the node.
+		//
+		TABLE.addTransition(sendIntroductionRefusedState, FAILURE_EVENT.getClass(), terminalState);
+		TABLE.addTransition(sendIntroductionRefusedState, SUCCESS_EVENT.getClass(), terminalState);
+		TABLE.addTransition(sendIntroductionCompletedState, FAILURE_EVENT.getClass(), terminalState);
+		TABLE.addTransition(sendIntroductionCompletedState, SUCCESS_EVENT.getClass(), terminalState);
+		TABLE.addTransition(createVPNState, FAILURE_EVENT.getClass(), terminalState);
+		TABLE.addTransition(createVPNState, SUCCESS_EVENT.getClass(), terminalState);
+	}
 
 	@Override
-	public synchronized void stateMachineEnded(StateMachine machine) {
+	public synchronized void stateMachineEnded(ProtocolStateMachine machine) {
 		if (alreadyTerminated) {
 			System.err.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!\nWe already hit a terminal state in " + machine
 					+ "!\n!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
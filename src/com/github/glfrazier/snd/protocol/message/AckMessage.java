@@ -1,7 +1,12 @@
 package com.github.glfrazier.snd.protocol.message;
 
+import java.util.Arrays;
+
+import com.github.glfrazier.snd.util.NodeId;
+
 /**
- * Acknowledge receipt of SND messages.
+ * Acknowledge receipt of SND messages. One AckMessage may acknowledge several
+ * messages from the same neighbor; see {@link #getAcknowledged()}.
  * 
  */
 public class AckMessage extends SNDPMessage {
@@ -9,13 +14,37 @@ public class AckMessage extends SNDPMessage {
 	private static final long serialVersionUID = 1L;
 	
 	private IntroductionMessage m;
+
+	private final long[] acknowledged;
 	
 	public AckMessage(IntroductionMessage msg) {
 		super(msg.getSrc(), msg.getDst(), msg.getIdentifier(), MessageType.ACK);
 		this.m = msg;
+		this.acknowledged = new long[] { msg.getIdentifier() };
+	}
+
+	/**
+	 * @param dst          the neighbor that sent the messages
+	 * @param src          the node acknowledging them
+	 * @param acknowledged the identifiers of the messages; there must be at least
+	 *                     one
+	 */
+	public AckMessage(NodeId dst, NodeId src, long[] acknowledged) {
+		super(dst, src, acknowledged[0], MessageType.ACK);
+		this.acknowledged = acknowledged;
+	}
+
+	/**
+	 * @return the identifiers of the acknowledged messages
+	 */
+	public long[] getAcknowledged() {
+		return acknowledged;
 	}
 	
 	public String toString() {
-		return super.toString() + " ack'ing " + m;
+		if (m != null) {
+			return super.toString() + " ack'ing " + m;
+		}
+		return super.toString() + " ack'ing " + Arrays.toString(acknowledged);
 	}
 }
@@ -3,11 +3,11 @@ package com.github.glfrazier.snd.protocol.message;
 import static com.github.glfrazier.snd.util.AddressUtils.addrToString;
 
 import java.io.Serializable;
-import java.net.InetAddress;
 
 import com.github.glfrazier.event.Event;
 import com.github.glfrazier.snd.node.Feedback;
 import com.github.glfrazier.snd.protocol.IntroductionRequest;
+import com.github.glfrazier.snd.util.NodeId;
 
 /**
  * This message is sent from the target of an introduction that was previously
@@ -20,7 +20,7 @@ public class FeedbackMessage extends IntroductionMessage implements Serializable
 
 	private Feedback feedback;
 
-	private InetAddress subject;
+	private NodeId subject;
 
 	private final Message trigger;
 
@@ -35,7 +35,7 @@ public class FeedbackMessage extends IntroductionMessage implements Serializable
 	 * @param subject  The node that the feedback is about.
 	 * @param feedback The (bad) feedback.
 	 */
-	public FeedbackMessage(IntroductionRequest req, InetAddress sender, InetAddress subject, Feedback feedback,
+	public FeedbackMessage(IntroductionRequest req, NodeId sender, NodeId subject, Feedback feedback,
 			Message trigger) {
 		super(req.introducer, sender, req, MessageType.FEEDBACK);
 		this.subject = subject;
@@ -63,14 +63,14 @@ public class FeedbackMessage extends IntroductionMessage implements Serializable
 	 * @param subject  The host that the feedback is about.
 	 * @param feedback The feedback, which for now is always bad.
 	 */
-	public FeedbackMessage(InetAddress dst, InetAddress src, InetAddress subject, Feedback feedback, Message trigger) {
+	public FeedbackMessage(NodeId dst, NodeId src, NodeId subject, Feedback feedback, Message trigger) {
 		super(dst, src, null, MessageType.FEEDBACK);
 		this.subject = subject;
 		this.feedback = feedback;
 		this.trigger = trigger;
 	}
 
-	public InetAddress getSubject() {
+	public NodeId getSubject() {
 		return subject;
 	}
 
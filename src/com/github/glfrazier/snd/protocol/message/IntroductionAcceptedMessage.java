@@ -1,10 +1,10 @@
 package com.github.glfrazier.snd.protocol.message;
 
 import java.io.Serializable;
-import java.net.InetAddress;
 
 import com.github.glfrazier.event.Event;
 import com.github.glfrazier.snd.protocol.IntroductionRequest;
+import com.github.glfrazier.snd.util.NodeId;
 
 public class IntroductionAcceptedMessage extends IntroductionMessage implements Serializable, Event {
 
@@ -12,7 +12,7 @@ public class IntroductionAcceptedMessage extends IntroductionMessage implements
 	
 	protected final Serializable keyingMaterial;
 
-	public IntroductionAcceptedMessage(IntroductionRequest req, Serializable keyingMaterial, InetAddress target) {
+	public IntroductionAcceptedMessage(IntroductionRequest req, Serializable keyingMaterial, NodeId target) {
 		super(req.introducer, target, req, MessageType.INTRODUCTION_ACCEPTED);
 		this.keyingMaterial = keyingMaterial;
 	}
@@ -3,18 +3,18 @@ package com.github.glfrazier.snd.protocol.message;
 import static com.github.glfrazier.snd.util.AddressUtils.addrToString;
 
 import java.io.Serializable;
-import java.net.InetAddress;
 
 import com.github.glfrazier.event.Event;
 import com.github.glfrazier.snd.protocol.IntroductionRequest;
+import com.github.glfrazier.snd.util.NodeId;
 
 public class IntroductionCompletedMessage extends IntroductionMessage implements Serializable, Event {
 
 	private static final long serialVersionUID = 1L;
-	private final InetAddress nextStep;
+	private final NodeId nextStep;
 	private final Object keyingMaterial;
 
-	public IntroductionCompletedMessage(IntroductionRequest req, Object keyingMaterial, InetAddress target) {
+	public IntroductionCompletedMessage(IntroductionRequest req, Object keyingMaterial, NodeId target) {
 		super(req.requester, req.introducer, req, MessageType.INTRODUCTION_COMPLETED);
 		this.keyingMaterial = keyingMaterial;
 		this.nextStep = target;
@@ -27,13 +27,13 @@ public class IntroductionCompletedMessage extends IntroductionMessage implements
 	 * @param req the introduction request that has been completed
 	 * @param target the target node sending this introduction completed message to the introducer 
 	 */
-	public IntroductionCompletedMessage(IntroductionRequest req, InetAddress target) {
+	public IntroductionCompletedMessage(IntroductionRequest req, NodeId target) {
 		super(req.introducer, target, req, MessageType.INTRODUCTION_COMPLETED);
 		this.keyingMaterial = null;
 		this.nextStep = null;
 	}
 
-	public InetAddress getNewNeighbor() {
+	public NodeId getNewNeighbor() {
 		return nextStep;
 	}
 
@@ -1,8 +1,8 @@
 package com.github.glfrazier.snd.protocol.message;
 
-import java.net.InetAddress;
 
 import com.github.glfrazier.snd.protocol.IntroductionRequest;
+import com.github.glfrazier.snd.util.NodeId;
 
 /**
  * The messages that comprise an introduction handshake.
@@ -16,7 +16,7 @@ public abstract class IntroductionMessage extends SNDPMessage {
 	
 	protected int transmissionAttempt;
 
-	public IntroductionMessage(InetAddress dst, InetAddress src, IntroductionRequest req, MessageType type) {
+	public IntroductionMessage(NodeId dst, NodeId src, IntroductionRequest req, MessageType type) {
 		super(dst, src, type);
 		this.req = req;
 	}
@@ -1,11 +1,11 @@
 package com.github.glfrazier.snd.protocol.message;
 
 import java.io.Serializable;
-import java.net.InetAddress;
 
 import com.github.glfrazier.event.Event;
 import com.github.glfrazier.snd.protocol.IntroductionRequest;
 import com.github.glfrazier.snd.protocol.Pedigree;
+import com.github.glfrazier.snd.util.NodeId;
 
 /**
  * 
@@ -15,7 +15,7 @@ public class IntroductionOfferMessage extends IntroductionMessage implements Ser
 	private static final long serialVersionUID = 1L;
 	private Pedigree pedigree;
 
-	public IntroductionOfferMessage(IntroductionRequest req, InetAddress target, Pedigree pedigree) {
+	public IntroductionOfferMessage(IntroductionRequest req, NodeId target, Pedigree pedigree) {
 		super(target, req.introducer, req, MessageType.INTRODUCTION_OFFER);
 		this.pedigree = pedigree;
 	}
@@ -1,15 +1,15 @@
 package com.github.glfrazier.snd.protocol.message;
 import java.io.Serializable;
-import java.net.InetAddress;
 
 import com.github.glfrazier.event.Event;
 import com.github.glfrazier.snd.protocol.IntroductionRequest;
+import com.github.glfrazier.snd.util.NodeId;
 
 public class IntroductionRefusedMessage extends IntroductionMessage implements Serializable, Event {
 
 	private static final long serialVersionUID = 1L;
 
-	public IntroductionRefusedMessage(IntroductionRequest req, InetAddress target) {
+	public IntroductionRefusedMessage(IntroductionRequest req, NodeId target) {
 		// refused is sent from target to introducer
 		super(req.introducer, // dst
 				target, // src
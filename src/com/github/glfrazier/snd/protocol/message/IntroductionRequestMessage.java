@@ -1,11 +1,11 @@
 package com.github.glfrazier.snd.protocol.message;
 
 import java.io.Serializable;
-import java.net.InetAddress;
 
 import com.github.glfrazier.event.Event;
 import com.github.glfrazier.snd.protocol.IntroductionRequest;
-import com.github.glfrazier.statemachine.StateMachine;
+import com.github.glfrazier.snd.protocol.ProtocolStateMachine;
+import com.github.glfrazier.snd.util.NodeId;
 
 /**
  * A message sent from a Client to an Introducer, requesting an Introduction to
@@ -14,7 +14,7 @@ import com.github.glfrazier.statemachine.StateMachine;
  * Implementation Notes:
  * <ul>
  * <li>This class implements {@link Event}. That is because the SND
- * implementation uses {@link StateMachine} to implement the protocol, and state
+ * implementation uses {@link ProtocolStateMachine} to implement the protocol, and state
  * machines take Events as inputs.</li>
  * <li>The class offers a constant instance
  * {@link #SAMPLE_INTRODUCTION_REQUEST}. The intent is that the constant can be
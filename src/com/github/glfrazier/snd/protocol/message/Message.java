@@ -2,47 +2,47 @@ package com.github.glfrazier.snd.protocol.message;
 
 import static com.github.glfrazier.snd.util.AddressUtils.addrToString;
 import java.io.Serializable;
-import java.net.InetAddress;
 import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.github.glfrazier.event.Event;
+import com.github.glfrazier.snd.util.NodeId;
 
 public class Message implements Serializable, Event {
 
 	private static final long serialVersionUID = 1L;
-	private final InetAddress dst;
-	private final InetAddress src;
+	private final NodeId dst;
+	private final NodeId src;
 	private final Serializable content;
 	
 	private final boolean verbose;
 
-	public Message(InetAddress dst, InetAddress src) {
+	public Message(NodeId dst, NodeId src) {
 		this.dst = dst;
 		this.src = src;
 		this.content = null;
 		this.verbose = false;
 	}
 
-	public Message(InetAddress dst, InetAddress src, Serializable content) {
+	public Message(NodeId dst, NodeId src, Serializable content) {
 		this.dst = dst;
 		this.src = src;
 		this.content = content;
 		this.verbose = false;
 	}
 
-	public Message(InetAddress dst, InetAddress src, Serializable content, boolean verbose) {
+	public Message(NodeId dst, NodeId src, Serializable content, boolean verbose) {
 		this.dst = dst;
 		this.src = src;
 		this.content = content;
 		this.verbose = verbose;
 	}
 
-	public InetAddress getDst() {
+	public NodeId getDst() {
 		return dst;
 	}
 
-	public InetAddress getSrc() {
+	public NodeId getSrc() {
 		return src;
 	}
 
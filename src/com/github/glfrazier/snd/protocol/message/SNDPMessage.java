@@ -1,7 +1,6 @@
 package com.github.glfrazier.snd.protocol.message;
 
-import java.net.InetAddress;
-import java.util.concurrent.atomic.AtomicInteger;
+import com.github.glfrazier.snd.util.NodeId;
 
 /**
  * The messages that comprise an introduction handshake.
@@ -10,13 +9,17 @@ import java.util.concurrent.atomic.AtomicInteger;
 public abstract class SNDPMessage extends Message {
 
 	private static final long serialVersionUID = 1L;
-	
-	private static final AtomicInteger INDEX = new AtomicInteger(0);
 
 	protected final long id;
 	
 	protected MessageType type;
 
+	/**
+	 * The identifiers of messages, sent by this message's destination, that this
+	 * message also acknowledges; null if there are none.
+	 */
+	private long[] piggybackedAcks;
+
 	public enum MessageType {
 		/**
 		 * A message from the requester to the introducer of the introduction,
@@ -75,13 +78,13 @@ public abstract class SNDPMessage extends Message {
 		ACK
 	};
 
-	public SNDPMessage(InetAddress dst, InetAddress src, MessageType type) {
+	public SNDPMessage(NodeId dst, NodeId src, MessageType type) {
 		super(dst, src);
-		this.id = ((long)src.hashCode() << 32) + INDEX.getAndIncrement();
+		this.id = src.nextIdentifier();
 		this.type = type;
 	}
 	
-	protected SNDPMessage(InetAddress dst, InetAddress src, long id, MessageType type) {
+	protected SNDPMessage(NodeId dst, NodeId src, long id, MessageType type) {
 		super(dst, src);
 		this.id = id;
 		this.type = type;
@@ -100,4 +103,16 @@ public abstract class SNDPMessage extends Message {
 		return id;
 	}
 
+	/**
+	 * @return the identifiers of the messages that this message also
+	 *         acknowledges, or null if there are none
+	 */
+	public long[] getPiggybackedAcks() {
+		return piggybackedAcks;
+	}
+
+	public void setPiggybackedAcks(long[] acks) {
+		this.piggybackedAcks = acks;
+	}
+
 }
@@ -1,78 +1,94 @@
 package com.github.glfrazier.snd.simulation;
 
-import java.net.InetAddress;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Set;
-
+import com.github.glfrazier.snd.util.ClockCache;
 import com.github.glfrazier.snd.util.DiscoveryService;
+import com.github.glfrazier.snd.util.NodeId;
 
 public class ButterflyDiscoveryService implements DiscoveryService {
 
-	private final int CACHE_SIZE;
-
-	@SuppressWarnings("serial")
-	private Map<InetAddress, InetAddress> cache = new LinkedHashMap<>(//
-			16, // ......... Default initial capacity
-			(float) 0.75, // Default expansion value
-			true // ........ Re-order the map on access; the most-recently-accessed entry is
-					// ..... always last
-	) {
-		protected boolean removeEldestEntry(Map.Entry<InetAddress, InetAddress> eldest) {
-			return size() > CACHE_SIZE;
-		}
-	};
+	/** The default value of <code>snd.discovery_service.cache_size</code>. */
+	public static final int DEFAULT_CACHE_SIZE = 1000;
+
+	/**
+	 * The next hop most recently chosen for each destination. Lookups do not
+	 * lock; see {@link ClockCache}.
+	 */
+	private final ClockCache<NodeId, NodeId> cache;
 
 	private ButterflyNetwork networkModel;
 
-	private InetAddress here;
+	private NodeId here;
 
-	public ButterflyDiscoveryService(InetAddress owner, ButterflyNetwork model, int cacheSize) {
+	public ButterflyDiscoveryService(NodeId owner, ButterflyNetwork model, int cacheSize) {
 		this.here = owner;
 		this.networkModel = model;
-		CACHE_SIZE = cacheSize;
+		this.cache = new ClockCache<>(cacheSize);
 	}
 
 	@Override
-	public Query createQuery(InetAddress dst) {
+	public Query createQuery(NodeId dst) {
 		return new DQuery(dst);
 	}
 
 	@Override
-	public InetAddress getNextHopTo(Query query) {
+	public NodeId getNextHopTo(Query query) {
 		DQuery dq = (DQuery) query;
-		synchronized (cache) {
-			if (cache.containsKey(dq.dst)) {
-				InetAddress candidate = cache.get(dq.dst);
-				if (!dq.priorAnswers.contains(candidate)) {
-					dq.priorAnswers.add(candidate);
-					return candidate;
+		if (dq.candidates == null) {
+			dq.candidates = networkModel.getNextHopsTo(dq.dst, here);
+		}
+		NodeId[] candidates = dq.candidates;
+		NodeId cached = cache.get(dq.dst);
+		if (cached != null) {
+			for (int i = 0; i < candidates.length; i++) {
+				if (candidates[i].equals(cached)) {
+					if (dq.addPriorAnswer(i)) {
+						return cached;
+					}
+					break;
 				}
 			}
 		}
-		Set<InetAddress> candidates = networkModel.getNextStepsTo(dq.dst, here);
 		// TODO sort the candidates
-		for (InetAddress addr : candidates) {
-			if (!dq.priorAnswers.contains(addr)) {
-				dq.priorAnswers.add(addr);
-				synchronized (cache) {
-					cache.put(dq.dst, addr);
-				}
-				return addr;
+		for (int i = 0; i < candidates.length; i++) {
+			if (dq.addPriorAnswer(i)) {
+				cache.put(dq.dst, candidates[i]);
+				return candidates[i];
 			}
 		}
 		return null;
 	}
 
-	private class DQuery implements DiscoveryService.Query {
-		public final InetAddress dst;
-		public final Set<InetAddress> priorAnswers;
+	/**
+	 * @return the cache of next hops, for its hit-rate metrics
+	 */
+	public ClockCache<NodeId, NodeId> getCache() {
+		return cache;
+	}
 
-		public DQuery(InetAddress dst) {
+	private class DQuery implements DiscoveryService.Query {
+		public final NodeId dst;
+		/** The next hops from here towards dst; fetched by the first lookup. */
+		private NodeId[] candidates;
+		/**
+		 * The candidates already given as answers to this query, as a bitset over
+		 * their indices. A butterfly node has at most 64 neighbors in each direction.
+		 */
+		private long priorAnswers;
+
+		public DQuery(NodeId dst) {
 			this.dst = dst;
-			priorAnswers = new HashSet<>();
+		}
+
+		/**
+		 * @return false if the candidate has already been given as an answer
+		 */
+		boolean addPriorAnswer(int candidate) {
+			long bit = 1L << candidate;
+			if ((priorAnswers & bit) != 0) {
+				return false;
+			}
+			priorAnswers |= bit;
+			return true;
 		}
 
 		public String toString() {
@@ -87,7 +103,7 @@ public class ButterflyDiscoveryService implements DiscoveryService {
 	}
 
 	@Override
-	public InetAddress getProxyFor(InetAddress dst) {
+	public NodeId getProxyFor(NodeId dst) {
 		return networkModel.getProxyFor(dst);
 	}
 
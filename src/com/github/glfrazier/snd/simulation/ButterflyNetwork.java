@@ -1,18 +1,21 @@
 package com.github.glfrazier.snd.simulation;
 
-import static com.github.glfrazier.snd.util.AddressUtils.incrementAddress;
 import static com.github.glfrazier.snd.util.AddressUtils.addrToString;
+import static com.github.glfrazier.snd.util.AddressUtils.addressRange;
 
-import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+
+import com.github.glfrazier.snd.util.NodeId;
 
 public class ButterflyNetwork {
 
+	private static final NodeId[] NO_HOPS = new NodeId[0];
+
 	private int numRows;
 	private int numColumns;
 	private int numPorts;
@@ -20,58 +23,57 @@ public class ButterflyNetwork {
 	 * The matrix is addressed like a numpy matrix: (row, col)
 	 */
 	private NodeModel[][] matrix;
-	private Map<NodeModel, Location> locationMap;
-	private Map<InetAddress, NodeModel> addressMap;
-	private Map<InetAddress, InetAddress> proxyConnections = new HashMap<>();
-	private Map<InetAddress, InetAddress> proxies;
+	private Map<NodeId, NodeModel> addressMap;
+	private Map<NodeId, NodeId> proxyConnections = new HashMap<>();
+	private Map<NodeId, NodeId> proxies;
 
-	public ButterflyNetwork(int fanout, int height, int width, InetAddress baseAddress) {
+	public ButterflyNetwork(int fanout, int height, int width, NodeId baseAddress) {
 		numRows = height;
 		numColumns = width;
 		numPorts = fanout;
 		matrix = new NodeModel[numRows][numColumns];
-		locationMap = new HashMap<>();
 		addressMap = new HashMap<>();
 		this.proxies = new HashMap<>();
 		buildNetwork(baseAddress);
+		buildRoutingTables();
 	}
 
-	public InetAddress getFirstAddress() {
+	public NodeId getFirstAddress() {
 		return matrix[0][0].address;
 	}
 
-	public InetAddress getLastAddress() {
+	public NodeId getLastAddress() {
 		return matrix[numRows - 1][numColumns - 1].address;
 	}
 
-	public InetAddress[] getFirstColumn() {
-		InetAddress[] col = new InetAddress[numRows];
+	public NodeId[] getFirstColumn() {
+		NodeId[] col = new NodeId[numRows];
 		for (int i = 0; i < col.length; i++) {
 			col[i] = matrix[i][0].address;
 		}
 		return col;
 	}
 
-	public InetAddress[] getLastColumn() {
-		InetAddress[] col = new InetAddress[numRows];
+	public NodeId[] getLastColumn() {
+		NodeId[] col = new NodeId[numRows];
 		for (int i = 0; i < col.length; i++) {
 			col[i] = matrix[i][numColumns - 1].address;
 		}
 		return col;
 	}
 
-	private void buildNetwork(InetAddress baseAddress) {
-		InetAddress addr = baseAddress;
+	private void buildNetwork(NodeId baseAddress) {
+		NodeId[] addresses = addressRange(baseAddress, numRows * numColumns);
+		int i = 0;
 		for (int row = 0; row < numRows; row++) {
 			for (int col = 0; col < numColumns; col++) {
 				matrix[row][col] = new NodeModel( //
-						addr, // ................................ address
+						addresses[i++], // ...................... address
+						row, col, // ............................ location
 						(col == 0 ? 0 : numPorts), // ........... # input ports
 						(col == numColumns - 1 ? 0 : numPorts) // # output ports
 				);
-				locationMap.put(matrix[row][col], new Location(row, col));
 				addressMap.put(matrix[row][col].address, matrix[row][col]);
-				addr = incrementAddress(addr);
 			}
 		}
 		for (int col = 0; col < numColumns - 1; col++) {
@@ -90,124 +92,141 @@ public class ButterflyNetwork {
 		}
 	}
 
-	public Set<InetAddress> getNextStepsTo(InetAddress end, InetAddress start) {
-		Set<InetAddress> result = new HashSet<>();
-
+	/**
+	 * The next hops from start towards end: the neighbors of start from which end
+	 * (or, if end is a proxied host, the introducer to which its proxy is
+	 * attached) can be reached. The hops are looked up in the routing tables built
+	 * at construction; see {@link #buildRoutingTables()}.
+	 * 
+	 * @param end   the destination
+	 * @param start the introducer looking for a next hop
+	 * @return the next hops, in port order. The array is shared, and must not be
+	 *         modified. It is empty if start is not an introducer or cannot reach
+	 *         end.
+	 */
+	public NodeId[] getNextHopsTo(NodeId end, NodeId start) {
 		if (end.equals(start)) {
-			result.add(end);
-			return result;
+			return new NodeId[] { end };
 		}
-		InetAddress intro = null;
+		NodeId intro = null;
 		if (addressMap.containsKey(end)) {
-			intro = end; } else { intro = proxyConnections.get(end);
+			intro = end;
+		} else {
+			intro = proxyConnections.get(end);
 		}
 		if (intro == null) {
-			System.out.println("In getNextStepsTo(), end=" + addrToString(end) + ", start=" + addrToString(start)
+			System.out.println("In getNextHopsTo(), end=" + addrToString(end) + ", start=" + addrToString(start)
 					+ ", intro=null");
 		}
 		if (intro.equals(start)) {
-			result.add(end);
-			return result;
+			return new NodeId[] { end };
 		}
-		NodeModel node = addressMap.get(intro);
-		Location location = locationMap.get(node);
-		int lastIntroducerColumn = location.col;
-		if (lastIntroducerColumn == 0) {
-			result = recursiveGetPreviousStepsTo(intro, start);
-		} else if (lastIntroducerColumn == numColumns - 1) {
-			result = recursiveGetNextStepsTo(intro, start);
-		} else {
-			new Exception("Communicating host " + addrToString(end) + " is connected to a weird column: "
-					+ lastIntroducerColumn).printStackTrace();
-			System.exit(-1);
+		NodeModel target = addressMap.get(intro);
+		NodeModel node = addressMap.get(start);
+		if (target.col == 0) {
+			return node == null ? NO_HOPS : node.getHopsTowardsFirstColumn(target.row);
+		} else if (target.col == numColumns - 1) {
+			return node == null ? NO_HOPS : node.getHopsTowardsLastColumn(target.row);
 		}
-		return result;
+		new Exception("Communicating host " + addrToString(end) + " is connected to a weird column: " + target.col)
+				.printStackTrace();
+		System.exit(-1);
+		return null;
 	}
 
 	/**
-	 * The network flows from left-to-right. The end is at the right, the start is
-	 * somewhere to the left of the end. We consider the in-ports of the end, which
-	 * is how nodes to the left enter the end. If a node to the left of the end is
-	 * the start, then the end is part of the result. Otherwise, the node to the
-	 * left of the end (which can reach the end) is the new end, and we recursively
-	 * consider it.
+	 * Build every introducer's next-hop tables. In a butterfly, an introducer can
+	 * reach a set of rows of the last column, and can be reached from a set of rows
+	 * of the first column; these sets are computed one column at a time, from the
+	 * sets of the neighboring column. A next hop towards row r of the last column
+	 * is then an out-port neighbor that can reach r, and a next hop towards row r
+	 * of the first column is an in-port neighbor that r can reach.
 	 * 
-	 * @param end
-	 * @param start
-	 * @return
+	 * Each introducer holds, for each row, an index into its own list of distinct
+	 * next-hop sets; there are few of these, as an introducer has only
+	 * <code>fanout</code> neighbors in each direction.
 	 */
-	private Set<InetAddress> recursiveGetNextStepsTo(InetAddress end, InetAddress start) {
-		Set<InetAddress> result = new HashSet<>();
-		NodeModel dstIntroducer = addressMap.get(end);
-		for (int i = 0; i < dstIntroducer.inPorts.length; i++) {
-			NodeModel p = dstIntroducer.inPorts[i];
-			if (p.address.equals(start)) {
-				result.add(end);
-			} else {
-				result.addAll(recursiveGetNextStepsTo(p.address, start));
+	private void buildRoutingTables() {
+		if (numPorts > Long.SIZE) {
+			throw new IllegalArgumentException("The fanout cannot exceed " + Long.SIZE + ".");
+		}
+		int words = (numRows + Long.SIZE - 1) / Long.SIZE;
+		// The rows of the last column that each introducer in the column can reach
+		long[][] reachable = new long[numRows][words];
+		for (int row = 0; row < numRows; row++) {
+			setBit(reachable[row], row);
+		}
+		for (int col = numColumns - 2; col >= 0; col--) {
+			long[][] next = new long[numRows][words];
+			for (int row = 0; row < numRows; row++) {
+				NodeModel node = matrix[row][col];
+				for (NodeModel nbr : node.outPorts) {
+					or(next[row], reachable[nbr.row]);
+				}
+				node.towardsLastColumn = node.buildHopTable(node.outPorts, reachable);
 			}
+			reachable = next;
 		}
-		return result;
-	}
-
-	/**
-	 * The network flows from left-to-right. The end is at the left, the start is
-	 * somewhere to the right of the end. We consider the out-ports of the end,
-	 * which is how nodes to the right enter the end (we are going against the flow,
-	 * in contrast to {@link #recursiveGetNextStepsTo(InetAddress, InetAddress)}. If
-	 * a node to the right of the end is the start, then the end is part of the
-	 * result. Otherwise, the node to the right of the end (which can reach the end)
-	 * is the new end, and we recursively consider it.
-	 * 
-	 * @param end
-	 * @param start
-	 * @return
-	 */
-	private Set<InetAddress> recursiveGetPreviousStepsTo(InetAddress end, InetAddress start) {
-		Set<InetAddress> result = new HashSet<>();
-		NodeModel dstIntroducer = addressMap.get(end);
-		for (int i = 0; i < dstIntroducer.outPorts.length; i++) {
-			NodeModel p = dstIntroducer.outPorts[i];
-			if (p.address.equals(start)) {
-				result.add(end);
-			} else {
-				result.addAll(recursiveGetPreviousStepsTo(p.address, start));
+		// The rows of the first column that can reach each introducer in the column
+		long[][] reachableFrom = new long[numRows][words];
+		for (int row = 0; row < numRows; row++) {
+			setBit(reachableFrom[row], row);
+		}
+		for (int col = 1; col < numColumns; col++) {
+			long[][] next = new long[numRows][words];
+			for (int row = 0; row < numRows; row++) {
+				NodeModel node = matrix[row][col];
+				for (NodeModel nbr : node.inPorts) {
+					or(next[row], reachableFrom[nbr.row]);
+				}
+				node.towardsFirstColumn = node.buildHopTable(node.inPorts, reachableFrom);
 			}
+			reachableFrom = next;
 		}
-		return result;
 	}
 
-	private class Location {
-		public final int row;
-		public final int col;
-
-		public Location(int r, int c) {
-			row = r;
-			col = c;
-		}
+	private static void setBit(long[] bits, int i) {
+		bits[i / Long.SIZE] |= 1L << (i % Long.SIZE);
+	}
 
-		public int hashCode() {
-			return Integer.hashCode(row) + Integer.hashCode(col);
-		}
+	private static boolean getBit(long[] bits, int i) {
+		return (bits[i / Long.SIZE] & (1L << (i % Long.SIZE))) != 0;
+	}
 
-		public boolean equals(Object o) {
-			if (!(o instanceof Location))
-				return false;
-			Location l = (Location) o;
-			return l.row == row && l.col == col;
+	private static void or(long[] bits, long[] other) {
+		for (int i = 0; i < bits.length; i++) {
+			bits[i] |= other[i];
 		}
 	}
 
 	private class NodeModel {
-		private InetAddress address;
+		private NodeId address;
+		private final int row;
+		private final int col;
 		private NodeModel[] inPorts;
 		private NodeModel[] outPorts;
+		/**
+		 * The distinct sets of next hops from this node, indexed by the hop tables.
+		 */
+		private NodeId[][] hopSets = new NodeId[0][];
+		/**
+		 * For each row of the last column, the index of the set of next hops towards
+		 * it, or null if this node is in the last column.
+		 */
+		private int[] towardsLastColumn;
+		/**
+		 * For each row of the first column, the index of the set of next hops towards
+		 * it, or null if this node is in the first column.
+		 */
+		private int[] towardsFirstColumn;
 		private Integer firstNbrRow;
 		private Integer lastNbrRow;
 		private boolean wrapsAround;
 
-		public NodeModel(InetAddress addr, int fanIn, int fanOut) {
+		public NodeModel(NodeId addr, int row, int col, int fanIn, int fanOut) {
 			address = addr;
+			this.row = row;
+			this.col = col;
 			inPorts = new NodeModel[fanIn];
 			outPorts = new NodeModel[fanOut];
 		}
@@ -216,8 +235,8 @@ public class ButterflyNetwork {
 			if (firstNbrRow == null) {
 				NodeModel firstNbr = outPorts[0];
 				NodeModel lastNbr = outPorts[outPorts.length - 1];
-				firstNbrRow = locationMap.get(firstNbr).row;
-				lastNbrRow = locationMap.get(lastNbr).row;
+				firstNbrRow = firstNbr.row;
+				lastNbrRow = lastNbr.row;
 				if (lastNbrRow < firstNbrRow)
 					wrapsAround = true;
 			}
@@ -228,6 +247,59 @@ public class ButterflyNetwork {
 			}
 		}
 
+		public NodeId[] getHopsTowardsLastColumn(int row) {
+			return towardsLastColumn == null ? NO_HOPS : hopSets[towardsLastColumn[row]];
+		}
+
+		public NodeId[] getHopsTowardsFirstColumn(int row) {
+			return towardsFirstColumn == null ? NO_HOPS : hopSets[towardsFirstColumn[row]];
+		}
+
+		/**
+		 * Build a hop table over the neighbors on one side of this node.
+		 * 
+		 * @param nbrs  the neighbors, by port
+		 * @param reach for each neighbor (by row), the rows of the first or last
+		 *              column that it can reach
+		 * @return for each row of that column, the index of the set of next hops
+		 */
+		private int[] buildHopTable(NodeModel[] nbrs, long[][] reach) {
+			int[] table = new int[numRows];
+			Map<Long, Integer> setIndex = new HashMap<>();
+			List<NodeId[]> sets = new LinkedList<>(Arrays.asList(hopSets));
+			for (int r = 0; r < numRows; r++) {
+				long ports = 0;
+				for (int port = 0; port < nbrs.length; port++) {
+					if (getBit(reach[nbrs[port].row], r)) {
+						ports |= 1L << port;
+					}
+				}
+				Integer index = setIndex.get(ports);
+				if (index == null) {
+					index = sets.size();
+					setIndex.put(ports, index);
+					sets.add(hopSet(nbrs, ports));
+				}
+				table[r] = index;
+			}
+			hopSets = sets.toArray(new NodeId[0][]);
+			return table;
+		}
+
+		/**
+		 * @return the distinct addresses of the neighbors on the given ports, in port
+		 *         order
+		 */
+		private NodeId[] hopSet(NodeModel[] nbrs, long ports) {
+			List<NodeId> hops = new LinkedList<>();
+			for (int port = 0; port < nbrs.length; port++) {
+				if ((ports & (1L << port)) != 0 && !hops.contains(nbrs[port].address)) {
+					hops.add(nbrs[port].address);
+				}
+			}
+			return hops.toArray(NO_HOPS);
+		}
+
 		public void link(int outPort, NodeModel nbr, int inPort) {
 			outPorts[outPort] = nbr;
 			nbr.inPorts[inPort] = this;
@@ -245,11 +317,11 @@ public class ButterflyNetwork {
 
 	}
 
-	public InetAddress getAddressOfElement(int row, int col) {
+	public NodeId getAddressOfElement(int row, int col) {
 		return matrix[row][col].address;
 	}
 
-	public boolean areConnected(InetAddress a, InetAddress b) {
+	public boolean areConnected(NodeId a, NodeId b) {
 		NodeModel pA = addressMap.get(a);
 		for (int i = 0; i < pA.inPorts.length; i++) {
 			if (pA.inPorts[i].address.equals(b)) {
@@ -264,15 +336,33 @@ public class ButterflyNetwork {
 		return false;
 	}
 
-	public void connectProxy(InetAddress serverAddress, InetAddress introAddr) {
+	/**
+	 * The distinct neighbors of an introducer on its output ports, in port order.
+	 * Every link of the butterfly joins an introducer to one of these, so the
+	 * introducers' VPNs are created from them in time linear in the number of
+	 * links, without testing every pair of introducers with
+	 * {@link #areConnected(NodeId, NodeId)}.
+	 */
+	public NodeId[] getForwardNeighbors(NodeId a) {
+		NodeModel pA = addressMap.get(a);
+		List<NodeId> nbrs = new ArrayList<>(pA.outPorts.length);
+		for (NodeModel nbr : pA.outPorts) {
+			if (!nbrs.contains(nbr.address)) {
+				nbrs.add(nbr.address);
+			}
+		}
+		return nbrs.toArray(NO_HOPS);
+	}
+
+	public void connectProxy(NodeId serverAddress, NodeId introAddr) {
 		proxyConnections.put(serverAddress, introAddr);
 	}
 
-	public void setProxyFor(InetAddress dst, InetAddress proxy) {
+	public void setProxyFor(NodeId dst, NodeId proxy) {
 		proxies.put(dst, proxy);
 	}
 
-	public InetAddress getProxyFor(InetAddress dst) {
+	public NodeId getProxyFor(NodeId dst) {
 		if (!proxies.containsKey(dst)) {
 			return dst;
 		}
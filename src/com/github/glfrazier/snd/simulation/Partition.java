@@ -0,0 +1,200 @@
+package com.github.glfrazier.snd.simulation;
+
+import static com.github.glfrazier.snd.node.Node.TRANSMISSION_LATENCY;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.function.LongConsumer;
+
+import com.github.glfrazier.event.Event;
+import com.github.glfrazier.event.EventProcessor;
+import com.github.glfrazier.event.EventingSystem;
+import com.github.glfrazier.snd.util.NodeId;
+
+/**
+ * A logical process of the partitioned simulation: a slice of the nodes (a set
+ * of butterfly rows, plus the proxies and app endpoints attached to them) with
+ * its own eventing system, run by its own thread.
+ *
+ * Partitions are synchronized conservatively. Every message between nodes
+ * crosses a SimVPN, which delays it by <code>TRANSMISSION_LATENCY</code>; so
+ * nothing that a partition does in the window [t, t + TRANSMISSION_LATENCY)
+ * can affect another partition before t + TRANSMISSION_LATENCY. Each partition
+ * runs a window of events, then waits at a barrier for the others; while all
+ * of them wait, the messages that crossed partitions during the window are
+ * delivered to their destination partitions, in the order (delivery time,
+ * source entity, sequence number within the source). That order does not
+ * depend on thread scheduling, so neither do the results.
+ *
+ * In deterministic mode, every transmission is staged this way, including
+ * those between entities of the same partition. As the eventing system breaks
+ * ties among events in the order they were scheduled, the order in which each
+ * partition processes its events is then also independent of the number of
+ * partitions, and a run on N partitions reproduces a run on one partition.
+ */
+class Partition {
+
+	private static class Delivery {
+		final Partition target;
+		final EventProcessor processor;
+		final Event event;
+		final long time;
+		final int source;
+		final long sequence;
+
+		Delivery(Partition target, EventProcessor processor, Event event, long time, NodeId source, long sequence) {
+			this.target = target;
+			this.processor = processor;
+			this.event = event;
+			this.time = time;
+			this.source = source.getIndex();
+			this.sequence = sequence;
+		}
+	}
+
+	private static final Comparator<Delivery> DELIVERY_ORDER = Comparator.<Delivery>comparingLong(d -> d.time)
+			.thenComparingInt(d -> d.source).thenComparingLong(d -> d.sequence);
+
+	private static final ThreadLocal<Partition> CURRENT = new ThreadLocal<>();
+
+	final int index;
+	final EventingSystem eventingSystem;
+	final Random random;
+	/** If true, transmissions within the partition are also staged. */
+	final boolean stageAll;
+
+	/** Messages sent to other partitions during the current window, in order. */
+	private final List<Delivery> outbox = new ArrayList<>();
+	/** Messages from other partitions, collected at the barrier. */
+	private final List<Delivery> inbox = new ArrayList<>();
+	/**
+	 * The number of messages this partition has staged. A source only sends from
+	 * its own partition, so this orders each source's messages as they were sent.
+	 * It is kept apart from the entities' identifier counters, so that staging
+	 * does not change the message identifiers and nonces that a run draws.
+	 */
+	private long sequence;
+
+	private CyclicBarrier barrier;
+	private final long endTime;
+
+	Partition(int index, long endTime, long seed, boolean stageAll) {
+		this.index = index;
+		this.stageAll = stageAll;
+		this.endTime = endTime;
+		this.eventingSystem = new EventingSystem("Partition " + index, EventingSystem.NOT_REALTIME);
+		this.eventingSystem.setEndTime(endTime);
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * @return the partition whose thread is running, or null if the caller is not
+	 *         a partition thread
+	 */
+	static Partition current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Deliver an event to a processor in the target partition,
+	 * <code>latency</code> from now. Invoked only by this partition's thread.
+	 *
+	 * @param source the entity that is sending the event
+	 */
+	void send(Partition target, EventProcessor processor, Event event, long latency, NodeId source) {
+		if (latency < TRANSMISSION_LATENCY) {
+			throw new IllegalArgumentException(
+					"Cross-partition latency " + latency + " is less than the lookahead " + TRANSMISSION_LATENCY);
+		}
+		outbox.add(new Delivery(target, processor, event, eventingSystem.getCurrentTime() + latency, source,
+				sequence++));
+	}
+
+	/**
+	 * Link the partitions with a barrier and schedule the first window boundary
+	 * in each of them.
+	 *
+	 * @param partitions    the partitions, in index order
+	 * @param boundaryAction run by the last partition to reach each window
+	 *                       boundary, after the cross-partition messages are
+	 *                       exchanged and while every partition waits; it is
+	 *                       passed the time of the boundary
+	 */
+	static void link(Partition[] partitions, LongConsumer boundaryAction) {
+		long[] boundary = { 0 };
+		CyclicBarrier barrier = new CyclicBarrier(partitions.length, () -> {
+			boundary[0] += TRANSMISSION_LATENCY;
+			exchange(partitions);
+			boundaryAction.accept(boundary[0]);
+		});
+		for (Partition p : partitions) {
+			p.barrier = barrier;
+			p.eventingSystem.scheduleEvent(p.new WindowBoundary(), new Event() {
+				public String toString() {
+					return "Window Boundary";
+				}
+			}, TRANSMISSION_LATENCY);
+		}
+	}
+
+	/**
+	 * Move every outbox to the inboxes, then schedule each inbox in (time,
+	 * source, sequence) order. Invoked only while every partition waits at the
+	 * barrier.
+	 */
+	private static void exchange(Partition[] partitions) {
+		for (Partition source : partitions) {
+			for (Delivery d : source.outbox) {
+				d.target.inbox.add(d);
+			}
+			source.outbox.clear();
+		}
+		for (Partition p : partitions) {
+			p.inbox.sort(DELIVERY_ORDER);
+			for (Delivery d : p.inbox) {
+				p.eventingSystem.scheduleEvent(d.processor, d.event, d.time);
+			}
+			p.inbox.clear();
+		}
+	}
+
+	/**
+	 * The body of the partition's thread.
+	 */
+	void run() {
+		CURRENT.set(this);
+		eventingSystem.run();
+	}
+
+	private class WindowBoundary implements EventProcessor {
+
+		@Override
+		public void process(Event e, EventingSystem es, long t) {
+			try {
+				barrier.await();
+			} catch (InterruptedException | BrokenBarrierException ex) {
+				ex.printStackTrace();
+				System.exit(-1);
+			}
+			if (t + TRANSMISSION_LATENCY <= endTime) {
+				es.scheduleEventRelative(this, e, TRANSMISSION_LATENCY);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "Window Boundary of Partition " + index;
+		}
+
+	}
+
+	@Override
+	public String toString() {
+		return "Partition " + index;
+	}
+
+}
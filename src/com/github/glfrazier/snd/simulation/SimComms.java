@@ -7,7 +7,6 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.net.InetAddress;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -26,30 +25,32 @@ import com.github.glfrazier.snd.protocol.message.Message;
 import com.github.glfrazier.snd.protocol.message.SNDPMessage;
 import com.github.glfrazier.snd.util.AddressUtils.AddressPair;
 import com.github.glfrazier.snd.util.CommsModule;
+import com.github.glfrazier.snd.util.NodeId;
+import com.github.glfrazier.snd.util.NodePairMap;
 
 public class SimComms implements CommsModule, MessageReceiver {
 
 	private final Node owner;
 
-	private Map<InetAddress, InetAddress> routes;
-	private Map<InetAddress, Set<InetAddress>> routeTo;
+	private Map<NodeId, NodeId> routes;
+	private Map<NodeId, Set<NodeId>> routeTo;
 
 	private final Simulation sim;
 
-	private Map<InetAddress, SimVPN> vpnMap;
+	private final NodePairMap<SimVPN> vpns;
 
 	public SimComms(Simulation sim, Node owner) {
 		this.sim = sim;
 		this.owner = owner;
-		this.vpnMap = sim.getVpnMap(owner.getAddress());
+		this.vpns = sim.getVpns();
 		routes = Collections.synchronizedMap(new HashMap<>());
 		routeTo = Collections.synchronizedMap(new HashMap<>());
 	}
 
 	@Override
-	public void addRoute(InetAddress dst, InetAddress route) {
+	public void addRoute(NodeId dst, NodeId route) {
 		routes.put(dst, route);
-		Set<InetAddress> destinations = null;
+		Set<NodeId> destinations = null;
 		synchronized (routeTo) {
 			destinations = routeTo.get(route);
 			if (destinations == null) {
@@ -61,14 +62,14 @@ public class SimComms implements CommsModule, MessageReceiver {
 	}
 
 	@Override
-	public boolean removeRoute(InetAddress dst, InetAddress route) {
-		InetAddress rte = routes.get(dst);
+	public boolean removeRoute(NodeId dst, NodeId route) {
+		NodeId rte = routes.get(dst);
 		if (rte == null || !rte.equals(route)) {
 			return false;
 		}
 		routes.remove(dst);
 		synchronized (routeTo) {
-			Set<InetAddress> destinations = routeTo.get(route);
+			Set<NodeId> destinations = routeTo.get(route);
 			synchronized (destinations) {
 				destinations.remove(dst);
 				if (destinations.isEmpty()) {
@@ -80,15 +81,15 @@ public class SimComms implements CommsModule, MessageReceiver {
 	}
 
 	@Override
-	public boolean canSendTo(InetAddress dst) {
+	public boolean canSendTo(NodeId dst) {
 		return getRouteTo(dst) != null;
 	}
 
-	private InetAddress getRouteTo(InetAddress dst) {
-		if (vpnMap.containsKey(dst)) {
+	private NodeId getRouteTo(NodeId dst) {
+		if (vpns.containsKey(owner.getAddress(), dst)) {
 			return dst;
 		}
-		InetAddress route = routes.get(dst);
+		NodeId route = routes.get(dst);
 		if (route == null) {
 			return null;
 		}
@@ -117,7 +118,7 @@ public class SimComms implements CommsModule, MessageReceiver {
 		send(msgCopy, msgCopy.getDst());
 	}
 
-	public void send(Message msg, InetAddress dst) throws IOException {
+	public void send(Message msg, NodeId dst) throws IOException {
 		if (dst.equals(owner.getAddress())) {
 			System.err.println("#1 Why are we sending a message to ourselves!? msg=" + msg);
 			new Exception().printStackTrace();
@@ -131,7 +132,7 @@ public class SimComms implements CommsModule, MessageReceiver {
 		if (msg.isVerbose()) {
 			System.out.println(sim.addTimePrefix(this + ": sending " + msg + " to " + addrToString(dst)));
 		}
-		SimVPN vpn = vpnMap.get(dst);
+		SimVPN vpn = vpns.get(owner.getAddress(), dst);
 		if (vpn != null) {
 			vpn.send(msg);
 			if (msg.isVerbose()) {
@@ -151,7 +152,7 @@ public class SimComms implements CommsModule, MessageReceiver {
 			throw new IOException(sim
 					.addTimePrefix(this + ": No route to " + addrToString(msg.getDst()) + ", trying to send " + msg));
 		}
-		InetAddress rtr = routes.get(msg.getDst());
+		NodeId rtr = routes.get(msg.getDst());
 		if (rtr == null) {
 			if (msg.isVerbose()) {
 				System.out.println("\tthere is no route, so throw an IOException.");
@@ -213,32 +214,36 @@ public class SimComms implements CommsModule, MessageReceiver {
 	}
 
 	@Override
-	public void removeRoutesVia(InetAddress route) {
-		Set<InetAddress> destinations = routeTo.remove(route);
+	public void removeRoutesVia(NodeId route) {
+		Set<NodeId> destinations = routeTo.remove(route);
 		if (destinations == null) {
 			return;
 		}
 		synchronized (destinations) {
-			for (InetAddress dst : destinations) {
+			for (NodeId dst : destinations) {
 				routes.remove(dst);
 			}
 		}
 	}
 
 	@Override
-	public InetAddress getAddress() {
+	public NodeId getAddress() {
 		return owner.getAddress();
 	}
 
 	@Override
-	public void vpnClosed(InetAddress nbr) {
+	public void vpnClosed(NodeId nbr) {
 		owner.vpnClosed(nbr);
 	}
 
 	@Override
 	public void process(Event e, EventingSystem eventingSystem, long t) {
 		if (e instanceof Message) {
-			receive((Message) e);
+			if (owner.hasMailbox()) {
+				owner.runSerialized(() -> receive((Message) e));
+			} else {
+				receive((Message) e);
+			}
 		}
 	}
 
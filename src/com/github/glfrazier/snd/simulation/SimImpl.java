@@ -2,7 +2,6 @@ package com.github.glfrazier.snd.simulation;
 
 import com.github.glfrazier.snd.node.Node;
 import com.github.glfrazier.snd.util.CommsModule;
-import com.github.glfrazier.snd.util.DiscoveryService;
 import com.github.glfrazier.snd.util.Implementation;
 import com.github.glfrazier.snd.util.VPNManager;
 
@@ -12,27 +11,33 @@ import com.github.glfrazier.snd.util.VPNManager;
  */
 public class SimImpl implements Implementation {
 
-	private DiscoveryService disc;
+	private ButterflyDiscoveryService disc;
 	private ButterflyNetwork model;
 	private int cacheSize;
 	private SimVPNManager vpnManager;
 	private SimComms comms;
+	private Node node;
 	private final Simulation sim;
 
 	public SimImpl(Simulation sim, ButterflyNetwork topology) {
 		this.sim = sim;
 		this.model = topology;
-		cacheSize = sim.getIntegerProperty("snd.discovery_service.cache_size");
+		cacheSize = sim.getDiscoveryCacheSize();
 	}
 
 	public void setNode(Node node) {
+		this.node = node;
 		comms = new SimComms(sim, node);
 		vpnManager = new SimVPNManager(sim, node.getEventingSystem(), comms);
 		disc = new ButterflyDiscoveryService(node.getAddress(), model, cacheSize);
 	}
 
+	public Node getNode() {
+		return node;
+	}
+
 	@Override
-	public DiscoveryService getDiscoveryService() {
+	public ButterflyDiscoveryService getDiscoveryService() {
 		return disc;
 	}
 
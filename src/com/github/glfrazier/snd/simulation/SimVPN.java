@@ -5,8 +5,6 @@ import static com.github.glfrazier.snd.util.AddressUtils.addrToString;
 import static java.util.logging.Level.FINE;
 
 import java.io.IOException;
-import java.net.InetAddress;
-import java.util.Map;
 import java.util.logging.Logger;
 
 import com.github.glfrazier.event.Event;
@@ -16,6 +14,7 @@ import com.github.glfrazier.snd.node.MessageReceiver;
 import com.github.glfrazier.snd.protocol.message.AckMessage;
 import com.github.glfrazier.snd.protocol.message.AddIntroductionRequestMessage;
 import com.github.glfrazier.snd.protocol.message.Message;
+import com.github.glfrazier.snd.util.NodeId;
 
 public class SimVPN implements EventProcessor {
 
@@ -44,25 +43,31 @@ public class SimVPN implements EventProcessor {
 	 * This field has package protection so that it is observable to other
 	 * simulation components.
 	 */
-	final InetAddress remoteAddress;
+	final NodeId remoteAddress;
 	private boolean closed = false;
 
 	private final Simulation sim;
 
-	public SimVPN(Simulation sim, MessageReceiver local, InetAddress remote, EventingSystem eventingSystem)
+	/** The partition of the local endpoint, or null if the simulation is not partitioned. */
+	private final Partition partition;
+
+	/**
+	 * If true, a message arriving at this VPN is handed to the local endpoint
+	 * immediately, rather than being scheduled for it as a second event.
+	 */
+	private final boolean directDelivery;
+
+	public SimVPN(Simulation sim, MessageReceiver local, NodeId remote, EventingSystem eventingSystem)
 			throws IllegalStateException {
 		this.sim = sim;
 		this.local = local;
 		this.remoteAddress = remote;
 		this.eventingSystem = eventingSystem;
-		Map<InetAddress, SimVPN> vpnMap = sim.getVpnMap(local.getAddress());
-		synchronized (vpnMap) {
-			SimVPN prior = vpnMap.get(remoteAddress);
-			if (prior != null) {
-				LOGGER.severe(sim.addTimePrefix(this + ": being created when a duplicate already exists!"));
-				throw new IllegalStateException(this + ": being created when a duplicate already exists!");
-			}
-			vpnMap.put(remoteAddress, this);
+		this.partition = sim.getPartition(local.getAddress());
+		this.directDelivery = sim.isDirectDelivery();
+		if (sim.getVpns().putIfAbsent(local.getAddress(), remoteAddress, this) != null) {
+			LOGGER.severe(sim.addTimePrefix(this + ": being created when a duplicate already exists!"));
+			throw new IllegalStateException(this + ": being created when a duplicate already exists!");
 		}
 		connect();
 	}
@@ -72,7 +77,7 @@ public class SimVPN implements EventProcessor {
 			return;
 		}
 		synchronized (this) {
-			remote = sim.getVpnMap(remoteAddress).get(local.getAddress());
+			remote = sim.getVpns().get(remoteAddress, local.getAddress());
 			if (remote == null) {
 				return;
 			}
@@ -89,7 +94,20 @@ public class SimVPN implements EventProcessor {
 			// silently fail!
 			return;
 		}
-		eventingSystem.scheduleEventRelative(remote, m, TRANSMISSION_LATENCY);
+		transmit(m);
+	}
+
+	/**
+	 * Deliver an event to the remote endpoint, TRANSMISSION_LATENCY from now. If
+	 * the remote endpoint is in another partition (or the simulation is
+	 * deterministic), the event goes through the partitions' exchange.
+	 */
+	private void transmit(Event e) {
+		if (partition == null || (partition == remote.partition && !partition.stageAll)) {
+			eventingSystem.scheduleEventRelative(remote, e, TRANSMISSION_LATENCY);
+		} else {
+			partition.send(remote.partition, remote, e, TRANSMISSION_LATENCY, local.getAddress());
+		}
 	}
 
 	@SuppressWarnings("serial")
@@ -108,12 +126,12 @@ public class SimVPN implements EventProcessor {
 		if (LOGGER.isLoggable(FINE)) {
 			LOGGER.fine(sim.addTimePrefix(this + ": being closed."));
 		}
-		sim.getVpnMap(local.getAddress()).remove(remoteAddress);
+		sim.getVpns().remove(local.getAddress(), remoteAddress, this);
 		if (remotelyInvoked) {
 			local.vpnClosed(remoteAddress);
 		} else {
 			if (remote != null) {
-				eventingSystem.scheduleEventRelative(remote, REMOTE_CLOSE_VPN_EVENT, TRANSMISSION_LATENCY);
+				transmit(REMOTE_CLOSE_VPN_EVENT);
 			}
 		}
 		closed = true;
@@ -121,7 +139,25 @@ public class SimVPN implements EventProcessor {
 	}
 
 	@Override
-	public synchronized void process(Event e, EventingSystem eventingSystem, long t) {
+	public void process(Event e, EventingSystem eventingSystem, long t) {
+		if (!accept(e)) {
+			return;
+		}
+		if (directDelivery) {
+			// Deliver outside of this VPN's monitor: the receiver may send on its other
+			// VPNs, whose monitors another thread may hold while delivering to it.
+			local.process(e, eventingSystem, t);
+		} else {
+			eventingSystem.scheduleEvent(local, e);
+		}
+	}
+
+	/**
+	 * @return true if the event is a message to be delivered to the local
+	 *         endpoint; false if it was consumed by the VPN (or discarded because
+	 *         the VPN is closed)
+	 */
+	private synchronized boolean accept(Event e) {
 		Message m = null;
 		if (e instanceof Message) {
 			m = (Message) e;
@@ -138,17 +174,17 @@ public class SimVPN implements EventProcessor {
 			if (m != null && m.isVerbose()) {
 				System.out.println(sim.addTimePrefix(this + ": discarding " + e + " because VPN is closed."));
 			}
-			return;
+			return false;
 		}
 		if (e.equals(LOCAL_CLOSE_VPN_EVENT)) {
 			close(false);
-			return;
+			return false;
 		}
 		if (e.equals(REMOTE_CLOSE_VPN_EVENT)) {
 			close(true);
-			return;
+			return false;
 		}
-		eventingSystem.scheduleEvent(local, e);
+		return true;
 	}
 
 	@Override
@@ -1,14 +1,12 @@
 package com.github.glfrazier.snd.simulation;
 
 import java.io.IOException;
-import java.net.InetAddress;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 
 import com.github.glfrazier.event.EventingSystem;
 import com.github.glfrazier.snd.node.MessageReceiver;
 import com.github.glfrazier.snd.util.AddressUtils.AddressPair;
+import com.github.glfrazier.snd.util.NodeId;
+import com.github.glfrazier.snd.util.NodePairMap;
 import com.github.glfrazier.snd.util.VPNManager;
 
 public class SimVPNManager implements VPNManager {
@@ -19,17 +17,17 @@ public class SimVPNManager implements VPNManager {
 
 	private Simulation sim;
 
-	private Map<InetAddress, SimVPN> vpnMap;
+	private NodePairMap<SimVPN> vpns;
 
 	public SimVPNManager(Simulation sim, EventingSystem es, MessageReceiver local) {
 		this.eventingSystem = es;
 		this.local = local;
 		this.sim = sim;
-		this.vpnMap = sim.getVpnMap(local.getAddress());
+		this.vpns = sim.getVpns();
 	}
 
 	@Override
-	public synchronized void createVPN(InetAddress remote, Object keyingMaterial) throws IOException {
+	public synchronized void createVPN(NodeId remote, Object keyingMaterial) throws IOException {
 		try {
 			// SimVPN vpn =
 			new SimVPN(sim, local, remote, eventingSystem);
@@ -40,8 +38,8 @@ public class SimVPNManager implements VPNManager {
 	}
 
 	@Override
-	public synchronized void closeVPN(InetAddress remote) {
-		SimVPN vpn = vpnMap.get(remote);
+	public synchronized void closeVPN(NodeId remote) {
+		SimVPN vpn = vpns.get(local.getAddress(), remote);
 		if (vpn == null)
 			return;
 		// A node will close a VPN at the same time that an ACK is being sent. So, we
@@ -1,12 +1,12 @@
 package com.github.glfrazier.snd.simulation;
 
 import static com.github.glfrazier.snd.node.Node.TRANSMISSION_LATENCY;
+import static com.github.glfrazier.snd.util.AddressUtils.addressRange;
 import static com.github.glfrazier.snd.util.AddressUtils.incrementAddress;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -14,14 +14,21 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.github.glfrazier.event.Event;
 import com.github.glfrazier.event.EventProcessor;
 import com.github.glfrazier.event.EventingSystem;
 import com.github.glfrazier.event.util.Synchronizer;
 import com.github.glfrazier.snd.node.Node;
+import com.github.glfrazier.snd.node.NodeConfig;
+import com.github.glfrazier.snd.node.PedigreeCache;
 import com.github.glfrazier.snd.node.ProxyNode;
+import com.github.glfrazier.snd.protocol.RetransmissionManager;
 import com.github.glfrazier.snd.util.AddressUtils.AddressPair;
+import com.github.glfrazier.snd.util.ClockCache;
+import com.github.glfrazier.snd.util.NodeId;
+import com.github.glfrazier.snd.util.NodePairMap;
 import com.github.glfrazier.snd.util.PropertyParser;
 
 public class Simulation {
@@ -34,29 +41,61 @@ public class Simulation {
 	private TrafficGenerator[] appClients;
 	private TrafficReceiver[] appServers;
 	private Random simRandom;
+	private long seed;
+	/**
+	 * If true, the results of a run depend only on the seed: not on the number of
+	 * partitions, nor on thread scheduling. See Partition.
+	 */
+	private boolean deterministic;
+	/** See SimVPN. */
+	private boolean directDelivery;
 	private Statistics stats;
 	private float attackProb;
 	private long endTime;
 	private long warmupTime;
 	private TrafficReceiver[] victims;
-	private Set<InetAddress> victimAddressSet;
-	private Set<InetAddress> attackerAddressSet;
+	private Set<NodeId> victimAddressSet;
+	private Set<NodeId> attackerAddressSet;
 	public boolean verbose;
 	/**
 	 * A list of message IDs that will trigger verbose processing. Useful for
 	 * debugging weird behavior in an individual message.
 	 */
 	private Set<Long> verboseMessages;
-	/** The map whereby VPN endpoints find each other. See SimVPN. */
-	private final Map<InetAddress, Map<InetAddress, SimVPN>> vpnMapOfMaps = Collections
-			.synchronizedMap(new HashMap<>());
+	/**
+	 * The registry whereby VPN endpoints find each other, keyed on (local
+	 * endpoint, remote endpoint). See SimVPN.
+	 */
+	private final NodePairMap<SimVPN> vpns = new NodePairMap<>();
 	/**
 	 * True if we want the TrafficGenerator instances to keep track of which
 	 * messages are not responded to.
 	 */
 	private boolean recordOutstandingMessages;
 	private List<Node> introducers;
+	/**
+	 * The implementations of every node, for their discovery cache and
+	 * retransmission metrics.
+	 */
+	private final List<SimImpl> impls = new ArrayList<>();
 	private boolean running;
+	/**
+	 * The partitions of a partitioned simulation (see Partition), or null if all
+	 * entities share one eventing system.
+	 */
+	private Partition[] partitions;
+	private final Map<NodeId, Partition> partitionMap = new HashMap<>();
+	private boolean warmedUp;
+	/**
+	 * How often (in simulated milliseconds) the statistics are sampled into the
+	 * time series, or zero to not write a time series.
+	 */
+	private long sampleInterval;
+	private long nextSampleTime;
+	/** The node properties, parsed once and shared by every node. */
+	private NodeConfig nodeConfig;
+	private int discoveryCacheSize;
+	private float clientTrafficRate;
 
 	public Simulation(Properties properties) throws Exception {
 		this.properties = properties;
@@ -71,7 +110,10 @@ public class Simulation {
 			long seed = System.currentTimeMillis();
 			properties.setProperty("snd.sim.seed", Long.toString(seed));
 		}
-		simRandom.setSeed(getLongProperty("snd.sim.seed"));
+		seed = getLongProperty("snd.sim.seed");
+		simRandom.setSeed(seed);
+		deterministic = getBooleanProperty("snd.sim.deterministic", false);
+		directDelivery = getBooleanProperty("snd.sim.direct_delivery", true);
 		attackProb = getProbabilityProperty("snd.sim.attack_probability");
 		verboseMessages = new HashSet<Long>();
 		if (properties.containsKey("snd.sim.verbose_msg_IDs")) {
@@ -82,15 +124,32 @@ public class Simulation {
 		}
 		recordOutstandingMessages = getBooleanProperty("snd.sim.outstanding_messages", false);
 
-		// Construct the eventing system. Since this is a simulation, we are *NOT*
-		// running the EventingSystem in realtime.
-		eventingSystem = new EventingSystem("EventingSystem", EventingSystem.NOT_REALTIME);
-		eventingSystem.setVerbose(verbose);
-		stats = new Statistics(properties);
 		endTime = getLongProperty("snd.sim.end_time");
 		warmupTime = getLongProperty("snd.sim.warmup_time");
-		eventingSystem.setEndTime(endTime);
-		if (warmupTime > 0) {
+		sampleInterval = PropertyParser.getLongProperty("snd.stats.sample_interval", 10000, properties);
+
+		// Construct the eventing system. Since this is a simulation, we are *NOT*
+		// running the EventingSystem in realtime. If the simulation is partitioned,
+		// each partition has its own eventing system; the first of them is used for
+		// simulation-wide events. A deterministic simulation is always partitioned,
+		// even if there is only one partition.
+		int numberOfPartitions = getIntegerProperty("snd.sim.number_of_partitions", 1);
+		if (numberOfPartitions > 1 || deterministic) {
+			partitions = new Partition[numberOfPartitions];
+			for (int i = 0; i < numberOfPartitions; i++) {
+				partitions[i] = new Partition(i, endTime, deriveSeed(seed, -1 - i), deterministic);
+				partitions[i].eventingSystem.setVerbose(verbose);
+			}
+			eventingSystem = partitions[0].eventingSystem;
+		} else {
+			eventingSystem = new EventingSystem("EventingSystem", EventingSystem.NOT_REALTIME);
+			eventingSystem.setVerbose(verbose);
+			eventingSystem.setEndTime(endTime);
+		}
+		stats = new Statistics(properties);
+		// A partitioned simulation zeroizes the statistics at a window boundary; see
+		// windowBoundary().
+		if (warmupTime > 0 && partitions == null) {
 			eventingSystem.scheduleEventRelative(new EventProcessor() {
 
 				@Override
@@ -100,24 +159,46 @@ public class Simulation {
 			}, Event.EVENT, warmupTime);
 		}
 
+		// A node keeps no locks of its own (see Node), so nodes that share several
+		// eventing threads must run their events through mailboxes. The nodes of a
+		// partitioned simulation are sharded among the partitions' threads instead.
+		if (partitions == null && getIntegerProperty("snd.sim.number_of_threads", 1) > 1) {
+			if (!getBooleanProperty("snd.node.mailbox", true)) {
+				throw new IllegalArgumentException(
+						"snd.node.mailbox cannot be false when snd.sim.number_of_threads is greater than 1.");
+			}
+			properties.setProperty("snd.node.mailbox", "true");
+		}
+		nodeConfig = new NodeConfig(properties);
+		discoveryCacheSize = PropertyParser.getIntegerProperty("snd.discovery_service.cache_size",
+				ButterflyDiscoveryService.DEFAULT_CACHE_SIZE, properties);
+		clientTrafficRate = getFloatProperty("snd.sim.client_traffic_exponential");
+		int constructionThreads = getIntegerProperty("snd.sim.construction_threads",
+				Runtime.getRuntime().availableProcessors());
+		if (constructionThreads < 1) {
+			throw new IllegalArgumentException("snd.sim.construction_threads must be positive.");
+		}
+
 		System.out.println("Properties parsed; building the network.");
 
 		// build the introducer network
-		Map<InetAddress, Node> introducerMap = new HashMap<>();
+		Map<NodeId, Node> introducerMap = new HashMap<>();
 		ButterflyNetwork topology = null;
 		int rowsOfIntroducers = getIntegerProperty("snd.sim.number_of_introducer_rows");
 		int colsOfIntroducers = getIntegerProperty("snd.sim.number_of_introducer_cols");
 		if (true) {
 			int fanout = getIntegerProperty("snd.sim.introducer_fanout");
-			InetAddress baseAddress = InetAddress.getByName(DEFAULT_BASE_ADDRESS);
-			baseAddress = getIPAddressProperty("snd.sim.network_base_address", baseAddress.toString().substring(1));
+			NodeId baseAddress = NodeId.of(InetAddress.getByName(DEFAULT_BASE_ADDRESS));
+			baseAddress = getIPAddressProperty("snd.sim.network_base_address",
+					baseAddress.getAddress().toString().substring(1));
 			topology = new ButterflyNetwork(fanout, rowsOfIntroducers, colsOfIntroducers, baseAddress);
 			introducers = new ArrayList<>(rowsOfIntroducers * colsOfIntroducers);
 			for (int row = 0; row < rowsOfIntroducers; row++) {
 				for (int col = 0; col < colsOfIntroducers; col++) {
-					InetAddress address = topology.getAddressOfElement(row, col);
+					NodeId address = topology.getAddressOfElement(row, col);
 					SimImpl impl = new SimImpl(this, topology);
-					Node introducer = new Node(address, impl, eventingSystem, properties);
+					impls.add(impl);
+					Node introducer = new Node(address, impl, assignPartition(address, row), properties, nodeConfig);
 					impl.setNode(introducer);
 					introducers.add(introducer);
 					introducerMap.put(address, introducer);
@@ -126,148 +207,97 @@ public class Simulation {
 					}
 				}
 			}
-			for (int i = 0; i < introducers.size() - 1; i++) {
-				for (int j = i + 1; j < introducers.size(); j++) {
-					Node ii = introducers.get(i);
-					Node ij = introducers.get(j);
-					if (topology.areConnected(ii.getAddress(), ij.getAddress())) {
-						try {
-							Object keyingMaterial = ii.generateKeyingMaterial();
-							ii.createVPN(ij.getAddress(), keyingMaterial);
-							ij.createVPN(ii.getAddress(), keyingMaterial);
-						} catch (IOException e) {
-							// TODO Auto-generated catch block
-							e.printStackTrace();
-							System.exit(-1);
-						}
+			for (Node ii : introducers) {
+				for (NodeId nbr : topology.getForwardNeighbors(ii.getAddress())) {
+					Node ij = introducerMap.get(nbr);
+					try {
+						Object keyingMaterial = ii.generateKeyingMaterial();
+						ii.createVPN(ij.getAddress(), keyingMaterial);
+						ij.createVPN(ii.getAddress(), keyingMaterial);
+					} catch (IOException e) {
+						e.printStackTrace();
+						System.exit(-1);
 					}
 				}
 			}
 		}
 
-		// construct server proxies and link them to appropriate introducers
-		InetAddress firstServerAddress = incrementAddress(topology.getLastAddress());
+		// Allocate the addresses of the server and client proxies and of the app
+		// servers and clients behind them, place each in the partition of its
+		// introducer row and record the connections in the topology. This is done
+		// sequentially, so that the indices of the NodeIds, and so a deterministic
+		// run, do not depend on the number of construction threads.
+		NodeId firstServerAddress = incrementAddress(topology.getLastAddress());
 		firstServerAddress = getIPAddressProperty("snd.sim.first_server_address",
-				firstServerAddress.toString().substring(1));
-		InetAddress lastServerAddress = null;
+				firstServerAddress.getAddress().toString().substring(1));
 		int numberOfServers = getIntegerProperty("snd.sim.number_of_servers");
-		if (true) {
-			InetAddress serverAddress = firstServerAddress;
-			int index = 0;
-			for (int i = 0; i < numberOfServers; i++) {
-				SimImpl impl = new SimImpl(this, topology);
-				ProxyNode serverProxy = new ProxyNode(serverAddress, impl, eventingSystem, properties, stats);
-				impl.setNode(serverProxy);
-				servers.add(serverProxy);
-				InetAddress introAddr = topology.getAddressOfElement(index, colsOfIntroducers - 1);
-				Node introImpl = introducerMap.get(introAddr);
-				try {
-					Object keyingMaterial = serverProxy.generateKeyingMaterial();
-					serverProxy.connectInitialIntroducer(introAddr, keyingMaterial);
-					introImpl.createVPN(serverAddress, keyingMaterial);
-				} catch (IOException e) {
-					e.printStackTrace();
-					System.exit(-1);
-				}
-				topology.connectProxy(serverAddress, introAddr);
-				lastServerAddress = serverAddress;
-				serverAddress = incrementAddress(serverAddress);
-				index++;
-				if (index == rowsOfIntroducers) {
-					index = 0;
-				}
-				if (verbose) {
-					System.out.println("Constructed " + serverProxy + " and connected it to " + introAddr);
-				}
-			}
-		}
+		NodeId[] serverAddresses = addressRange(firstServerAddress, numberOfServers);
 
-		// construct client proxies and link them to appropriate introducers
 		int numberOfClients = getIntegerProperty("snd.sim.number_of_clients");
-		InetAddress firstClientAddress = incrementAddress(lastServerAddress);
+		NodeId firstClientAddress = incrementAddress(serverAddresses[numberOfServers - 1]);
 		firstClientAddress = getIPAddressProperty("snd.sim.first_client_address",
-				firstClientAddress.toString().substring(1));
-		InetAddress lastClientAddress = null;
-		if (true) {
-			InetAddress clientAddress = firstClientAddress;
-			int index = 0;
-			for (int i = 0; i < numberOfClients; i++) {
-				SimImpl impl = new SimImpl(this, topology);
-				ProxyNode clientProxy = new ProxyNode(clientAddress, impl, eventingSystem, properties, stats);
-				impl.setNode(clientProxy);
-				clients.add(clientProxy);
-				InetAddress introAddr = topology.getAddressOfElement(index, 0);
-				Node introImpl = introducerMap.get(introAddr);
-				try {
-					Object keyingMaterial = clientProxy.generateKeyingMaterial();
-					clientProxy.connectInitialIntroducer(introAddr, keyingMaterial);
-					introImpl.createVPN(clientAddress, keyingMaterial);
-				} catch (IOException e) {
-					e.printStackTrace();
-					System.exit(-1);
-				}
-				topology.connectProxy(clientAddress, introAddr);
-				lastClientAddress = clientAddress;
-				clientAddress = incrementAddress(clientAddress);
-				index++;
-				if (index == rowsOfIntroducers) {
-					index = 0;
-				}
-				if (verbose) {
-					System.out.println("Constructed " + clientProxy + " and connected it to " + introAddr);
-				}
-			}
-		}
+				firstClientAddress.getAddress().toString().substring(1));
+		NodeId[] clientAddresses = addressRange(firstClientAddress, numberOfClients);
 
-		// construct app servers (TrafficReceivers) and connect them to ServerProxies
-		InetAddress firstReceiverAddress = incrementAddress(lastClientAddress);
+		NodeId firstReceiverAddress = incrementAddress(clientAddresses[numberOfClients - 1]);
 		firstReceiverAddress = getIPAddressProperty("snd.sim.first_appserver_address",
-				firstReceiverAddress.toString().substring(1));
-		InetAddress lastReceiverAddress = null;
+				firstReceiverAddress.getAddress().toString().substring(1));
+		NodeId[] receiverAddresses = addressRange(firstReceiverAddress, numberOfServers);
+
+		NodeId firstGeneratorAddress = incrementAddress(receiverAddresses[numberOfServers - 1]);
+		firstGeneratorAddress = getIPAddressProperty("snd.sim.first_appclient_address",
+				firstGeneratorAddress.getAddress().toString().substring(1));
+		NodeId[] generatorAddresses = addressRange(firstGeneratorAddress, numberOfClients);
+
 		float falsePositive = getFloatProperty("snd.sim.sensorFP");
 		float falseNegative = getFloatProperty("snd.sim.sensorFN");
-		InetAddress receiverAddress = firstReceiverAddress;
-		appServers = new TrafficReceiver[servers.size()];
-		int index = 0;
-		for (ProxyNode proxy : servers) {
-			TrafficReceiver receiver = new TrafficReceiver(receiverAddress, falsePositive, falseNegative, this);
-			SimVPNManager factory = new SimVPNManager(this, eventingSystem, receiver);
-			appServers[index++] = receiver;
-			factory.createVPN(proxy.getAddress(), null);
-			receiver.attachToServer(getVpnMap(receiver.getAddress()).get(proxy.getAddress()));
-			proxy.connectProxiedHost(receiverAddress, null);
-			lastReceiverAddress = receiverAddress;
+		NetworkBuilder builder = new NetworkBuilder(topology, introducerMap, serverAddresses, clientAddresses,
+				receiverAddresses, generatorAddresses, falsePositive, falseNegative);
+		for (int i = 0; i < numberOfServers; i++) {
+			int row = i % rowsOfIntroducers;
+			NodeId introAddr = topology.getAddressOfElement(row, colsOfIntroducers - 1);
+			builder.serverIntroducers[i] = introAddr;
+			builder.serverEventingSystems[i] = assignPartition(serverAddresses[i], row);
+			assignPartition(receiverAddresses[i], getPartition(serverAddresses[i]));
+			topology.connectProxy(serverAddresses[i], introAddr);
 			// Create the TrafficReceiver's entry in the proxy lookup service
-			topology.setProxyFor(receiverAddress, proxy.getAddress());
-			receiverAddress = incrementAddress(receiverAddress);
-			if (verbose) {
-				System.out.println("Constructed " + receiver + " and connected it to " + proxy);
-			}
+			topology.setProxyFor(receiverAddresses[i], serverAddresses[i]);
 		}
-
-		// construct the app clients (TrafficGenerators) and connect them to Clients
-		InetAddress firstGeneratorAddress = incrementAddress(lastReceiverAddress);
-		firstGeneratorAddress = getIPAddressProperty("snd.sim.first_appclient_address",
-				firstGeneratorAddress.toString().substring(1));
-		InetAddress lastGeneratorAddress = null;
-		InetAddress generatorAddress = firstGeneratorAddress;
-		appClients = new TrafficGenerator[clients.size()];
-		index = 0;
-		for (ProxyNode proxy : clients) {
-			TrafficGenerator generator = new TrafficGenerator(generatorAddress, this, eventingSystem);
-			SimVPNManager vpnMgr = new SimVPNManager(this, eventingSystem, generator);
-			vpnMgr.createVPN(proxy.getAddress(), null);
-			generator.attachToProxy(this.getVpnMap(generatorAddress).get(proxy.getAddress()));
-			proxy.connectProxiedHost(generatorAddress, null);
+		for (int i = 0; i < numberOfClients; i++) {
+			int row = i % rowsOfIntroducers;
+			NodeId introAddr = topology.getAddressOfElement(row, 0);
+			builder.clientIntroducers[i] = introAddr;
+			builder.clientEventingSystems[i] = assignPartition(clientAddresses[i], row);
+			assignPartition(generatorAddresses[i], getPartition(clientAddresses[i]));
+			topology.connectProxy(clientAddresses[i], introAddr);
 			// Create the TrafficGenerator's entry in the proxy lookup service
-			topology.setProxyFor(generatorAddress, proxy.getAddress());
-			appClients[index++] = generator;
-			generatorAddress = incrementAddress(generatorAddress);
-			if (verbose) {
-				System.out.println("Constructed " + generator + " and connected it to " + proxy);
+			topology.setProxyFor(generatorAddresses[i], clientAddresses[i]);
+			if (!deterministic) {
+				builder.generatorSeeds[i] = getSeed();
 			}
 		}
-		lastGeneratorAddress = generatorAddress;
+
+		// Construct the proxies and app servers and clients, and connect them. The
+		// entities are divided into groups, each constructed by one thread. If the
+		// simulation is partitioned, the groups are the partitions, so that each
+		// eventing system and each introducer is only used by one thread, and events
+		// are scheduled in the same order as by a sequential construction. Otherwise
+		// every entity shares one eventing system, and the introducers keep no locks
+		// (see Node), so there is a single group.
+		int groups = partitions == null ? 1 : partitions.length;
+		builder.groupEntities(groups, rowsOfIntroducers);
+		builder.run(Math.min(constructionThreads, groups));
+
+		for (int i = 0; i < numberOfServers; i++) {
+			impls.add(builder.serverImpls[i]);
+			servers.add(builder.serverProxies[i]);
+		}
+		for (int i = 0; i < numberOfClients; i++) {
+			impls.add(builder.clientImpls[i]);
+			clients.add(builder.clientProxies[i]);
+		}
+		appServers = builder.receivers;
+		appClients = builder.generators;
 
 		// Assign attackers and victims
 		int numberOfAttackers = getIntegerProperty("snd.sim.number_of_attackers");
@@ -355,19 +385,297 @@ public class Simulation {
 		return PropertyParser.getListProperty(propName, defaultValue, properties);
 	}
 
-	private InetAddress getIPAddressProperty(String propName, String defaultValue) {
-		return PropertyParser.getIPAddressProperty(propName, defaultValue, properties);
+	private NodeId getIPAddressProperty(String propName, String defaultValue) {
+		return NodeId.of(PropertyParser.getIPAddressProperty(propName, defaultValue, properties));
 	}
 
 	@SuppressWarnings("unused")
-	private InetAddress getIPAddressProperty(String propName) {
-		return PropertyParser.getIPAddressProperty(propName, properties);
+	private NodeId getIPAddressProperty(String propName) {
+		return NodeId.of(PropertyParser.getIPAddressProperty(propName, properties));
 	}
 
 	public float getProbabilityProperty(String propName) {
 		return PropertyParser.getProbabilityProperty(propName, properties);
 	}
 
+	/**
+	 * Place an entity in the partition of a row of the introducer network.
+	 * 
+	 * @return the eventing system that the entity is to use
+	 */
+	private EventingSystem assignPartition(NodeId address, int row) {
+		if (partitions == null) {
+			return eventingSystem;
+		}
+		return assignPartition(address, partitions[row % partitions.length]);
+	}
+
+	private EventingSystem assignPartition(NodeId address, Partition partition) {
+		if (partitions == null) {
+			return eventingSystem;
+		}
+		partitionMap.put(address, partition);
+		return partition.eventingSystem;
+	}
+
+	/**
+	 * Constructs the server and client proxies and the app servers and clients
+	 * behind them, once their addresses and partitions have been assigned. Each
+	 * entity is stored at its index in the arrays, so the threads constructing
+	 * different groups of entities share no collections.
+	 */
+	private class NetworkBuilder {
+		private final ButterflyNetwork topology;
+		private final Map<NodeId, Node> introducerMap;
+		private final NodeId[] serverAddresses;
+		private final NodeId[] clientAddresses;
+		private final NodeId[] receiverAddresses;
+		private final NodeId[] generatorAddresses;
+		private final float falsePositive;
+		private final float falseNegative;
+
+		final NodeId[] serverIntroducers;
+		final NodeId[] clientIntroducers;
+		final EventingSystem[] serverEventingSystems;
+		final EventingSystem[] clientEventingSystems;
+		final long[] generatorSeeds;
+
+		final SimImpl[] serverImpls;
+		final SimImpl[] clientImpls;
+		final ProxyNode[] serverProxies;
+		final ProxyNode[] clientProxies;
+		final TrafficReceiver[] receivers;
+		final TrafficGenerator[] generators;
+
+		/** For each group, the indices of its servers and clients, in order. */
+		private int[][] serverGroups;
+		private int[][] clientGroups;
+
+		NetworkBuilder(ButterflyNetwork topology, Map<NodeId, Node> introducerMap, NodeId[] serverAddresses,
+				NodeId[] clientAddresses, NodeId[] receiverAddresses, NodeId[] generatorAddresses,
+				float falsePositive, float falseNegative) {
+			this.topology = topology;
+			this.introducerMap = introducerMap;
+			this.serverAddresses = serverAddresses;
+			this.clientAddresses = clientAddresses;
+			this.receiverAddresses = receiverAddresses;
+			this.generatorAddresses = generatorAddresses;
+			this.falsePositive = falsePositive;
+			this.falseNegative = falseNegative;
+			int numberOfServers = serverAddresses.length;
+			int numberOfClients = clientAddresses.length;
+			serverIntroducers = new NodeId[numberOfServers];
+			clientIntroducers = new NodeId[numberOfClients];
+			serverEventingSystems = new EventingSystem[numberOfServers];
+			clientEventingSystems = new EventingSystem[numberOfClients];
+			generatorSeeds = new long[numberOfClients];
+			serverImpls = new SimImpl[numberOfServers];
+			clientImpls = new SimImpl[numberOfClients];
+			serverProxies = new ProxyNode[numberOfServers];
+			clientProxies = new ProxyNode[numberOfClients];
+			receivers = new TrafficReceiver[numberOfServers];
+			generators = new TrafficGenerator[numberOfClients];
+		}
+
+		/**
+		 * Divide the entities into groups by introducer row: the entities of a row
+		 * are in the same group (and, if the simulation is partitioned, the groups
+		 * are the partitions), so no two groups connect to the same introducer.
+		 */
+		void groupEntities(int groups, int rows) {
+			serverGroups = group(serverAddresses.length, groups, rows);
+			clientGroups = group(clientAddresses.length, groups, rows);
+		}
+
+		private int[][] group(int n, int groups, int rows) {
+			int[] groupOf = new int[n];
+			int[] sizes = new int[groups];
+			for (int i = 0; i < n; i++) {
+				groupOf[i] = (i % rows) % groups;
+				sizes[groupOf[i]]++;
+			}
+			int[][] result = new int[groups][];
+			for (int g = 0; g < groups; g++) {
+				result[g] = new int[sizes[g]];
+				sizes[g] = 0;
+			}
+			for (int i = 0; i < n; i++) {
+				result[groupOf[i]][sizes[groupOf[i]]++] = i;
+			}
+			return result;
+		}
+
+		/**
+		 * Construct every group, on the given number of threads. A thread takes the
+		 * next unconstructed group until there are none left.
+		 */
+		void run(int threads) throws InterruptedException {
+			AtomicInteger nextGroup = new AtomicInteger();
+			Runnable worker = () -> {
+				for (int g = nextGroup.getAndIncrement(); g < serverGroups.length; g = nextGroup.getAndIncrement()) {
+					try {
+						buildGroup(g);
+					} catch (IOException | RuntimeException e) {
+						e.printStackTrace();
+						System.exit(-1);
+					}
+				}
+			};
+			if (threads == 1) {
+				worker.run();
+				return;
+			}
+			Thread[] workers = new Thread[threads];
+			for (int i = 0; i < threads; i++) {
+				workers[i] = new Thread(worker, "Construction-" + i);
+				workers[i].start();
+			}
+			for (Thread t : workers) {
+				t.join();
+			}
+		}
+
+		/**
+		 * Construct one group's entities in the order of a sequential construction:
+		 * server proxies, client proxies, app servers, app clients.
+		 */
+		private void buildGroup(int g) throws IOException {
+			for (int i : serverGroups[g]) {
+				serverImpls[i] = new SimImpl(Simulation.this, topology);
+				serverProxies[i] = buildProxy(serverAddresses[i], serverImpls[i], serverEventingSystems[i],
+						serverIntroducers[i]);
+			}
+			for (int i : clientGroups[g]) {
+				clientImpls[i] = new SimImpl(Simulation.this, topology);
+				clientProxies[i] = buildProxy(clientAddresses[i], clientImpls[i], clientEventingSystems[i],
+						clientIntroducers[i]);
+			}
+			for (int i : serverGroups[g]) {
+				ProxyNode proxy = serverProxies[i];
+				NodeId receiverAddress = receiverAddresses[i];
+				TrafficReceiver receiver = new TrafficReceiver(receiverAddress, falsePositive, falseNegative,
+						Simulation.this);
+				SimVPNManager factory = new SimVPNManager(Simulation.this, serverEventingSystems[i], receiver);
+				receivers[i] = receiver;
+				factory.createVPN(proxy.getAddress(), null);
+				receiver.attachToServer(vpns.get(receiverAddress, proxy.getAddress()));
+				proxy.connectProxiedHost(receiverAddress, null);
+				if (verbose) {
+					System.out.println("Constructed " + receiver + " and connected it to " + proxy);
+				}
+			}
+			for (int i : clientGroups[g]) {
+				ProxyNode proxy = clientProxies[i];
+				NodeId generatorAddress = generatorAddresses[i];
+				EventingSystem es = clientEventingSystems[i];
+				TrafficGenerator generator = new TrafficGenerator(generatorAddress, Simulation.this, es,
+						generatorSeeds[i]);
+				SimVPNManager vpnMgr = new SimVPNManager(Simulation.this, es, generator);
+				vpnMgr.createVPN(proxy.getAddress(), null);
+				generator.attachToProxy(vpns.get(generatorAddress, proxy.getAddress()));
+				proxy.connectProxiedHost(generatorAddress, null);
+				generators[i] = generator;
+				if (verbose) {
+					System.out.println("Constructed " + generator + " and connected it to " + proxy);
+				}
+			}
+		}
+
+		private ProxyNode buildProxy(NodeId address, SimImpl impl, EventingSystem es, NodeId introAddr)
+				throws IOException {
+			ProxyNode proxy = new ProxyNode(address, impl, es, properties, nodeConfig, stats);
+			impl.setNode(proxy);
+			Object keyingMaterial = proxy.generateKeyingMaterial();
+			proxy.connectInitialIntroducer(introAddr, keyingMaterial);
+			introducerMap.get(introAddr).createVPN(address, keyingMaterial);
+			if (verbose) {
+				System.out.println("Constructed " + proxy + " and connected it to " + introAddr);
+			}
+			return proxy;
+		}
+	}
+
+	/**
+	 * @return the partition of the entity, or null if the simulation is not
+	 *         partitioned
+	 */
+	Partition getPartition(NodeId address) {
+		if (partitions == null) {
+			return null;
+		}
+		return partitionMap.get(address);
+	}
+
+	/**
+	 * @return the eventing system of the calling thread's partition
+	 */
+	private EventingSystem currentEventingSystem() {
+		Partition p = Partition.current();
+		return p == null ? eventingSystem : p.eventingSystem;
+	}
+
+	/**
+	 * Invoked at every window boundary of a partitioned simulation, while every
+	 * partition is stopped.
+	 */
+	private void windowBoundary(long time) {
+		if (warmupTime > 0 && !warmedUp && time >= warmupTime) {
+			stats.zeroize();
+			warmedUp = true;
+		}
+		if (sampleInterval > 0 && time >= nextSampleTime) {
+			stats.sample(time, introducers);
+			nextSampleTime += sampleInterval;
+		}
+	}
+
+	/**
+	 * Sample the statistics every {@link #sampleInterval} milliseconds. A
+	 * partitioned simulation samples at a window boundary instead; see
+	 * windowBoundary().
+	 */
+	private void addStatisticsSampler() {
+		if (sampleInterval <= 0) {
+			return;
+		}
+		try {
+			stats.openTimeSeries();
+		} catch (IOException e) {
+			System.err.println("Failed to create the statistics time series:");
+			e.printStackTrace();
+			System.exit(-1);
+		}
+		nextSampleTime = sampleInterval;
+		if (partitions != null) {
+			return;
+		}
+		eventingSystem.scheduleEventRelative(new EventProcessor() {
+
+			@Override
+			public void process(Event e, EventingSystem eventingSystem, long t) {
+				stats.sample(t, introducers);
+				eventingSystem.scheduleEventRelative(this, e, sampleInterval);
+			}
+
+			@Override
+			public String toString() {
+				return "Statistics Sampler";
+			}
+
+		}, Event.EVENT, sampleInterval);
+	}
+
+	private long getTotalEventsDelivered() {
+		if (partitions == null) {
+			return eventingSystem.getTotalEventsDelivered();
+		}
+		long total = 0;
+		for (Partition p : partitions) {
+			total += p.eventingSystem.getTotalEventsDelivered();
+		}
+		return total;
+	}
+
 	/**
 	 * Run a simulation of the Socian Network Dynamics. Parameters are provided in
 	 * the format "&lt;name&gt;=&lt;value&gt;". Order of precedence:
@@ -434,14 +742,25 @@ public class Simulation {
 		running = true;
 		addTimeReporter();
 		stats.startSimulation();
-		int numberOfThreads = getIntegerProperty("snd.sim.number_of_threads");
-		Thread[] threads = new Thread[numberOfThreads];
-		for (int i = 0; i < threads.length; i++) {
-			final int thdID = i;
-			threads[i] = new Thread(null, eventingSystem, "Eventing System Thread " + thdID);
+		addStatisticsSampler();
+		Thread[] threads;
+		if (partitions == null) {
+			int numberOfThreads = getIntegerProperty("snd.sim.number_of_threads");
+			threads = new Thread[numberOfThreads];
+			for (int i = 0; i < threads.length; i++) {
+				final int thdID = i;
+				threads[i] = new Thread(null, eventingSystem, "Eventing System Thread " + thdID);
+			}
+			new Synchronizer(threads, TRANSMISSION_LATENCY - 3, //
+					eventingSystem);
+		} else {
+			// One thread per partition; the partitions synchronize themselves.
+			Partition.link(partitions, this::windowBoundary);
+			threads = new Thread[partitions.length];
+			for (int i = 0; i < threads.length; i++) {
+				threads[i] = new Thread(partitions[i]::run, partitions[i] + " Thread");
+			}
 		}
-		new Synchronizer(threads, TRANSMISSION_LATENCY - 3, //
-				eventingSystem);
 		System.out.println("Starting the threads. The simulation will end at time " + endTime);
 		System.out.println("===========================================");
 		for (int i = 0; i < threads.length; i++) {
@@ -449,6 +768,7 @@ public class Simulation {
 		}
 		Thread t = new Thread("DEBUG") {
 			private long eventsDelivered;
+			private long timeOfLastReport = System.currentTimeMillis();
 
 			public void run() {
 				while (true) {
@@ -468,16 +788,37 @@ public class Simulation {
 						}
 					}
 					long irSize = 0;
+					long pedigrees = 0;
+					long pedigreeHits = 0;
+					long pedigreeMisses = 0;
+					long pedigreeEvictions = 0;
 					for (Node n : introducers) {
 						irSize += n.getPendingFeedbacksSize();
+						PedigreeCache pc = n.getPedigreeCache();
+						pedigrees += pc.size();
+						pedigreeHits += pc.getHits();
+						pedigreeMisses += pc.getMisses();
+						pedigreeEvictions += pc.getEvictions();
 					}
 					System.out.println("Free Memory = " + Runtime.getRuntime().freeMemory());
 					System.out.println("Total Memory = " + Runtime.getRuntime().totalMemory());
-					System.out.println("vpnMap.size() = " + vpnMapOfMaps.size());
-					long ted = eventingSystem.getTotalEventsDelivered();
+					System.out.println("vpns.size() = " + vpns.size());
+					long ted = getTotalEventsDelivered();
 					System.out.println("#events processed = " + ted);
+					long now = System.currentTimeMillis();
 					System.out.println("events in this period = " + (ted - eventsDelivered));
+					System.out.println("events per second = "
+							+ (ted - eventsDelivered) * 1000 / Math.max(1, now - timeOfLastReport));
+					timeOfLastReport = now;
 					System.out.println("Pending Feedbacks = " + irSize);
+					System.out.println("Pedigrees = " + pedigrees + " (hits=" + pedigreeHits + ", misses="
+							+ pedigreeMisses + ", evictions=" + pedigreeEvictions + ")");
+					long[] dc = getDiscoveryCacheMetrics();
+					System.out.println("Discovery cache = " + dc[0] + " (hits=" + dc[1] + ", misses=" + dc[2]
+							+ ", evictions=" + dc[3] + ")");
+					long[] rm = getRetransmissionMetrics();
+					System.out.println("Awaiting ack = " + rm[0] + " (transmissions=" + rm[1] + ", retransmissions="
+							+ rm[2] + ", failures=" + rm[3] + ", acks=" + rm[4] + ")");
 					eventsDelivered = ted;
 					System.out.println("===============================");
 				}
@@ -496,9 +837,23 @@ public class Simulation {
 		running = false;
 		t.interrupt();
 		printEvent("The simulation has ended.");
-		long eventsProcessed = eventingSystem.getTotalEventsDelivered();
+		long eventsProcessed = getTotalEventsDelivered();
 		properties.setProperty("events_processed", Long.toString(eventsProcessed));
 		System.out.println("events_processed = " + eventsProcessed);
+		long[] dc = getDiscoveryCacheMetrics();
+		properties.setProperty("discovery_cache_hits", Long.toString(dc[1]));
+		properties.setProperty("discovery_cache_misses", Long.toString(dc[2]));
+		properties.setProperty("discovery_cache_evictions", Long.toString(dc[3]));
+		System.out.println("discovery cache hit rate = " + (double) dc[1] / Math.max(1, dc[1] + dc[2]));
+		long[] rm = getRetransmissionMetrics();
+		properties.setProperty("sndp_transmissions", Long.toString(rm[1]));
+		properties.setProperty("sndp_retransmissions", Long.toString(rm[2]));
+		properties.setProperty("sndp_failures", Long.toString(rm[3]));
+		properties.setProperty("sndp_acks", Long.toString(rm[4]));
+		properties.setProperty("sndp_mean_ack_rtt", Double.toString((double) rm[6] / Math.max(1, rm[5])));
+		properties.setProperty("sndp_max_ack_rtt", Long.toString(rm[7]));
+		System.out.println("retransmission rate = " + (double) rm[2] / Math.max(1, rm[1])
+				+ ", mean ack rtt = " + (double) rm[6] / Math.max(1, rm[5]) + " ms");
 		try {
 			stats.save(properties);
 		} catch (IOException e) {
@@ -514,24 +869,98 @@ public class Simulation {
 		System.out.println("============");
 	}
 
+	/**
+	 * @return the size, hits, misses and evictions of the nodes' discovery
+	 *         caches, summed over the nodes
+	 */
+	private long[] getDiscoveryCacheMetrics() {
+		long[] metrics = new long[4];
+		for (SimImpl impl : impls) {
+			ClockCache<NodeId, NodeId> cache = impl.getDiscoveryService().getCache();
+			metrics[0] += cache.size();
+			metrics[1] += cache.getHits();
+			metrics[2] += cache.getMisses();
+			metrics[3] += cache.getEvictions();
+		}
+		return metrics;
+	}
+
+	/**
+	 * @return the transmissions awaiting an ack, transmissions, retransmissions,
+	 *         failures, acks, timed acks and total ack round-trip time of the
+	 *         nodes, summed over the nodes, and the maximum ack round-trip time
+	 */
+	private long[] getRetransmissionMetrics() {
+		long[] metrics = new long[8];
+		for (SimImpl impl : impls) {
+			RetransmissionManager rm = impl.getNode().getRetransmissionManager();
+			metrics[0] += rm.size();
+			metrics[1] += rm.getTransmissions();
+			metrics[2] += rm.getRetransmissions();
+			metrics[3] += rm.getFailures();
+			metrics[4] += rm.getAcks();
+			metrics[5] += rm.getRttSamples();
+			metrics[6] += rm.getTotalRtt();
+			metrics[7] = Math.max(metrics[7], rm.getMaxRtt());
+		}
+		return metrics;
+	}
+
 	public void printEvent(String msg) {
-		System.out.println(String.format("%10.3f: %s", ((float) eventingSystem.getCurrentTime()) / 1000.0, msg));
+		System.out.println(addTimePrefix(msg));
 	}
 
 	public String addTimePrefix(String msg) {
-		return String.format("%10.3f: %s", ((float) eventingSystem.getCurrentTime()) / 1000.0, msg);
+		return String.format("%10.3f: %s", ((float) currentEventingSystem().getCurrentTime()) / 1000.0, msg);
+	}
+
+	int getDiscoveryCacheSize() {
+		return discoveryCacheSize;
+	}
+
+	float getClientTrafficRate() {
+		return clientTrafficRate;
 	}
 
 	public long getSeed() {
 		return simRandom.nextLong();
 	}
 
+	public boolean isDirectDelivery() {
+		return directDelivery;
+	}
+
+	public boolean isDeterministic() {
+		return deterministic;
+	}
+
+	/**
+	 * Create the random number stream of an entity in a deterministic
+	 * simulation. The stream is derived from the simulation seed and the
+	 * entity's index, so it does not depend on the order in which entities draw
+	 * numbers.
+	 */
+	public Random createRandom(NodeId entity) {
+		return new Random(deriveSeed(seed, entity.getIndex()));
+	}
+
+	/**
+	 * @return the seed of one of the streams derived from a seed (the SplitMix64
+	 *         finalizer applied to the seed plus a stream-specific offset)
+	 */
+	private static long deriveSeed(long seed, long stream) {
+		long z = seed + (stream + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
 	/**
 	 * This is a bit of a hack. TrafficReceiver does not have access to the eventing
 	 * system, but it does have the Simulation instance.
 	 */
 	public long getCurrentTime() {
-		return eventingSystem.getCurrentTime();
+		return currentEventingSystem().getCurrentTime();
 	}
 
 	public Statistics getStats() {
@@ -540,10 +969,10 @@ public class Simulation {
 
 	public static class MessageMetaData {
 
-		public final InetAddress destination;
+		public final NodeId destination;
 		public final boolean isAttack;
 
-		public MessageMetaData(InetAddress destination, boolean isAttack) {
+		public MessageMetaData(NodeId destination, boolean isAttack) {
 			this.destination = destination;
 			this.isAttack = isAttack;
 		}
@@ -551,15 +980,26 @@ public class Simulation {
 	}
 
 	public MessageMetaData getNextMessageToSend(TrafficGenerator sender) {
-		InetAddress destination = null;
+		NodeId destination = null;
 		boolean isAttack = false;
+		// Partitions draw from their own generators, so that the draws do not depend
+		// on the interleaving of the partitions' threads. A deterministic simulation
+		// draws from the sender's own generator, so that the draws do not depend on
+		// the partitioning either.
+		Random random;
+		if (deterministic) {
+			random = sender.getRandom();
+		} else {
+			Partition p = Partition.current();
+			random = (p == null ? simRandom : p.random);
+		}
 		if (sender.isAttacker() && !inWarmup()) {
-			isAttack = simRandom.nextFloat() < attackProb;
+			isAttack = random.nextFloat() < attackProb;
 		}
 		if (isAttack) {
-			destination = victims[simRandom.nextInt(victims.length)].getAddress();
+			destination = victims[random.nextInt(victims.length)].getAddress();
 		} else {
-			destination = appServers[simRandom.nextInt(appServers.length)].getAddress();
+			destination = appServers[random.nextInt(appServers.length)].getAddress();
 		}
 		return new MessageMetaData(destination, isAttack);
 	}
@@ -572,18 +1012,8 @@ public class Simulation {
 		return verboseMessages.contains(id);
 	}
 
-	public Map<InetAddress, SimVPN> getVpnMap(InetAddress addr) {
-		Map<InetAddress, SimVPN> map = vpnMapOfMaps.get(addr);
-		if (map == null) {
-			synchronized (vpnMapOfMaps) {
-				map = vpnMapOfMaps.get(addr);
-				if (map == null) {
-					map = Collections.synchronizedMap(new HashMap<>());
-					vpnMapOfMaps.put(addr, map);
-				}
-			}
-		}
-		return map;
+	public NodePairMap<SimVPN> getVpns() {
+		return vpns;
 	}
 
 	public boolean recordOutstandingMessages() {
@@ -591,7 +1021,7 @@ public class Simulation {
 	}
 
 	private boolean inWarmup() {
-		return eventingSystem.getCurrentTime() < warmupTime;
+		return currentEventingSystem().getCurrentTime() < warmupTime;
 	}
 
 	public Properties getProperties() {
@@ -599,11 +1029,11 @@ public class Simulation {
 	}
 
 
-	public boolean isVictim(InetAddress destination) {
+	public boolean isVictim(NodeId destination) {
 		return victimAddressSet.contains(destination);
 	}
 
-	public boolean isAttacker(InetAddress addr) {
+	public boolean isAttacker(NodeId addr) {
 		return attackerAddressSet.contains(addr);
 	}
 
@@ -1,19 +1,27 @@
 package com.github.glfrazier.snd.simulation;
 
+import static com.github.glfrazier.snd.util.AddressUtils.addrToString;
+
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.Serializable;
 import java.lang.reflect.Field;
-import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
 
+import com.github.glfrazier.snd.node.Node;
+import com.github.glfrazier.snd.node.ThresholdController;
 import com.github.glfrazier.snd.util.DenialReporter;
+import com.github.glfrazier.snd.util.NodeId;
 
 public class Statistics implements Serializable, DenialReporter {
 
@@ -24,13 +32,38 @@ public class Statistics implements Serializable, DenialReporter {
 
 	private File baseDir;
 	private File resultsDir;
-	private IndividualStatistics stats;
+	/**
+	 * The counters. The counters are {@link LongAdder}s, so the traffic entities
+	 * update them without taking a lock; {@link #zeroize()} replaces the whole
+	 * set at once. An increment that races with the replacement lands in the old
+	 * set, which is equivalent to it having happened before the zeroize.
+	 */
+	private volatile IndividualStatistics stats;
 
-	private boolean closed;
-	private boolean opened;
+	private volatile boolean closed;
+	private volatile boolean opened;
 
 	private long startTime;
 
+	/**
+	 * The counters of {@link IndividualStatistics}, in declaration order. They
+	 * are the columns of results.txt and of the time series.
+	 */
+	private static final Field[] COUNTERS = counterFields();
+
+	/**
+	 * The per-interval time series: one row per sample, holding the increase in
+	 * each counter since the previous sample. Written as the simulation runs.
+	 */
+	private transient PrintStream counterSeries;
+	/**
+	 * The threshold and health of each introducer at each sample, one row per
+	 * introducer per sample.
+	 */
+	private transient PrintStream introducerSeries;
+	/** The counters at the previous sample. */
+	private long[] lastSample = new long[COUNTERS.length];
+
 	public Statistics(Properties props) {
 		this.stats = new IndividualStatistics();
 		initialize(props);
@@ -54,8 +87,68 @@ public class Statistics implements Serializable, DenialReporter {
 		resultsDir = subdir;
 	}
 	
-	public void zeroize() {
+	public synchronized void zeroize() {
 		this.stats = new IndividualStatistics();
+		lastSample = new long[COUNTERS.length];
+	}
+
+	private static Field[] counterFields() {
+		List<Field> fields = new ArrayList<>();
+		for (Field field : IndividualStatistics.class.getDeclaredFields()) {
+			if (!field.getName().startsWith("this")) {
+				fields.add(field);
+			}
+		}
+		return fields.toArray(new Field[0]);
+	}
+
+	private long[] readCounters() {
+		long[] values = new long[COUNTERS.length];
+		try {
+			for (int i = 0; i < COUNTERS.length; i++) {
+				values[i] = ((LongAdder) COUNTERS[i].get(stats)).sum();
+			}
+		} catch (IllegalArgumentException | IllegalAccessException e) {
+			e.printStackTrace();
+			System.exit(-1);
+		}
+		return values;
+	}
+
+	private PrintStream openSeries(String name, String header) throws IOException {
+		File f = new File(resultsDir, name + ".csv");
+		PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(f), 1 << 16));
+		out.println(header);
+		return out;
+	}
+
+	/**
+	 * Append a sample to the time series: the increase in each counter since the
+	 * previous sample, and the threshold and health of each introducer. The rows
+	 * are flushed to the file, so that the series survives a crash; nothing is
+	 * retained in memory.
+	 * 
+	 * @param time        the simulation time of the sample
+	 * @param introducers the introducers
+	 */
+	public synchronized void sample(long time, List<Node> introducers) {
+		if (counterSeries == null) {
+			return;
+		}
+		long[] values = readCounters();
+		StringBuilder b = new StringBuilder().append(time);
+		for (int i = 0; i < values.length; i++) {
+			b.append(',').append(values[i] - lastSample[i]);
+		}
+		counterSeries.println(b);
+		counterSeries.flush();
+		lastSample = values;
+		for (Node n : introducers) {
+			ThresholdController tc = n.reputationModule.getThresholdController();
+			introducerSeries.println(time + "," + addrToString(n.getAddress()) + ","
+					+ String.format("%.6f,%.6f", tc.getThreshold(), tc.getHealth()));
+		}
+		introducerSeries.flush();
 	}
 
 	/**
@@ -65,6 +158,12 @@ public class Statistics implements Serializable, DenialReporter {
 	 */
 	public synchronized void save(Properties properties) throws IOException {
 		closed = true;
+		if (counterSeries != null) {
+			counterSeries.close();
+			introducerSeries.close();
+			counterSeries = null;
+			introducerSeries = null;
+		}
 		long endTime = System.currentTimeMillis();
 		do {
 			File f = new File(resultsDir, "properties.txt");
@@ -95,20 +194,9 @@ public class Statistics implements Serializable, DenialReporter {
 		}
 		Map<String, Long> results = new HashMap<>();
 		results.put("execution_time_ms", endTime - startTime);
-		try {
-			Field[] fields = IndividualStatistics.class.getDeclaredFields();
-			for (Field field : fields) {
-				String name = field.getName();
-				if (name.startsWith("this")) {
-					continue;
-				}
-				// System.out.println("field name=" + name);
-				results.put(name, field.getLong(stats));
-			}
-		} catch (IllegalArgumentException | IllegalAccessException | SecurityException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-			System.exit(-1);
+		long[] values = readCounters();
+		for (int i = 0; i < COUNTERS.length; i++) {
+			results.put(COUNTERS[i].getName(), values[i]);
 		}
 		if (true) {
 			File f = new File(resultsDir, "results.txt");
@@ -144,19 +232,19 @@ public class Statistics implements Serializable, DenialReporter {
 	@SuppressWarnings("unused")
 	private class IndividualStatistics {
 
-		public long goodMessagesSent;
-		public long badMessagesSent;
-		public long goodMessagesReceived;
-		public long badMessagesReceived;
-		public long responseToGoodMessagesReceived;
-		public long responseToBadMessagesReceived;
-		public long denials_1;
-		public long denials_2;
-		public long denials_3;
-		public long denials_4;
-		public long denials_5;
-		public long denials_6;
-		public long denials_7plus;
+		public final LongAdder goodMessagesSent = new LongAdder();
+		public final LongAdder badMessagesSent = new LongAdder();
+		public final LongAdder goodMessagesReceived = new LongAdder();
+		public final LongAdder badMessagesReceived = new LongAdder();
+		public final LongAdder responseToGoodMessagesReceived = new LongAdder();
+		public final LongAdder responseToBadMessagesReceived = new LongAdder();
+		public final LongAdder denials_1 = new LongAdder();
+		public final LongAdder denials_2 = new LongAdder();
+		public final LongAdder denials_3 = new LongAdder();
+		public final LongAdder denials_4 = new LongAdder();
+		public final LongAdder denials_5 = new LongAdder();
+		public final LongAdder denials_6 = new LongAdder();
+		public final LongAdder denials_7plus = new LongAdder();
 
 		public IndividualStatistics() {
 		}
@@ -170,6 +258,20 @@ public class Statistics implements Serializable, DenialReporter {
 		startTime = System.currentTimeMillis();
 	}
 
+	/**
+	 * Open the time series files; see {@link #sample(long, List)}.
+	 * 
+	 * @throws IOException if the files cannot be created
+	 */
+	public synchronized void openTimeSeries() throws IOException {
+		StringBuilder header = new StringBuilder("time");
+		for (Field field : COUNTERS) {
+			header.append(',').append(field.getName());
+		}
+		counterSeries = openSeries("timeseries", header.toString());
+		introducerSeries = openSeries("introducers", "time,introducer,threshold,health");
+	}
+
 	private void check() {
 		if (!opened || closed) {
 			throw new IllegalStateException(
@@ -177,62 +279,62 @@ public class Statistics implements Serializable, DenialReporter {
 		}
 	}
 
-	public synchronized void goodMessageSent() {
+	public void goodMessageSent() {
 		check();
-		stats.goodMessagesSent++;
+		stats.goodMessagesSent.increment();
 	}
 
-	public synchronized void badMessageSent() {
+	public void badMessageSent() {
 		check();
-		stats.badMessagesSent++;
+		stats.badMessagesSent.increment();
 	}
 
-	public synchronized void goodMessageReceived() {
+	public void goodMessageReceived() {
 		check();
-		stats.goodMessagesReceived++;
+		stats.goodMessagesReceived.increment();
 	}
 
-	public synchronized void badMessageReceived() {
+	public void badMessageReceived() {
 		check();
-		stats.badMessagesReceived++;
+		stats.badMessagesReceived.increment();
 	}
 	
-	public synchronized void responseToGoodMessageReceived() {
+	public void responseToGoodMessageReceived() {
 		check();
-		stats.responseToGoodMessagesReceived++;
+		stats.responseToGoodMessagesReceived.increment();
 	}
 	
-	public synchronized void responseToBadMessageReceived() {
+	public void responseToBadMessageReceived() {
 		check();
-		stats.responseToBadMessagesReceived++;
+		stats.responseToBadMessagesReceived.increment();
 	}
 	
 	@Override
-	public synchronized void deniedAtDepth(int depth) {
+	public void deniedAtDepth(int depth) {
 		check();
 		switch(depth) {
 		case 0:
 			throw new IllegalArgumentException("What does depth of zero even mean?");
 		case 1:
-			stats.denials_1++;
+			stats.denials_1.increment();
 			break;
 		case 2:
-			stats.denials_2++;
+			stats.denials_2.increment();
 			break;
 		case 3:
-			stats.denials_3++;
+			stats.denials_3.increment();
 			break;
 		case 4:
-			stats.denials_4++;
+			stats.denials_4.increment();
 			break;
 		case 5:
-			stats.denials_5++;
+			stats.denials_5.increment();
 			break;
 		case 6:
-			stats.denials_6++;
+			stats.denials_6.increment();
 			break;
 			default:
-		stats.denials_7plus++;
+		stats.denials_7plus.increment();
 		}
 	}
 
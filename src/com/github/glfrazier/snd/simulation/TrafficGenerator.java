@@ -4,12 +4,10 @@ import static com.github.glfrazier.snd.util.AddressUtils.addrToString;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.net.InetAddress;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Random;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import com.github.glfrazier.event.Event;
@@ -17,6 +15,7 @@ import com.github.glfrazier.event.EventProcessor;
 import com.github.glfrazier.event.EventingSystem;
 import com.github.glfrazier.snd.node.MessageReceiver;
 import com.github.glfrazier.snd.protocol.message.Message;
+import com.github.glfrazier.snd.util.NodeId;
 
 public class TrafficGenerator implements MessageReceiver, EventProcessor {
 
@@ -31,7 +30,7 @@ public class TrafficGenerator implements MessageReceiver, EventProcessor {
 	public static final String BENIGN_CONTENT = "Benign Content";
 	public static final String ATTACK_CONTENT = "Attack Content";
 
-	private InetAddress address;
+	private NodeId address;
 	private SimVPN vpnToClient;
 	private float exponentialRate;
 
@@ -44,18 +43,37 @@ public class TrafficGenerator implements MessageReceiver, EventProcessor {
 
 	private boolean isAttacker;
 
-	public TrafficGenerator(InetAddress addr, Simulation sim, EventingSystem es) {
+	public TrafficGenerator(NodeId addr, Simulation sim, EventingSystem es) {
+		this(addr, sim, es, sim.isDeterministic() ? 0 : sim.getSeed());
+	}
+
+	/**
+	 * @param seed the seed of the generator's random number stream, if the
+	 *             simulation is not deterministic; a deterministic simulation
+	 *             derives the stream from the generator's address
+	 */
+	TrafficGenerator(NodeId addr, Simulation sim, EventingSystem es, long seed) {
 		address = addr;
 		this.sim = sim;
 		this.stats = sim.getStats();
 		this.endTime = sim.getEndTime();
-		exponentialRate = sim.getFloatProperty("snd.sim.client_traffic_exponential");
-		long seed = sim.getSeed();
-		random = new Random();
-		random.setSeed(seed);
+		exponentialRate = sim.getClientTrafficRate();
+		if (sim.isDeterministic()) {
+			random = sim.createRandom(addr);
+		} else {
+			random = new Random();
+			random.setSeed(seed);
+		}
 		es.scheduleEventRelative(this, WAKEUP_EVENT, getDelayToNextEvent());
 	}
 
+	/**
+	 * @return this generator's random number stream
+	 */
+	Random getRandom() {
+		return random;
+	}
+
 	public void attachToProxy(SimVPN vpn) {
 		this.vpnToClient = vpn;
 	}
@@ -73,7 +91,7 @@ public class TrafficGenerator implements MessageReceiver, EventProcessor {
 	}
 
 	@Override
-	public InetAddress getAddress() {
+	public NodeId getAddress() {
 		return address;
 	}
 
@@ -117,7 +135,7 @@ public class TrafficGenerator implements MessageReceiver, EventProcessor {
 		// choose a destination
 		Simulation.MessageMetaData mmd = sim.getNextMessageToSend(this);
 
-		MessageContent content = new MessageContent(mmd.isAttack);
+		MessageContent content = new MessageContent(address, mmd.isAttack);
 		if (content.isAttack) {
 			stats.badMessageSent();
 		} else {
@@ -169,15 +187,14 @@ public class TrafficGenerator implements MessageReceiver, EventProcessor {
 
 	public static class MessageContent implements Serializable {
 		private static final long serialVersionUID = 1L;
-		private static final AtomicLong ID_GEN = new AtomicLong(0);
 		public final boolean isResponse;
 		public final boolean isAttack;
 		public final long identifier;
 
-		public MessageContent(boolean isAttack) {
+		public MessageContent(NodeId sender, boolean isAttack) {
 			this.isResponse = false;
 			this.isAttack = isAttack;
-			this.identifier = ID_GEN.getAndIncrement();
+			this.identifier = sender.nextIdentifier();
 		}
 
 		public MessageContent(MessageContent m) {
@@ -205,7 +222,7 @@ public class TrafficGenerator implements MessageReceiver, EventProcessor {
 	}
 
 	@Override
-	public void vpnClosed(InetAddress nbr) {
+	public void vpnClosed(NodeId nbr) {
 		// TODO Auto-generated method stub
 
 	}
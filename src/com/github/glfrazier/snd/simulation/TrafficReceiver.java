@@ -3,7 +3,6 @@ package com.github.glfrazier.snd.simulation;
 import static com.github.glfrazier.snd.util.AddressUtils.addrToString;
 
 import java.io.IOException;
-import java.net.InetAddress;
 import java.util.Random;
 import java.util.logging.Logger;
 
@@ -15,6 +14,7 @@ import com.github.glfrazier.snd.protocol.message.AckMessage;
 import com.github.glfrazier.snd.protocol.message.FeedbackMessage;
 import com.github.glfrazier.snd.protocol.message.Message;
 import com.github.glfrazier.snd.simulation.TrafficGenerator.MessageContent;
+import com.github.glfrazier.snd.util.NodeId;
 
 public class TrafficReceiver implements MessageReceiver {
 
@@ -25,22 +25,23 @@ public class TrafficReceiver implements MessageReceiver {
 	private float falsePositiveRate;
 	private float falseNegativeRate;
 	private Simulation sim;
-	private Random random = new Random();
+	private Random random;
 
 	private SimVPN vpnToProxy;
-	private InetAddress address;
+	private NodeId address;
 	private Statistics stats;
 
-	public TrafficReceiver(InetAddress address, float falsePositiveRate, float falseNegativeRate, Simulation sim) {
+	public TrafficReceiver(NodeId address, float falsePositiveRate, float falseNegativeRate, Simulation sim) {
 		this.address = address;
 		this.falsePositiveRate = falsePositiveRate;
 		this.falseNegativeRate = falseNegativeRate;
 		this.sim = sim;
 		this.stats = sim.getStats();
+		this.random = (sim.isDeterministic() ? sim.createRandom(address) : new Random());
 	}
 
 	@Override
-	public InetAddress getAddress() {
+	public NodeId getAddress() {
 		return address;
 	}
 
@@ -91,7 +92,7 @@ public class TrafficReceiver implements MessageReceiver {
 	}
 
 	@Override
-	public void vpnClosed(InetAddress nbr) {
+	public void vpnClosed(NodeId nbr) {
 		// TODO Auto-generated method stub
 
 	}
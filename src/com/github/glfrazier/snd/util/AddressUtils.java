@@ -41,6 +41,10 @@ public class AddressUtils {
 		return result;
 	}
 
+	public static String addrToString(NodeId id) {
+		return id.toString();
+	}
+
 	public static InetAddress ZERO_IPv4_ADDRESS;
 	static {
 		try {
@@ -84,6 +88,49 @@ public class AddressUtils {
 		return result;
 	}
 
+	public static NodeId incrementAddress(NodeId id) {
+		return NodeId.of(incrementAddress(id.getAddress()));
+	}
+
+	/**
+	 * The count consecutive addresses starting at first. The address bytes are
+	 * incremented in place, so that the range costs one InetAddress per address
+	 * rather than the two byte arrays of each {@link #incrementAddress(NodeId)}.
+	 * The NodeIds are created in order, so that their indices are also
+	 * consecutive. As with incrementAddress, the range may not carry into the most
+	 * significant byte.
+	 * 
+	 * @param first the first address of the range
+	 * @param count the number of addresses
+	 * @return the addresses
+	 */
+	public static NodeId[] addressRange(NodeId first, int count) {
+		NodeId[] range = new NodeId[count];
+		if (count == 0) {
+			return range;
+		}
+		range[0] = first;
+		byte[] bytes = first.getAddress().getAddress();
+		for (int i = 1; i < count; i++) {
+			int index = bytes.length - 1;
+			bytes[index]++;
+			while (bytes[index] == 0) {
+				index -= 1;
+				if (index == 0) {
+					throw new IllegalArgumentException("Cannot increment the MSB if the address!");
+				}
+				bytes[index]++;
+			}
+			try {
+				range[i] = NodeId.of(InetAddress.getByAddress(bytes));
+			} catch (UnknownHostException e) {
+				e.printStackTrace();
+				System.exit(-1);
+			}
+		}
+		return range;
+	}
+
 	public static int compare(InetAddress a1, InetAddress a2) {
 		byte[] b1 = a1.getAddress();
 		byte[] b2 = a2.getAddress();
@@ -100,16 +147,16 @@ public class AddressUtils {
 	}
 
 	public static class AddressPair {
-		public final InetAddress dst;
-		public final InetAddress src;
+		public final NodeId dst;
+		public final NodeId src;
 
-		public AddressPair(InetAddress dst, InetAddress src) {
+		public AddressPair(NodeId dst, NodeId src) {
 			this.dst = dst;
 			this.src = src;
 		}
 
 		public int hashCode() {
-			return dst.hashCode() ^ src.hashCode();
+			return dst.getIndex() * 31 + src.getIndex();
 		}
 
 		public boolean equals(Object o) {
@@ -117,7 +164,7 @@ public class AddressUtils {
 				return false;
 			}
 			AddressPair ap = (AddressPair) o;
-			return dst.equals(ap.dst) && src.equals(ap.src);
+			return dst == ap.dst && src == ap.src;
 		}
 	}
 
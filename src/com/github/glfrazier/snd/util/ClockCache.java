@@ -0,0 +1,168 @@
+package com.github.glfrazier.snd.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded concurrent cache with approximately least-recently-used eviction,
+ * by the CLOCK algorithm. Entries are held in a {@link ConcurrentHashMap}, so
+ * lookups take no lock: a lookup only sets the entry's reference bit. The
+ * entries are also held in a ring; when a new key is put into a full cache, a
+ * hand sweeps the ring, clearing reference bits, and evicts the first entry
+ * whose bit is already clear: one that has not been used since the hand last
+ * passed it.
+ *
+ * Inserting a new key is synchronized, as is the sweep; updating the value of a
+ * key already in the cache is not. The ring grows as entries are added, so a
+ * cache with a large capacity costs little until it fills.
+ *
+ * The hits and misses of {@link #get(Object)}, and the evictions, are counted.
+ *
+ * @param <K> the key type
+ * @param <V> the value type; values may not be null
+ */
+public class ClockCache<K, V> {
+
+	private static final class Entry<K, V> {
+		final K key;
+		volatile V value;
+		volatile boolean referenced;
+
+		Entry(K key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	private static final int INITIAL_RING_SIZE = 16;
+
+	private final int capacity;
+	private final ConcurrentHashMap<K, Entry<K, V>> map = new ConcurrentHashMap<>();
+	/** Guarded by this. */
+	private Entry<K, V>[] ring;
+	/** The number of entries in the ring. Guarded by this. */
+	private int size;
+	/** Guarded by this. */
+	private int hand;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param capacity the maximum number of entries held
+	 */
+	public ClockCache(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The cache capacity must be positive.");
+		}
+		this.capacity = capacity;
+		this.ring = newRing(Math.min(capacity, INITIAL_RING_SIZE));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <K, V> Entry<K, V>[] newRing(int size) {
+		return (Entry<K, V>[]) new Entry<?, ?>[size];
+	}
+
+	/**
+	 * @return the value associated with the key, or null if the key is not in the
+	 *         cache
+	 */
+	public V get(K key) {
+		Entry<K, V> e = map.get(key);
+		if (e == null) {
+			misses.increment();
+			return null;
+		}
+		if (!e.referenced) {
+			e.referenced = true;
+		}
+		hits.increment();
+		return e.value;
+	}
+
+	public void put(K key, V value) {
+		if (value == null) {
+			throw new NullPointerException("ClockCache does not hold null values.");
+		}
+		Entry<K, V> e = map.get(key);
+		if (e != null) {
+			e.value = value;
+			e.referenced = true;
+			return;
+		}
+		synchronized (this) {
+			e = map.get(key);
+			if (e != null) {
+				e.value = value;
+				e.referenced = true;
+				return;
+			}
+			e = new Entry<>(key, value);
+			if (size < capacity) {
+				if (size == ring.length) {
+					ring = Arrays.copyOf(ring, Math.min(capacity, 2 * ring.length));
+				}
+				ring[size++] = e;
+			} else {
+				ring[sweep()] = e;
+			}
+			map.put(key, e);
+		}
+	}
+
+	/**
+	 * Advance the hand to an entry that has not been referenced since the hand
+	 * last passed it, and evict that entry. Terminates within one revolution, as
+	 * every reference bit the hand passes is cleared.
+	 *
+	 * @return the slot of the evicted entry
+	 */
+	private int sweep() {
+		while (true) {
+			Entry<K, V> e = ring[hand];
+			int slot = hand;
+			hand = (hand + 1) % size;
+			if (e.referenced) {
+				e.referenced = false;
+			} else {
+				map.remove(e.key, e);
+				evictions.increment();
+				return slot;
+			}
+		}
+	}
+
+	public int size() {
+		return map.size();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return the fraction of lookups that found their key, or NaN if there have
+	 *         been no lookups
+	 */
+	public double getHitRate() {
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return total == 0 ? Double.NaN : (double) h / total;
+	}
+
+}
@@ -1,7 +1,6 @@
 package com.github.glfrazier.snd.util;
 
 import java.io.IOException;
-import java.net.InetAddress;
 
 import com.github.glfrazier.snd.protocol.message.Message;
 
@@ -14,7 +13,7 @@ public interface CommsModule {
 	 * @param dst   the packet destination
 	 * @param route the forwarding host
 	 */
-	public void addRoute(InetAddress dst, InetAddress route);
+	public void addRoute(NodeId dst, NodeId route);
 
 	/**
 	 * Remove a route from the routing table.
@@ -23,7 +22,7 @@ public interface CommsModule {
 	 * @param route the (no-longer) forwarding host
 	 * @return true if there was a route to remove, false if not
 	 */
-	public boolean removeRoute(InetAddress dst, InetAddress route);
+	public boolean removeRoute(NodeId dst, NodeId route);
 
 	/**
 	 * Remove all entries from the routing table that specify <code>forwarder</code>
@@ -31,7 +30,7 @@ public interface CommsModule {
 	 * 
 	 * @param forwarder
 	 */
-	public void removeRoutesVia(InetAddress forwarder);
+	public void removeRoutesVia(NodeId forwarder);
 
 	/**
 	 * Discover whether a given destination can be reached.
@@ -39,7 +38,7 @@ public interface CommsModule {
 	 * @param dst
 	 * @return true if there is a route to the destination, false otherwise.
 	 */
-	public boolean canSendTo(InetAddress dst);
+	public boolean canSendTo(NodeId dst);
 
 	/**
 	 * Send a message (packet).
@@ -1,6 +1,5 @@
 package com.github.glfrazier.snd.util;
 
-import java.net.InetAddress;
 
 public interface DiscoveryService {
 
@@ -11,7 +10,7 @@ public interface DiscoveryService {
 	 * @param dst the address one wants to reach
 	 * @return a query to use against the discovery system
 	 */
-	public Query createQuery(InetAddress dst);
+	public Query createQuery(NodeId dst);
 
 	/**
 	 * Returns a feasible next step to reach the desired destination. The query is
@@ -23,7 +22,7 @@ public interface DiscoveryService {
 	 * @param query
 	 * @return a feasible next hop to reach the destination from source.
 	 */
-	public InetAddress getNextHopTo(Query query);
+	public NodeId getNextHopTo(Query query);
 
 	/**
 	 * Obtain the address of the proxy for the destination. Returns the address of
@@ -36,7 +35,7 @@ public interface DiscoveryService {
 	 *         the provided address is neither part of the network nor has a
 	 *         registered proxy.
 	 */
-	public InetAddress getProxyFor(InetAddress dst);
+	public NodeId getProxyFor(NodeId dst);
 
 	/**
 	 * Maintain the state of the search.
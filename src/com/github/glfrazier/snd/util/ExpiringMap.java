@@ -0,0 +1,158 @@
+package com.github.glfrazier.snd.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * A map whose entries expire a fixed time-to-live after they were last put.
+ * Lookups and removals go through a single hash index, so they are O(1).
+ * Expiry is driven by a timing wheel: each entry is also filed in the wheel
+ * slot of its expiration time, and {@link #expire()} only visits the slots
+ * whose time has passed.
+ *
+ * A single level of wheel is sufficient because every entry has the same
+ * time-to-live: the wheel spans the time-to-live, so an entry's slot is never
+ * revisited before the entry expires. Re-putting a key, or removing it, leaves
+ * the old wheel record behind; such records are recognized as stale and
+ * dropped when their slot is visited. Entries that have expired but not yet
+ * been swept are never returned.
+ *
+ * The map may hold null values. All methods are synchronized.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class ExpiringMap<K, V> {
+
+	private static final class Entry<K, V> {
+		final K key;
+		final V value;
+		final long expiration;
+
+		Entry(K key, V value, long expiration) {
+			this.key = key;
+			this.value = value;
+			this.expiration = expiration;
+		}
+	}
+
+	private final long timeToLive;
+	private final long slotWidth;
+	private final LongSupplier clock;
+	private final Map<K, Entry<K, V>> index = new HashMap<>();
+	private final List<Entry<K, V>>[] wheel;
+	/** The tick (time / slotWidth) up to which the wheel has been swept. */
+	private long sweptTick;
+
+	/**
+	 * @param timeToLive how long an entry lives after it is put
+	 * @param numSlots   the number of slots in the wheel; expiry is precise to
+	 *                   timeToLive / numSlots
+	 * @param clock      the source of the current time
+	 */
+	public ExpiringMap(long timeToLive, int numSlots, LongSupplier clock) {
+		if (timeToLive <= 0 || numSlots <= 0) {
+			throw new IllegalArgumentException("The time-to-live and the number of slots must be positive.");
+		}
+		this.timeToLive = timeToLive;
+		this.slotWidth = Math.max(1, timeToLive / numSlots);
+		this.clock = clock;
+		// One extra slot, so that a full time-to-live never wraps onto the slot
+		// currently being filled.
+		int slots = (int) (timeToLive / slotWidth) + 2;
+		this.wheel = newWheel(slots);
+		for (int i = 0; i < slots; i++) {
+			wheel[i] = new ArrayList<>();
+		}
+		this.sweptTick = clock.getAsLong() / slotWidth;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> List<T>[] newWheel(int slots) {
+		return (List<T>[]) new List<?>[slots];
+	}
+
+	public long getTimeToLive() {
+		return timeToLive;
+	}
+
+	public synchronized void put(K key, V value) {
+		Entry<K, V> e = new Entry<>(key, value, clock.getAsLong() + timeToLive);
+		index.put(key, e);
+		wheel[(int) ((e.expiration / slotWidth) % wheel.length)].add(e);
+	}
+
+	private Entry<K, V> live(K key) {
+		Entry<K, V> e = index.get(key);
+		if (e != null && e.expiration <= clock.getAsLong()) {
+			index.remove(key);
+			return null;
+		}
+		return e;
+	}
+
+	public synchronized boolean containsKey(K key) {
+		return live(key) != null;
+	}
+
+	/**
+	 * @return the value for the key, or null if the key is absent or expired (or
+	 *         the value is null)
+	 */
+	public synchronized V get(K key) {
+		Entry<K, V> e = live(key);
+		return e == null ? null : e.value;
+	}
+
+	/**
+	 * @return the value that was removed, or null if the key was absent or expired
+	 *         (or the value was null)
+	 */
+	public synchronized V remove(K key) {
+		Entry<K, V> e = live(key);
+		if (e == null) {
+			return null;
+		}
+		index.remove(key);
+		return e.value;
+	}
+
+	/**
+	 * Remove every entry that has expired. Only the wheel slots whose time has
+	 * passed since the last invocation are visited.
+	 */
+	public synchronized void expire() {
+		long now = clock.getAsLong();
+		long tick = now / slotWidth;
+		long start = Math.max(sweptTick, tick - wheel.length + 1);
+		for (long t = start; t <= tick; t++) {
+			List<Entry<K, V>> slot = wheel[(int) (t % wheel.length)];
+			int kept = 0;
+			for (int i = 0; i < slot.size(); i++) {
+				Entry<K, V> e = slot.get(i);
+				if (index.get(e.key) != e) {
+					continue; // stale: the key was removed or put again
+				}
+				if (e.expiration <= now) {
+					index.remove(e.key);
+					continue;
+				}
+				slot.set(kept++, e); // expires later in this slot's time span
+			}
+			slot.subList(kept, slot.size()).clear();
+		}
+		sweptTick = tick;
+	}
+
+	/**
+	 * @return the number of entries, including any that have expired but not yet
+	 *         been swept by {@link #expire()}
+	 */
+	public synchronized int size() {
+		return index.size();
+	}
+
+}
@@ -0,0 +1,149 @@
+package com.github.glfrazier.snd.util;
+
+import java.util.Arrays;
+
+/**
+ * A hash map keyed on primitive longs. The keys and values are held in two
+ * parallel arrays, probed linearly, so neither a lookup nor an insertion boxes
+ * the key or allocates an entry. The table is doubled when it is more than
+ * half full. A removal shifts the following entries of its probe sequence
+ * back, so the table never fills with tombstones.
+ *
+ * Values may not be null: a null value marks an empty slot. The map is not
+ * synchronized.
+ *
+ * @param <V> the value type
+ */
+public class LongHashMap<V> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private V[] values;
+	private int mask;
+	private int size;
+
+	public LongHashMap() {
+		this(MIN_CAPACITY / 2);
+	}
+
+	/**
+	 * @param expectedSize the number of entries expected
+	 */
+	public LongHashMap(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < 2 * expectedSize) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = (V[]) new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	/**
+	 * @return the slot holding the key, or the empty slot at which it would be
+	 *         put
+	 */
+	private int find(long key) {
+		int i = slot(key);
+		while (values[i] != null && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	/**
+	 * @return the value associated with the key, or null if there is none
+	 */
+	public V get(long key) {
+		return values[find(key)];
+	}
+
+	public boolean containsKey(long key) {
+		return values[find(key)] != null;
+	}
+
+	/**
+	 * @return the value previously associated with the key, or null if there was
+	 *         none
+	 */
+	public V put(long key, V value) {
+		if (value == null) {
+			throw new NullPointerException("LongHashMap does not hold null values.");
+		}
+		int i = find(key);
+		V old = values[i];
+		values[i] = value;
+		if (old == null) {
+			keys[i] = key;
+			if (++size > (mask + 1) / 2) {
+				grow();
+			}
+		}
+		return old;
+	}
+
+	/**
+	 * @return the value that was associated with the key, or null if there was
+	 *         none
+	 */
+	public V remove(long key) {
+		int i = find(key);
+		V old = values[i];
+		if (old == null) {
+			return null;
+		}
+		// Shift back each following entry of the probe sequence that would no
+		// longer be found once slot i is empty.
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (values[j] == null) {
+				break;
+			}
+			int home = slot(keys[j]);
+			// Entry j may move to i if i lies cyclically in [home, j).
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		values[i] = null;
+		size--;
+		return old;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		V[] oldValues = values;
+		allocate(2 * oldKeys.length);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				int j = find(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+}
@@ -0,0 +1,140 @@
+package com.github.glfrazier.snd.util;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The interned identity of an entity in the network. There is exactly one
+ * NodeId per address, so NodeIds are compared by identity and hashed by a
+ * dense integer index (assigned in order of first use, starting at zero), which
+ * is far cheaper than comparing and hashing {@link InetAddress} instances.
+ * Inside of the SND implementation, entities are identified by their NodeId;
+ * the InetAddress is only used at the edges (configuration, address
+ * arithmetic, and display).
+ */
+public final class NodeId implements Serializable, Comparable<NodeId> {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final ConcurrentHashMap<InetAddress, NodeId> REGISTRY = new ConcurrentHashMap<>();
+	private static final AtomicInteger NEXT_INDEX = new AtomicInteger();
+
+	private final InetAddress address;
+	private final transient int index;
+	private final transient long addressHigh;
+	private final transient long addressLow;
+	private transient String string;
+	private final transient AtomicInteger sequence = new AtomicInteger();
+
+	private NodeId(InetAddress address) {
+		this.address = address;
+		this.index = NEXT_INDEX.getAndIncrement();
+		byte[] bytes = address.getAddress();
+		if (bytes.length == 4) {
+			// Stored as the IPv4-mapped IPv6 address, ::ffff:a.b.c.d
+			this.addressHigh = 0;
+			this.addressLow = 0xffff00000000L | (toLong(bytes, 0, 4) & 0xffffffffL);
+		} else {
+			this.addressHigh = toLong(bytes, 0, 8);
+			this.addressLow = toLong(bytes, 8, 8);
+		}
+	}
+
+	private static long toLong(byte[] bytes, int offset, int length) {
+		long l = 0;
+		for (int i = offset; i < offset + length; i++) {
+			l = (l << 8) | (bytes[i] & 0xff);
+		}
+		return l;
+	}
+
+	/**
+	 * @param address an address
+	 * @return the NodeId for the address, creating it if this is the first use of
+	 *         the address
+	 */
+	public static NodeId of(InetAddress address) {
+		NodeId id = REGISTRY.get(address);
+		if (id == null) {
+			id = REGISTRY.computeIfAbsent(address, NodeId::new);
+		}
+		return id;
+	}
+
+	/**
+	 * @return the number of NodeIds that have been created
+	 */
+	public static int count() {
+		return NEXT_INDEX.get();
+	}
+
+	/**
+	 * Identifiers that an entity creates (message ids, introduction nonces) are
+	 * drawn from the entity's own sequence, so that they do not depend on the
+	 * order in which entities run. The identifier is the entity's index in the
+	 * upper 32 bits and the sequence number in the lower 32 bits.
+	 *
+	 * @return a new identifier, unique among all entities
+	 */
+	public long nextIdentifier() {
+		return ((long) index << 32) | (sequence.getAndIncrement() & 0xffffffffL);
+	}
+
+	public InetAddress getAddress() {
+		return address;
+	}
+
+	/**
+	 * @return the dense index of this NodeId, in [0..{@link #count()})
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the upper 64 bits of the 128-bit form of the address
+	 */
+	public long getAddressHigh() {
+		return addressHigh;
+	}
+
+	/**
+	 * @return the lower 64 bits of the 128-bit form of the address
+	 */
+	public long getAddressLow() {
+		return addressLow;
+	}
+
+	@Override
+	public int hashCode() {
+		return index;
+	}
+
+	// equals() is inherited: NodeIds are interned, so identity is equality.
+
+	@Override
+	public int compareTo(NodeId o) {
+		return AddressUtils.compare(address, o.address);
+	}
+
+	@Override
+	public String toString() {
+		String s = string;
+		if (s == null) {
+			s = AddressUtils.addrToString(address);
+			string = s;
+		}
+		return s;
+	}
+
+	/**
+	 * Preserve interning across serialization.
+	 */
+	private Object readResolve() throws ObjectStreamException {
+		return of(address);
+	}
+
+}
@@ -0,0 +1,172 @@
+package com.github.glfrazier.snd.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A concurrent map keyed on an ordered pair of NodeIds. The pair is packed into
+ * a single long (the two dense indices), so the map is one flat table rather
+ * than a map of maps, and the key is never boxed.
+ *
+ * Reads never block. The table is open-addressed and probed linearly; a reader
+ * reads the current table from a volatile field and probes it without a lock.
+ * Updates are serialized by the map's monitor. A slot, once given a key, keeps
+ * it for the life of the table: a removal replaces the value with a tombstone,
+ * and only re-adding the same key reuses the slot. When the table fills, the
+ * live pairs are copied into a new table, which is then published; a reader
+ * still probing the old table sees the map as it was before the resize began.
+ *
+ * @param <V> the value type; values may not be null
+ */
+public class NodePairMap<V> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	/** The value of a slot whose pair has been removed. */
+	private static final Object TOMBSTONE = new Object();
+
+	private static final class Table {
+		/**
+		 * The key of each slot. A key is written before the slot's first value, and
+		 * is read only after a non-null value, so the volatile value orders it.
+		 */
+		final long[] keys;
+		/** The value of each slot: null if the slot is unused, or TOMBSTONE. */
+		final AtomicReferenceArray<Object> values;
+		final int mask;
+
+		Table(int capacity) {
+			keys = new long[capacity];
+			values = new AtomicReferenceArray<>(capacity);
+			mask = capacity - 1;
+		}
+
+		int slot(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32)) & mask;
+		}
+
+		/**
+		 * @return the slot holding the key, or the unused slot at which it would be
+		 *         added
+		 */
+		int find(long key) {
+			int i = slot(key);
+			while (values.get(i) != null && keys[i] != key) {
+				i = (i + 1) & mask;
+			}
+			return i;
+		}
+	}
+
+	private volatile Table table;
+	/** The number of slots that have been given a key, live or removed. */
+	private int used;
+	private int size;
+
+	public NodePairMap() {
+		this(MIN_CAPACITY / 2);
+	}
+
+	/**
+	 * @param initialCapacity the number of pairs expected
+	 */
+	public NodePairMap(int initialCapacity) {
+		table = new Table(capacityFor(initialCapacity));
+	}
+
+	/**
+	 * @return the smallest power of two that holds the pairs at most half full
+	 */
+	private static int capacityFor(int pairs) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < 2 * pairs) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private static long key(NodeId first, NodeId second) {
+		return ((long) first.getIndex() << 32) | (second.getIndex() & 0xffffffffL);
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(NodeId first, NodeId second) {
+		long key = key(first, second);
+		Table t = table;
+		Object value = t.values.get(t.find(key));
+		return value == TOMBSTONE ? null : (V) value;
+	}
+
+	public boolean containsKey(NodeId first, NodeId second) {
+		return get(first, second) != null;
+	}
+
+	/**
+	 * @return the value already associated with the pair, or null if the value
+	 *         was added
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized V putIfAbsent(NodeId first, NodeId second, V value) {
+		if (value == null) {
+			throw new NullPointerException("NodePairMap does not hold null values.");
+		}
+		long key = key(first, second);
+		Table t = table;
+		int i = t.find(key);
+		Object current = t.values.get(i);
+		if (current != null && current != TOMBSTONE) {
+			return (V) current;
+		}
+		if (current == null) {
+			t.keys[i] = key;
+			used++;
+		}
+		t.values.set(i, value);
+		size++;
+		if (used > t.keys.length / 2) {
+			resize();
+		}
+		return null;
+	}
+
+	/**
+	 * Remove the pair, but only if it is associated with the value.
+	 *
+	 * @return true if the pair was removed
+	 */
+	public synchronized boolean remove(NodeId first, NodeId second, V value) {
+		Table t = table;
+		int i = t.find(key(first, second));
+		Object current = t.values.get(i);
+		if (current == null || current == TOMBSTONE || !current.equals(value)) {
+			return false;
+		}
+		t.values.set(i, TOMBSTONE);
+		size--;
+		return true;
+	}
+
+	/**
+	 * Copy the live pairs into a new table, sized for them alone, and publish it.
+	 * The old table is not modified afterwards.
+	 */
+	private void resize() {
+		Table old = table;
+		Table t = new Table(capacityFor(2 * size));
+		for (int i = 0; i < old.keys.length; i++) {
+			Object value = old.values.get(i);
+			if (value != null && value != TOMBSTONE) {
+				int j = t.find(old.keys[i]);
+				t.keys[j] = old.keys[i];
+				t.values.set(j, value);
+			}
+		}
+		used = size;
+		table = t;
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+}
@@ -66,6 +66,13 @@ public class PropertyParser {
 		return properties.getProperty(propName).equalsIgnoreCase("true");
 	}
 
+	public static String getStringProperty(String propName, String defaultValue, Properties properties) {
+		if (!properties.containsKey(propName)) {
+			properties.setProperty(propName, defaultValue);
+		}
+		return properties.getProperty(propName).trim();
+	}
+
 	public static String[] getListProperty(String propName, Properties properties) {
 		if (!properties.containsKey(propName)) {
 			System.err.println("'" + propName + "' was not specified in the provided properties; it is required.");
@@ -125,6 +132,13 @@ public class PropertyParser {
 		return prob;
 	}
 
+	public static long getLongProperty(String propName, long defaultValue, Properties properties) {
+		if (!properties.containsKey(propName)) {
+			properties.setProperty(propName, Long.toString(defaultValue));
+		}
+		return getLongProperty(propName, properties);
+	}
+
 	public static long getLongProperty(String propName, Properties properties) {
 		String lStr = properties.getProperty(propName);
 		if (lStr == null) {
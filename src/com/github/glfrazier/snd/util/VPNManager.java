@@ -1,7 +1,6 @@
 package com.github.glfrazier.snd.util;
 
 import java.io.IOException;
-import java.net.InetAddress;
 
 public interface VPNManager {
 
@@ -12,8 +11,8 @@ public interface VPNManager {
 	 * @param keyingMaterial crypto material needed to construct the VPN.
 	 * @throws IOException the VPN cannot be created.
 	 */
-	public void createVPN(InetAddress neighbor, Object keyingMaterial) throws IOException;
+	public void createVPN(NodeId neighbor, Object keyingMaterial) throws IOException;
 
-	public void closeVPN(InetAddress remote);
+	public void closeVPN(NodeId remote);
 
 }